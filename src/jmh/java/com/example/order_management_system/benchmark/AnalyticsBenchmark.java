@@ -0,0 +1,115 @@
+package com.example.order_management_system.benchmark;
+
+import com.example.order_management_system.cache.ProductSalesAggregate;
+import com.example.order_management_system.cache.ProductSalesTotals;
+import com.example.order_management_system.model.Order;
+import com.example.order_management_system.model.OrderProduct;
+import com.example.order_management_system.repository.OrderProductRepository;
+import com.example.order_management_system.service.OrderService;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.LongStream;
+
+// Units ordered per product over every order line: walking the entities of getAllOrders, as the reports did, versus
+// the chunked GROUP BY scan on 1 and 4 workers, versus reading the incrementally maintained sums. scanPage sums only
+// the lines of one page of sales-by-product, as the report does without the in-memory sums
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2)
+@Measurement(iterations = 5)
+@Fork(value = 1, jvmArgs = "-Xmx3g")
+public class AnalyticsBenchmark {
+
+    private static final int LINES_PER_ORDER = 5;
+    private static final int PRODUCTS = 10000;
+    private static final List<Long> PAGE = LongStream.rangeClosed(1, 100).boxed().toList();
+
+    @Param({"1000000"})
+    public int lines;
+
+    private static final String DATASOURCE = "spring.datasource.url=jdbc:h2:file:./target/benchmark-analytics;MODE=MySQL;"
+            + "CACHE_SIZE=262144;DB_CLOSE_DELAY=-1;DB_CLOSE_ON_EXIT=FALSE";
+
+    private ConfigurableApplicationContext context;
+    private OrderService orderService;
+    private ProductSalesAggregate singleWorker;
+    private ProductSalesAggregate fourWorkers;
+    private ProductSalesAggregate incremental;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        context = BenchmarkApplication.start(DATASOURCE, "spring.jpa.hibernate.ddl-auto=create");
+        JdbcTemplate jdbcTemplate = context.getBean(JdbcTemplate.class);
+        jdbcTemplate.update("INSERT INTO product (id, name, description, price) "
+                + "SELECT x, CONCAT('Product ', x), 'Benchmark product', 1.0 + MOD(x, 100) FROM SYSTEM_RANGE(1, ?)", PRODUCTS);
+        jdbcTemplate.update("INSERT INTO orders (id, total, line_count, version) "
+                + "SELECT x, 0, ?, 0 FROM SYSTEM_RANGE(1, ?)", LINES_PER_ORDER, lines / LINES_PER_ORDER);
+        jdbcTemplate.update("INSERT INTO order_product (id, order_id, product_id, quantity) "
+                + "SELECT x, (x - 1) / ? + 1, MOD(x * 7919, ?) + 1, 1 + MOD(x, 7) FROM SYSTEM_RANGE(1, ?)", LINES_PER_ORDER, PRODUCTS, lines);
+        orderService = context.getBean(OrderService.class);
+        OrderProductRepository orderProductRepository = context.getBean(OrderProductRepository.class);
+        singleWorker = new ProductSalesAggregate(orderProductRepository, false, 1, 100_000, 1);
+        fourWorkers = new ProductSalesAggregate(orderProductRepository, false, 4, 100_000, 1);
+        incremental = new ProductSalesAggregate(orderProductRepository, true, 4, 100_000, 1);
+        incremental.rebuild();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        context.close();
+        Files.deleteIfExists(Path.of("target", "benchmark-analytics.mv.db"));
+    }
+
+    @Benchmark
+    public Map<Long, Long> walkAllOrders() {
+        Map<Long, Long> quantities = new HashMap<>();
+        for (Order order : orderService.getAllOrders()) {
+            for (OrderProduct orderProduct : order.getOrderProducts()) {
+                quantities.merge(orderProduct.getProduct().getId(), (long) orderProduct.getQuantity(), Long::sum);
+            }
+        }
+        return quantities;
+    }
+
+    @Benchmark
+    public ProductSalesTotals scanOneWorker() {
+        return singleWorker.scan();
+    }
+
+    @Benchmark
+    public ProductSalesTotals scanFourWorkers() {
+        return fourWorkers.scan();
+    }
+
+    @Benchmark
+    public ProductSalesTotals scanPage() {
+        return fourWorkers.scanProducts(PAGE);
+    }
+
+    @Benchmark
+    public ProductSalesTotals incrementalCopy() {
+        return incremental.current().orElseThrow();
+    }
+}
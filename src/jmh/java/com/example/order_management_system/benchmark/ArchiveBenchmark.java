@@ -0,0 +1,136 @@
+package com.example.order_management_system.benchmark;
+
+import com.example.order_management_system.cache.OrderReadReplica;
+import com.example.order_management_system.cache.ProductSalesAggregate;
+import com.example.order_management_system.dto.OrderView;
+import com.example.order_management_system.repository.ArchivedOrderRepository;
+import com.example.order_management_system.repository.OrderRepository;
+import com.example.order_management_system.service.OrderArchiver;
+import com.example.order_management_system.service.OrderService;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+import java.util.Optional;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+// Time to archive `orders` orders in chunks of `chunkSize`, and reads by ID of live orders versus archived ones
+@Fork(1)
+public class ArchiveBenchmark {
+
+    private static final int PRODUCTS = 1000;
+    private static final int LINES_PER_ORDER = 5;
+
+    @State(Scope.Benchmark)
+    public static class OrderTables {
+        @Param({"50000"})
+        public int orders;
+
+        @Param({"500", "5000"})
+        public int chunkSize;
+
+        ConfigurableApplicationContext context;
+        JdbcTemplate jdbcTemplate;
+        OrderService orderService;
+        OrderArchiver archiver;
+
+        @Setup(Level.Trial)
+        public void setUp() {
+            context = BenchmarkApplication.start();
+            jdbcTemplate = context.getBean(JdbcTemplate.class);
+            jdbcTemplate.update("INSERT INTO product (id, name, description, price) "
+                    + "SELECT x, CONCAT('Product ', x), 'Benchmark product', 1.0 + MOD(x, 100) FROM SYSTEM_RANGE(1, ?)", PRODUCTS);
+            orderService = context.getBean(OrderService.class);
+            // Everything below the last order is archived
+            archiver = new OrderArchiver(context.getBean(OrderRepository.class), context.getBean(ArchivedOrderRepository.class),
+                    context.getBean(OrderReadReplica.class), context.getBean(ProductSalesAggregate.class),
+                    context.getBean(TransactionTemplate.class), true, null, orders + 1L, chunkSize, Duration.ZERO);
+        }
+
+        // Live orders 1..`orders` and an empty archive
+        void fill() {
+            jdbcTemplate.update("DELETE FROM archived_order_product");
+            jdbcTemplate.update("DELETE FROM archived_orders");
+            jdbcTemplate.update("DELETE FROM order_product");
+            jdbcTemplate.update("DELETE FROM orders");
+            jdbcTemplate.update("INSERT INTO orders (id, total, line_count, version) SELECT x, 0, ?, 0 FROM SYSTEM_RANGE(1, ?)",
+                    LINES_PER_ORDER, orders);
+            jdbcTemplate.update("INSERT INTO order_product (id, order_id, product_id, quantity) "
+                    + "SELECT x, (x - 1) / ? + 1, MOD(x * 7919, ?) + 1, 1 + MOD(x, 7) FROM SYSTEM_RANGE(1, ?)",
+                    LINES_PER_ORDER, PRODUCTS, orders * LINES_PER_ORDER);
+        }
+
+        @TearDown(Level.Trial)
+        public void tearDown() {
+            context.close();
+        }
+    }
+
+    @State(Scope.Benchmark)
+    public static class FullTables {
+        @Setup(Level.Invocation)
+        public void setUp(OrderTables tables) {
+            tables.fill();
+        }
+    }
+
+    // The first half of the orders archived, the second half live
+    @State(Scope.Benchmark)
+    public static class HalfArchived {
+        @Setup(Level.Trial)
+        public void setUp(OrderTables tables) {
+            tables.fill();
+            new OrderArchiver(tables.context.getBean(OrderRepository.class), tables.context.getBean(ArchivedOrderRepository.class),
+                    tables.context.getBean(OrderReadReplica.class), tables.context.getBean(ProductSalesAggregate.class),
+                    tables.context.getBean(TransactionTemplate.class), true, null, tables.orders / 2 + 1L, tables.chunkSize, Duration.ZERO)
+                    .archive();
+        }
+
+        long randomOrderId(OrderTables tables, boolean archived) {
+            int half = tables.orders / 2;
+            return 1 + ThreadLocalRandom.current().nextInt(half) + (archived ? 0 : half);
+        }
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.SingleShotTime)
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    @Warmup(iterations = 2)
+    @Measurement(iterations = 5)
+    public int archiveAll(OrderTables tables, FullTables fullTables) {
+        return tables.archiver.archive();
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.AverageTime)
+    @OutputTimeUnit(TimeUnit.MICROSECONDS)
+    @Warmup(iterations = 3, time = 2)
+    @Measurement(iterations = 5, time = 2)
+    public Optional<OrderView> liveById(OrderTables tables, HalfArchived halfArchived) {
+        return tables.orderService.getOrderViewById(halfArchived.randomOrderId(tables, false));
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.AverageTime)
+    @OutputTimeUnit(TimeUnit.MICROSECONDS)
+    @Warmup(iterations = 3, time = 2)
+    @Measurement(iterations = 5, time = 2)
+    public Optional<OrderView> archivedById(OrderTables tables, HalfArchived halfArchived) {
+        return tables.orderService.getOrderViewById(halfArchived.randomOrderId(tables, true));
+    }
+}
@@ -0,0 +1,106 @@
+package com.example.order_management_system.benchmark;
+
+import com.example.order_management_system.dto.OrderLines;
+import com.example.order_management_system.dto.OrderMutation;
+import com.example.order_management_system.dto.OrderMutationResult;
+import com.example.order_management_system.service.OrderBulkService;
+import com.example.order_management_system.service.OrderService;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+// The same mix of updates, additions and removals over `operations` orders, applied with one service call per
+// operation as the single-order endpoints do, versus one batch mutation
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 10)
+@Fork(1)
+public class BatchMutationBenchmark {
+
+    private static final int PRODUCTS = 1000;
+    private static final int LINES_PER_ORDER = 5;
+
+    @Param({"1000"})
+    public int operations;
+
+    private ConfigurableApplicationContext context;
+    private OrderService orderService;
+    private OrderBulkService orderBulkService;
+    private long[] productIds;
+    private List<OrderMutation> mutations;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        context = BenchmarkApplication.start();
+        orderService = context.getBean(OrderService.class);
+        orderBulkService = context.getBean(OrderBulkService.class);
+        JdbcTemplate jdbcTemplate = context.getBean(JdbcTemplate.class);
+        jdbcTemplate.update("INSERT INTO product (name, description, price) "
+                + "SELECT CONCAT('Product ', x), 'Benchmark product', 1.0 + MOD(x, 100) FROM SYSTEM_RANGE(1, ?)", PRODUCTS);
+        productIds = jdbcTemplate.queryForList("SELECT id FROM product ORDER BY id", Long.class).stream()
+                .mapToLong(Long::longValue)
+                .toArray();
+    }
+
+    // Fresh orders for every run, each the target of one operation
+    @Setup(Level.Invocation)
+    public void createOrders() {
+        mutations = new ArrayList<>(operations);
+        for (int i = 0; i < operations; i++) {
+            Map<Long, Integer> lines = new LinkedHashMap<>();
+            for (int line = 0; line < LINES_PER_ORDER; line++) {
+                lines.put(productIds[(i * LINES_PER_ORDER + line) % PRODUCTS], 1);
+            }
+            Long orderId = orderService.createOrder(lines).getId();
+            Long otherProductId = productIds[(i * 7 + 3) % PRODUCTS];
+            mutations.add(switch (i % 3) {
+                case 0 -> new OrderMutation(OrderMutation.Type.UPDATE, orderId, OrderLines.of(Map.of(otherProductId, 2)), null);
+                case 1 -> new OrderMutation(OrderMutation.Type.ADD_PRODUCTS, orderId, OrderLines.of(Map.of(otherProductId, 3)), null);
+                default -> new OrderMutation(OrderMutation.Type.REMOVE_PRODUCT, orderId, null, lines.keySet().iterator().next());
+            });
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        context.close();
+    }
+
+    @Benchmark
+    public int oneCallPerOperation() {
+        for (OrderMutation mutation : mutations) {
+            switch (mutation.op()) {
+                case UPDATE -> orderService.updateOrder(mutation.orderId(), mutation.products());
+                case ADD_PRODUCTS -> orderService.addProductsToOrder(mutation.orderId(), mutation.products());
+                case REMOVE_PRODUCT -> orderService.removeProductFromOrder(mutation.orderId(), mutation.productId());
+                case DELETE -> orderService.removeOrder(mutation.orderId());
+            }
+        }
+        return mutations.size();
+    }
+
+    @Benchmark
+    public List<OrderMutationResult> batchMutation() {
+        return orderBulkService.mutateOrders(mutations);
+    }
+}
@@ -0,0 +1,47 @@
+package com.example.order_management_system.benchmark;
+
+import com.example.order_management_system.OrderManagementSystemApplication;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.stream.Stream;
+
+// Boots the application against a private in-memory H2 database for one benchmark trial
+final class BenchmarkApplication {
+
+    private BenchmarkApplication() {
+    }
+
+    static ConfigurableApplicationContext start(String... extraProperties) {
+        return start(WebApplicationType.NONE, extraProperties);
+    }
+
+    // Also starts the embedded server on a random port, published as local.server.port
+    static ConfigurableApplicationContext startWeb(String... extraProperties) {
+        return start(WebApplicationType.SERVLET, extraProperties);
+    }
+
+    private static ConfigurableApplicationContext start(WebApplicationType webApplicationType, String... extraProperties) {
+        Map<String, String> properties = new LinkedHashMap<>();
+        Stream.concat(Stream.of(
+                        "spring.datasource.url=jdbc:h2:mem:benchmark;MODE=MySQL;DB_CLOSE_DELAY=-1;DB_CLOSE_ON_EXIT=FALSE",
+                        "spring.datasource.username=sa",
+                        "spring.datasource.password=",
+                        "spring.jpa.hibernate.ddl-auto=create-drop",
+                        "spring.main.banner-mode=off",
+                        "logging.level.root=WARN",
+                        "server.port=0"), Stream.of(extraProperties))
+                .map(property -> property.split("=", 2))
+                .forEach(keyAndValue -> properties.put(keyAndValue[0], keyAndValue[1]));
+        // Passed as command-line arguments so they win over any application.properties on the classpath
+        String[] arguments = properties.entrySet().stream()
+                .map(property -> "--" + property.getKey() + "=" + property.getValue())
+                .toArray(String[]::new);
+        return new SpringApplicationBuilder(OrderManagementSystemApplication.class)
+                .web(webApplicationType)
+                .run(arguments);
+    }
+}
@@ -0,0 +1,66 @@
+package com.example.order_management_system.benchmark;
+
+import com.example.order_management_system.service.OrderService;
+import com.example.order_management_system.service.ProductService;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+
+// A running application with a catalog of `catalogSize` products; orders are built with `orderSize` lines
+@State(Scope.Benchmark)
+public class CatalogState {
+
+    @Param({"1000", "20000"})
+    public int catalogSize;
+
+    @Param({"10", "500"})
+    public int orderSize;
+
+    public ConfigurableApplicationContext context;
+    public OrderService orderService;
+    public ProductService productService;
+    public long[] productIds;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        context = BenchmarkApplication.start();
+        orderService = context.getBean(OrderService.class);
+        productService = context.getBean(ProductService.class);
+
+        JdbcTemplate jdbcTemplate = context.getBean(JdbcTemplate.class);
+        List<Object[]> rows = new ArrayList<>(catalogSize);
+        for (int i = 0; i < catalogSize; i++) {
+            rows.add(new Object[]{"Product " + i, "Benchmark product " + i, 1.0 + i % 100});
+        }
+        jdbcTemplate.batchUpdate("INSERT INTO product (name, description, price) VALUES (?, ?, ?)", rows);
+        productIds = jdbcTemplate.queryForList("SELECT id FROM product ORDER BY id", Long.class).stream()
+                .mapToLong(Long::longValue)
+                .toArray();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        context.close();
+    }
+
+    // `count` distinct random catalog products with quantities between 1 and 5
+    public Map<Long, Integer> randomLines(int count) {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        Map<Long, Integer> lines = new LinkedHashMap<>();
+        while (lines.size() < count) {
+            lines.putIfAbsent(productIds[random.nextInt(productIds.length)], 1 + random.nextInt(5));
+        }
+        return lines;
+    }
+}
@@ -0,0 +1,77 @@
+package com.example.order_management_system.benchmark;
+
+import com.example.order_management_system.dto.OrderLines;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+// Binding an order request body to a boxed map versus the primitive order lines, including one pass over the
+// lines the way the order service walks them. Run with `-prof gc` to compare the bytes allocated per request
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class OrderLinesBenchmark {
+
+    @Param({"10", "500"})
+    public int orderSize;
+
+    private byte[] body;
+    private ObjectReader mapReader;
+    private ObjectReader orderLinesReader;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        ObjectMapper objectMapper = new ObjectMapper();
+        mapReader = objectMapper.readerFor(new TypeReference<Map<Long, Integer>>() {});
+        orderLinesReader = objectMapper.readerFor(OrderLines.class);
+
+        // Product IDs from a catalog of a million products, so most of them are outside the Long cache
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        StringBuilder json = new StringBuilder("{");
+        for (int i = 0; i < orderSize; i++) {
+            json.append(i == 0 ? "" : ",").append('"').append(1 + random.nextInt(1_000_000)).append("\":").append(1 + random.nextInt(5));
+        }
+        body = json.append('}').toString().getBytes(StandardCharsets.UTF_8);
+    }
+
+    @Benchmark
+    public long mapPayload() throws IOException {
+        Map<Long, Integer> productQuantities = mapReader.readValue(body);
+        long units = 0;
+        for (Map.Entry<Long, Integer> entry : productQuantities.entrySet()) {
+            units += entry.getKey() ^ entry.getValue();
+        }
+        return units;
+    }
+
+    @Benchmark
+    public long orderLinesPayload() throws IOException {
+        OrderLines lines = orderLinesReader.readValue(body);
+        long units = 0;
+        for (int line = 0; line < lines.size(); line++) {
+            units += lines.productId(line) ^ lines.quantity(line);
+        }
+        return units;
+    }
+}
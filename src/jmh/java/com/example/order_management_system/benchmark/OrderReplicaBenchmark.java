@@ -0,0 +1,111 @@
+package com.example.order_management_system.benchmark;
+
+import com.example.order_management_system.cache.OrderReadReplica;
+import com.example.order_management_system.dto.OrderView;
+import com.example.order_management_system.repository.OrderRepository;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.data.domain.Limit;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+// Order reads served by the in-memory replica versus the database, and how long the replica takes to load.
+// The load time of each trial is printed once the replica is ready
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgs = "-Xmx3g")
+public class OrderReplicaBenchmark {
+    private static final Logger log = LoggerFactory.getLogger(OrderReplicaBenchmark.class);
+
+    private static final int LINES_PER_ORDER = 5;
+    private static final int PRODUCTS = 1000;
+    private static final int PAGE_SIZE = 50;
+
+    @Param({"100000", "1000000"})
+    public int orders;
+
+    private static final String DATASOURCE = "spring.datasource.url=jdbc:h2:file:./target/benchmark-order-replica;MODE=MySQL;"
+            + "CACHE_SIZE=262144;DB_CLOSE_DELAY=-1;DB_CLOSE_ON_EXIT=FALSE";
+
+    private ConfigurableApplicationContext context;
+    private OrderReadReplica orderReadReplica;
+    private OrderRepository orderRepository;
+
+    @Setup(Level.Trial)
+    public void setUp() throws InterruptedException {
+        // The replica loads once the context has started, so the rows are generated by a context without it
+        ConfigurableApplicationContext generator = BenchmarkApplication.start(DATASOURCE, "spring.jpa.hibernate.ddl-auto=create");
+        JdbcTemplate jdbcTemplate = generator.getBean(JdbcTemplate.class);
+        jdbcTemplate.update("INSERT INTO product (id, name, description, price) "
+                + "SELECT x, CONCAT('Product ', x), 'Benchmark product', 1.0 + MOD(x, 100) FROM SYSTEM_RANGE(1, ?)", PRODUCTS);
+        jdbcTemplate.update("INSERT INTO orders (id, total, line_count, version) "
+                + "SELECT x, 0, ?, 0 FROM SYSTEM_RANGE(1, ?)", LINES_PER_ORDER, orders);
+        jdbcTemplate.update("INSERT INTO order_product (id, order_id, product_id, quantity) "
+                + "SELECT x, (x - 1) / ? + 1, MOD(x * 7919, ?) + 1, 1 FROM SYSTEM_RANGE(1, ?)", LINES_PER_ORDER, PRODUCTS, orders * LINES_PER_ORDER);
+
+        generator.close();
+
+        // A file-backed database, so it outlives the context that generated it
+        context = BenchmarkApplication.start(DATASOURCE, "spring.jpa.hibernate.ddl-auto=none", "oms.order-replica.enabled=true");
+        orderReadReplica = context.getBean(OrderReadReplica.class);
+        orderRepository = context.getBean(OrderRepository.class);
+        while (!orderReadReplica.isReady()) {
+            Thread.sleep(10);
+        }
+        log.info("Replica stats: {}", orderReadReplica.stats());
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        context.close();
+        Files.deleteIfExists(Path.of("target", "benchmark-order-replica.mv.db"));
+    }
+
+    private long randomOrderId() {
+        return 1 + ThreadLocalRandom.current().nextInt(orders);
+    }
+
+    @Benchmark
+    public OrderView replicaById() {
+        return orderReadReplica.get(randomOrderId()).orElseThrow();
+    }
+
+    @Benchmark
+    public OrderView databaseById() {
+        return OrderView.fromRows(orderRepository.findViewRowsById(randomOrderId())).get(0);
+    }
+
+    @Benchmark
+    public List<OrderView> replicaPage() {
+        return orderReadReplica.getPage(randomOrderId(), PAGE_SIZE);
+    }
+
+    @Benchmark
+    public List<OrderView> databasePage() {
+        List<Long> ids = orderRepository.findIdsAfter(randomOrderId(), Limit.of(PAGE_SIZE));
+        return ids.isEmpty() ? List.of() : OrderView.fromRows(orderRepository.findViewRowsByIdIn(ids));
+    }
+}
@@ -0,0 +1,111 @@
+package com.example.order_management_system.benchmark;
+
+import com.example.order_management_system.dto.ProductDeletionResult;
+import com.example.order_management_system.model.Order;
+import com.example.order_management_system.model.Product;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+// Latency of the OrderService and ProductService hot paths across order and catalog sizes
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class OrderServiceBenchmark {
+
+    // Orders read by getAllOrders
+    private static final int ORDER_BOOK_SIZE = 100;
+    // Orders that reference the product removed by deleteProduct
+    private static final int ORDERS_PER_DELETED_PRODUCT = 10;
+
+    // A freshly created order and a different set of lines to apply to it
+    @State(Scope.Thread)
+    public static class ExistingOrder {
+        Long orderId;
+        Long lineProductId;
+        Map<Long, Integer> otherLines;
+
+        @Setup(Level.Invocation)
+        public void setUp(CatalogState catalog) {
+            Order order = catalog.orderService.createOrder(catalog.randomLines(catalog.orderSize));
+            orderId = order.getId();
+            lineProductId = order.getOrderProducts().get(0).getProduct().getId();
+            otherLines = catalog.randomLines(catalog.orderSize);
+        }
+    }
+
+    @State(Scope.Thread)
+    public static class OrderBook {
+        @Setup(Level.Trial)
+        public void setUp(CatalogState catalog) {
+            for (int i = 0; i < ORDER_BOOK_SIZE; i++) {
+                catalog.orderService.createOrder(catalog.randomLines(catalog.orderSize));
+            }
+        }
+    }
+
+    // A new product that appears in a few orders, some of which it is the only line of
+    @State(Scope.Thread)
+    public static class ReferencedProduct {
+        Long productId;
+
+        @Setup(Level.Invocation)
+        public void setUp(CatalogState catalog) {
+            Product product = new Product();
+            product.setName("Discontinued");
+            product.setDescription("Deleted by the benchmark");
+            product.setPrice(1.0);
+            productId = catalog.productService.createProduct(product).getId();
+            for (int i = 0; i < ORDERS_PER_DELETED_PRODUCT; i++) {
+                Map<Long, Integer> lines = i % 2 == 0 ? catalog.randomLines(catalog.orderSize - 1) : new HashMap<>();
+                lines.put(productId, 1);
+                catalog.orderService.createOrder(lines);
+            }
+        }
+    }
+
+    @Benchmark
+    public Order createOrder(CatalogState catalog) {
+        return catalog.orderService.createOrder(catalog.randomLines(catalog.orderSize));
+    }
+
+    @Benchmark
+    public Order addProductsToOrder(CatalogState catalog, ExistingOrder order) {
+        return catalog.orderService.addProductsToOrder(order.orderId, order.otherLines);
+    }
+
+    @Benchmark
+    public Order updateOrder(CatalogState catalog, ExistingOrder order) {
+        return catalog.orderService.updateOrder(order.orderId, order.otherLines);
+    }
+
+    @Benchmark
+    public Order removeProductFromOrder(CatalogState catalog, ExistingOrder order) {
+        return catalog.orderService.removeProductFromOrder(order.orderId, order.lineProductId);
+    }
+
+    @Benchmark
+    public List<Order> getAllOrders(CatalogState catalog, OrderBook orderBook) {
+        return catalog.orderService.getAllOrders();
+    }
+
+    @Benchmark
+    public ProductDeletionResult deleteProduct(CatalogState catalog, ReferencedProduct product) {
+        return catalog.productService.deleteProduct(product.productId);
+    }
+}
@@ -0,0 +1,96 @@
+package com.example.order_management_system.benchmark;
+
+import com.example.order_management_system.repository.OrderRepository;
+import com.example.order_management_system.service.ProductService;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+// Cost of "orders containing product X" as the order_product table grows; pages should stay flat
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ProductOrdersBenchmark {
+
+    // Every order has this many lines and every product appears in lines / PRODUCTS orders
+    private static final int LINES_PER_ORDER = 10;
+    private static final int PRODUCTS = 1000;
+    private static final int PAGE_SIZE = 100;
+
+    @Param({"100000", "1000000", "10000000"})
+    public int lines;
+
+    private ConfigurableApplicationContext context;
+    private ProductService productService;
+    private OrderRepository orderRepository;
+    private int orders;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        // Backed by a file so tens of millions of rows do not have to fit in the heap
+        context = BenchmarkApplication.start(
+                "spring.datasource.url=jdbc:h2:file:./target/benchmark-product-orders;MODE=MySQL;CACHE_SIZE=262144;DB_CLOSE_DELAY=-1;DB_CLOSE_ON_EXIT=FALSE");
+        productService = context.getBean(ProductService.class);
+        orderRepository = context.getBean(OrderRepository.class);
+        orders = lines / LINES_PER_ORDER;
+
+        // Generated in the database, with the indexes already in place as they would be in production
+        JdbcTemplate jdbcTemplate = context.getBean(JdbcTemplate.class);
+        jdbcTemplate.update("INSERT INTO product (id, name, description, price) "
+                + "SELECT x, CONCAT('Product ', x), 'Benchmark product', 1.0 + MOD(x, 100) FROM SYSTEM_RANGE(1, ?)", PRODUCTS);
+        jdbcTemplate.update("INSERT INTO orders (id, total, line_count, version) "
+                + "SELECT x, 0, ?, 0 FROM SYSTEM_RANGE(1, ?)", LINES_PER_ORDER, orders);
+        jdbcTemplate.update("INSERT INTO order_product (id, order_id, product_id, quantity) "
+                + "SELECT x, (x - 1) / ? + 1, MOD(x - 1, ?) + 1, 1 FROM SYSTEM_RANGE(1, ?)", LINES_PER_ORDER, PRODUCTS, lines);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        context.close();
+        Files.deleteIfExists(Path.of("target", "benchmark-product-orders.mv.db"));
+    }
+
+    private long randomProductId() {
+        return 1 + ThreadLocalRandom.current().nextInt(PRODUCTS);
+    }
+
+    @Benchmark
+    public List<Long> firstPage() {
+        return productService.getOrderIdsPage(randomProductId(), 0L, PAGE_SIZE);
+    }
+
+    // A page starting at a random point of the product's orders, as reached by following next links
+    @Benchmark
+    public List<Long> pageAtRandomOffset() {
+        long afterId = ThreadLocalRandom.current().nextLong(orders);
+        return productService.getOrderIdsPage(randomProductId(), afterId, PAGE_SIZE);
+    }
+
+    // The unpaged query deleteProduct uses, which grows with the number of orders containing the product
+    @Benchmark
+    public List<Long> allOrderIds() {
+        return orderRepository.findOrderIdsByProductId(randomProductId());
+    }
+}
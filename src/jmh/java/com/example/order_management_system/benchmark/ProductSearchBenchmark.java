@@ -0,0 +1,134 @@
+package com.example.order_management_system.benchmark;
+
+import com.example.order_management_system.cache.ProductSearchIndex;
+import com.example.order_management_system.dto.ProductView;
+import com.example.order_management_system.repository.ProductRepository;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.data.domain.Limit;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+// Product searches answered by the in-memory index versus LIKE queries on the product table, and how long the index
+// takes to rebuild. Names and descriptions are drawn from a vocabulary of VOCABULARY words, so each word is in about
+// products * 11 / VOCABULARY products
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgs = "-Xmx3g")
+public class ProductSearchBenchmark {
+    private static final Logger log = LoggerFactory.getLogger(ProductSearchBenchmark.class);
+
+    private static final int VOCABULARY = 2000;
+    private static final int PAGE_SIZE = 50;
+
+    @Param({"10000", "100000"})
+    public int products;
+
+    private ConfigurableApplicationContext context;
+    private ProductSearchIndex productSearchIndex;
+    private ProductRepository productRepository;
+    private String[] vocabulary;
+
+    @Setup(Level.Trial)
+    public void setUp() throws InterruptedException {
+        context = BenchmarkApplication.start();
+        productSearchIndex = context.getBean(ProductSearchIndex.class);
+        productRepository = context.getBean(ProductRepository.class);
+        Random random = new Random(42);
+        vocabulary = new String[VOCABULARY];
+        for (int i = 0; i < VOCABULARY; i++) {
+            vocabulary[i] = "w" + Integer.toString(i, 36) + Integer.toString(random.nextInt(1 << 20), 36);
+        }
+        List<Object[]> rows = new ArrayList<>(products);
+        for (int i = 0; i < products; i++) {
+            rows.add(new Object[]{sentence(random, 3), sentence(random, 8), 1.0 + random.nextInt(10000) / 100.0});
+        }
+        context.getBean(JdbcTemplate.class).batchUpdate("INSERT INTO product (name, description, price) VALUES (?, ?, ?)", rows);
+        productSearchIndex.awaitReady(Duration.ofMinutes(1));
+        productSearchIndex.rebuild();
+        log.info("Search index stats: {}", productSearchIndex.stats());
+    }
+
+    private String sentence(Random random, int words) {
+        StringBuilder sentence = new StringBuilder();
+        for (int i = 0; i < words; i++) {
+            sentence.append(i == 0 ? "" : " ").append(vocabulary[random.nextInt(VOCABULARY)]);
+        }
+        return sentence.toString();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        context.close();
+    }
+
+    private String randomWord() {
+        return vocabulary[ThreadLocalRandom.current().nextInt(VOCABULARY)];
+    }
+
+    @Benchmark
+    public List<ProductView> indexWord() {
+        return productSearchIndex.search(List.of(randomWord()), -Double.MAX_VALUE, Double.MAX_VALUE, 0L, PAGE_SIZE);
+    }
+
+    @Benchmark
+    public List<ProductView> likeWord() {
+        return productRepository.searchViews("%" + randomWord() + "%", null, null, 0L, Limit.of(PAGE_SIZE));
+    }
+
+    @Benchmark
+    public List<ProductView> indexWordAndPrice() {
+        return productSearchIndex.search(List.of(randomWord()), 20.0, 30.0, 0L, PAGE_SIZE);
+    }
+
+    @Benchmark
+    public List<ProductView> likeWordAndPrice() {
+        return productRepository.searchViews("%" + randomWord() + "%", 20.0, 30.0, 0L, Limit.of(PAGE_SIZE));
+    }
+
+    // 1% of the catalog, so the index sorts the IDs of the range
+    @Benchmark
+    public List<ProductView> indexNarrowPrice() {
+        double from = 1.0 + ThreadLocalRandom.current().nextInt(99);
+        return productSearchIndex.search(List.of(), from, from + 1.0, 0L, PAGE_SIZE);
+    }
+
+    @Benchmark
+    public List<ProductView> likeNarrowPrice() {
+        double from = 1.0 + ThreadLocalRandom.current().nextInt(99);
+        return productRepository.searchViews("%", from, from + 1.0, 0L, Limit.of(PAGE_SIZE));
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.SingleShotTime)
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    @Warmup(iterations = 3)
+    @Measurement(iterations = 10)
+    public ProductSearchIndex rebuild() {
+        productSearchIndex.rebuild();
+        return productSearchIndex;
+    }
+}
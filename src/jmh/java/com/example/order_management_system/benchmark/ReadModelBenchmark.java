@@ -0,0 +1,66 @@
+package com.example.order_management_system.benchmark;
+
+import com.example.order_management_system.model.Order;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+// Read endpoints serialized from managed entities versus record read models built by constructor queries.
+// Run with -prof gc to compare the bytes allocated per operation (gc.alloc.rate.norm)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ReadModelBenchmark {
+
+    private static final int ORDER_BOOK_SIZE = 200;
+    private static final int PAGE_SIZE = 50;
+
+    @State(Scope.Benchmark)
+    public static class OrderBook {
+        ObjectMapper objectMapper;
+        long[] orderIds;
+
+        @Setup(Level.Trial)
+        public void setUp(CatalogState catalog) {
+            objectMapper = catalog.context.getBean(ObjectMapper.class);
+            orderIds = new long[ORDER_BOOK_SIZE];
+            for (int i = 0; i < ORDER_BOOK_SIZE; i++) {
+                Order order = catalog.orderService.createOrder(catalog.randomLines(catalog.orderSize));
+                orderIds[i] = order.getId();
+            }
+        }
+
+        long randomOrderId() {
+            return orderIds[ThreadLocalRandom.current().nextInt(orderIds.length)];
+        }
+    }
+
+    @Benchmark
+    public byte[] entityById(CatalogState catalog, OrderBook orderBook) throws Exception {
+        return orderBook.objectMapper.writeValueAsBytes(catalog.orderService.getOrderById(orderBook.randomOrderId()).orElseThrow());
+    }
+
+    @Benchmark
+    public byte[] viewById(CatalogState catalog, OrderBook orderBook) throws Exception {
+        return orderBook.objectMapper.writeValueAsBytes(catalog.orderService.getOrderViewById(orderBook.randomOrderId()).orElseThrow());
+    }
+
+    @Benchmark
+    public byte[] viewPage(CatalogState catalog, OrderBook orderBook) throws Exception {
+        return orderBook.objectMapper.writeValueAsBytes(catalog.orderService.getOrderViewsPage(0L, PAGE_SIZE));
+    }
+}
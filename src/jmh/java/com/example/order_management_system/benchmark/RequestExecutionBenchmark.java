@@ -0,0 +1,120 @@
+package com.example.order_management_system.benchmark;
+
+import com.example.order_management_system.model.Product;
+import com.example.order_management_system.service.OrderService;
+import com.example.order_management_system.service.ProductService;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+// Load test of the HTTP endpoints with many concurrent clients, on platform threads versus virtual threads
+// with the database concurrency limiter. Sample mode reports throughput and latency percentiles (p99 etc.).
+@BenchmarkMode(Mode.SampleTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 3)
+@Measurement(iterations = 5, time = 3)
+@Fork(1)
+@Threads(64)
+public class RequestExecutionBenchmark {
+
+    private static final int PRODUCTS = 200;
+    private static final int ORDERS = 500;
+    private static final int LINES_PER_ORDER = 5;
+
+    @State(Scope.Benchmark)
+    public static class Server {
+
+        @Param({"false", "true"})
+        public boolean virtualThreads;
+
+        ConfigurableApplicationContext context;
+        HttpClient client;
+        String baseUrl;
+        long[] productIds;
+        long[] orderIds;
+
+        @Setup(Level.Trial)
+        public void setUp() {
+            context = BenchmarkApplication.startWeb(
+                    "spring.threads.virtual.enabled=" + virtualThreads,
+                    "oms.db-limiter.enabled=" + virtualThreads);
+            baseUrl = "http://localhost:" + context.getEnvironment().getProperty("local.server.port");
+            client = HttpClient.newBuilder().version(HttpClient.Version.HTTP_1_1).build();
+
+            ProductService productService = context.getBean(ProductService.class);
+            productIds = new long[PRODUCTS];
+            for (int i = 0; i < PRODUCTS; i++) {
+                Product product = new Product();
+                product.setName("Product " + i);
+                product.setDescription("Load test product " + i);
+                product.setPrice(1.0 + i);
+                productIds[i] = productService.createProduct(product).getId();
+            }
+            OrderService orderService = context.getBean(OrderService.class);
+            orderIds = new long[ORDERS];
+            for (int i = 0; i < ORDERS; i++) {
+                orderIds[i] = orderService.createOrder(Map.of(
+                        productIds[i % PRODUCTS], 1,
+                        productIds[(i + 1) % PRODUCTS], 2,
+                        productIds[(i + 2) % PRODUCTS], 3,
+                        productIds[(i + 3) % PRODUCTS], 4,
+                        productIds[(i + 4) % PRODUCTS], 5)).getId();
+            }
+        }
+
+        @TearDown(Level.Trial)
+        public void tearDown() {
+            context.close();
+        }
+
+        String randomOrderBody() {
+            ThreadLocalRandom random = ThreadLocalRandom.current();
+            int first = random.nextInt(PRODUCTS - LINES_PER_ORDER);
+            StringBuilder body = new StringBuilder("{");
+            for (int i = 0; i < LINES_PER_ORDER; i++) {
+                if (i > 0) {
+                    body.append(',');
+                }
+                body.append('"').append(productIds[first + i]).append("\":").append(1 + random.nextInt(5));
+            }
+            return body.append('}').toString();
+        }
+    }
+
+    @Benchmark
+    public int getOrderById(Server server) throws IOException, InterruptedException {
+        long orderId = server.orderIds[ThreadLocalRandom.current().nextInt(server.orderIds.length)];
+        HttpRequest request = HttpRequest.newBuilder(URI.create(server.baseUrl + "/api/orders/" + orderId)).GET().build();
+        return server.client.send(request, HttpResponse.BodyHandlers.discarding()).statusCode();
+    }
+
+    @Benchmark
+    public int createOrder(Server server) throws IOException, InterruptedException {
+        HttpRequest request = HttpRequest.newBuilder(URI.create(server.baseUrl + "/api/orders"))
+                .header("Content-Type", "application/json")
+                .POST(HttpRequest.BodyPublishers.ofString(server.randomOrderBody()))
+                .build();
+        return server.client.send(request, HttpResponse.BodyHandlers.discarding()).statusCode();
+    }
+}
@@ -0,0 +1,131 @@
+package com.example.order_management_system.benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+// Cold start of the application in a fresh JVM with the default settings versus the prod profile (validated schema,
+// fixed pool, query caches and warmup). `startup` times SpringApplication.run, which returns once readiness is green;
+// `firstRequest` times the first GET /api/orders/{id} sent after that. Every fork measures a single start
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 0)
+@Measurement(iterations = 1)
+@Fork(5)
+public class StartupBenchmark {
+
+    private static final int PRODUCTS = 1000;
+    private static final int ORDERS = 20000;
+    private static final int LINES_PER_ORDER = 5;
+
+    // MySQL driver settings of the prod profile are passed to H2 too, which is told to ignore them
+    private static final String DATASOURCE = "spring.datasource.url=jdbc:h2:file:./target/benchmark-startup;MODE=MySQL;"
+            + "IGNORE_UNKNOWN_SETTINGS=TRUE;DB_CLOSE_DELAY=-1;DB_CLOSE_ON_EXIT=FALSE";
+
+    @State(Scope.Benchmark)
+    public static class Application {
+
+        @Param({"default", "prod"})
+        public String profile;
+
+        ConfigurableApplicationContext context;
+
+        // The database is generated once, in a JVM of its own, so none of the application's code is loaded or
+        // compiled in the measured one before it starts
+        @Setup(Level.Trial)
+        public void generate() throws IOException, InterruptedException {
+            if (Files.exists(Path.of("target", "benchmark-startup.mv.db"))) {
+                return;
+            }
+            Process generator = new ProcessBuilder(Path.of(System.getProperty("java.home"), "bin", "java").toString(),
+                    "-cp", System.getProperty("java.class.path"), Generator.class.getName())
+                    .inheritIO()
+                    .start();
+            if (generator.waitFor() != 0) {
+                throw new IllegalStateException("Could not generate the benchmark database");
+            }
+        }
+
+        ConfigurableApplicationContext start() {
+            if (profile.equals("prod")) {
+                return BenchmarkApplication.startWeb(DATASOURCE, "spring.profiles.active=prod", "spring.jpa.hibernate.ddl-auto=validate");
+            }
+            return BenchmarkApplication.startWeb(DATASOURCE, "spring.jpa.hibernate.ddl-auto=update");
+        }
+
+        @TearDown(Level.Iteration)
+        public void stop() {
+            if (context != null) {
+                context.close();
+                context = null;
+            }
+        }
+    }
+
+    @State(Scope.Benchmark)
+    public static class Started {
+
+        int port;
+
+        @Setup(Level.Iteration)
+        public void start(Application application) {
+            application.context = application.start();
+            port = Integer.parseInt(application.context.getEnvironment().getProperty("local.server.port"));
+        }
+    }
+
+    public static final class Generator {
+
+        public static void main(String[] args) {
+            ConfigurableApplicationContext context = BenchmarkApplication.start(DATASOURCE, "spring.jpa.hibernate.ddl-auto=create");
+            JdbcTemplate jdbcTemplate = context.getBean(JdbcTemplate.class);
+            jdbcTemplate.update("INSERT INTO product (id, name, description, price) "
+                    + "SELECT x, CONCAT('Product ', x), 'Benchmark product', 1.0 + MOD(x, 100) FROM SYSTEM_RANGE(1, ?)", PRODUCTS);
+            jdbcTemplate.update("INSERT INTO orders (id, total, line_count, version) "
+                    + "SELECT x, 0, ?, 0 FROM SYSTEM_RANGE(1, ?)", LINES_PER_ORDER, ORDERS);
+            jdbcTemplate.update("INSERT INTO order_product (id, order_id, product_id, quantity) "
+                    + "SELECT x, (x - 1) / ? + 1, MOD(x * 7919, ?) + 1, 1 FROM SYSTEM_RANGE(1, ?)", LINES_PER_ORDER, PRODUCTS, ORDERS * LINES_PER_ORDER);
+            context.close();
+        }
+    }
+
+    @Benchmark
+    public ConfigurableApplicationContext startup(Application application) {
+        application.context = application.start();
+        return application.context;
+    }
+
+    // A bare socket, so the measured request does not include loading an HTTP client
+    @Benchmark
+    public long firstRequest(Started started) throws IOException {
+        try (Socket socket = new Socket("localhost", started.port)) {
+            OutputStream request = socket.getOutputStream();
+            request.write(("GET /api/orders/" + (ORDERS / 2) + " HTTP/1.1\r\nHost: localhost\r\nConnection: close\r\n\r\n")
+                    .getBytes(StandardCharsets.US_ASCII));
+            request.flush();
+            InputStream response = socket.getInputStream();
+            return response.transferTo(OutputStream.nullOutputStream());
+        }
+    }
+}
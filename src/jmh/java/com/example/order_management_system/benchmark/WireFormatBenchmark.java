@@ -0,0 +1,100 @@
+package com.example.order_management_system.benchmark;
+
+import com.example.order_management_system.dto.OrderView;
+import com.example.order_management_system.service.OrderService;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.http.converter.cbor.MappingJackson2CborHttpMessageConverter;
+import org.springframework.http.converter.smile.MappingJackson2SmileHttpMessageConverter;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.GZIPOutputStream;
+
+// Serialization CPU per response of a single order and of a list of orders in each encoding the order endpoints
+// offer, with and without gzip. The bytes each response puts on the wire are printed at the start of the trial.
+// Run with -prof gc to also compare the bytes allocated per response (gc.alloc.rate.norm)
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class WireFormatBenchmark {
+    private static final Logger log = LoggerFactory.getLogger(WireFormatBenchmark.class);
+
+    private static final int LINES_PER_ORDER = 10;
+
+    @Param({"json", "json+gzip", "smile", "smile+gzip", "cbor", "cbor+gzip"})
+    public String encoding;
+
+    // Orders per response
+    @Param({"1", "100"})
+    public int orders;
+
+    private ConfigurableApplicationContext context;
+    private ObjectMapper objectMapper;
+    private boolean gzip;
+    private Object response;
+    private final ByteArrayOutputStream buffer = new ByteArrayOutputStream(1 << 20);
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        context = BenchmarkApplication.start();
+        JdbcTemplate jdbcTemplate = context.getBean(JdbcTemplate.class);
+        jdbcTemplate.update("INSERT INTO product (id, name, description, price) "
+                + "SELECT x, CONCAT('Product ', x), CONCAT('Benchmark product number ', x), 1.0 + MOD(x, 100) FROM SYSTEM_RANGE(1, 1000)");
+        jdbcTemplate.update("INSERT INTO orders (id, total, line_count, version) SELECT x, 0, ?, 0 FROM SYSTEM_RANGE(1, ?)",
+                LINES_PER_ORDER, orders);
+        jdbcTemplate.update("INSERT INTO order_product (id, order_id, product_id, quantity) "
+                + "SELECT x, (x - 1) / ? + 1, MOD(x * 7919, 1000) + 1, 1 + MOD(x, 7) FROM SYSTEM_RANGE(1, ?)", LINES_PER_ORDER, orders * LINES_PER_ORDER);
+        List<OrderView> orderViews = context.getBean(OrderService.class).getAllOrderViews();
+        response = orders == 1 ? orderViews.get(0) : orderViews;
+
+        String format = encoding.replace("+gzip", "");
+        gzip = encoding.endsWith("+gzip");
+        objectMapper = switch (format) {
+            case "smile" -> context.getBean(MappingJackson2SmileHttpMessageConverter.class).getObjectMapper();
+            case "cbor" -> context.getBean(MappingJackson2CborHttpMessageConverter.class).getObjectMapper();
+            default -> context.getBean(ObjectMapper.class);
+        };
+        log.info("Bytes on the wire for {} orders as {}: {}", orders, encoding, serialize());
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        context.close();
+    }
+
+    @Benchmark
+    public int serialize() throws IOException {
+        buffer.reset();
+        if (!gzip) {
+            objectMapper.writeValue(buffer, response);
+            return buffer.size();
+        }
+        try (OutputStream out = new GZIPOutputStream(buffer)) {
+            objectMapper.writeValue(out, response);
+        }
+        return buffer.size();
+    }
+}
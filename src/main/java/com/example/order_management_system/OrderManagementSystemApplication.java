@@ -2,8 +2,14 @@ package com.example.order_management_system;
 
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
+import org.springframework.core.Ordered;
+import org.springframework.retry.annotation.EnableRetry;
+import org.springframework.scheduling.annotation.EnableScheduling;
 
 @SpringBootApplication
+@EnableScheduling
+// Retries must wrap the transaction so every attempt starts a fresh one
+@EnableRetry(order = Ordered.HIGHEST_PRECEDENCE)
 public class OrderManagementSystemApplication {
     public static void main(String[] args) {
         SpringApplication.run(OrderManagementSystemApplication.class, args);
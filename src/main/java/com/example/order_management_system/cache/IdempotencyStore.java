@@ -0,0 +1,275 @@
+package com.example.order_management_system.cache;
+
+import com.example.order_management_system.dto.IdempotentResponse;
+import com.example.order_management_system.model.IdempotencyRecord;
+import com.example.order_management_system.repository.IdempotencyRecordRepository;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.HashMap;
+import java.util.HexFormat;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+// Responses of write requests sent with an Idempotency-Key, so a client retrying after a timeout gets the original
+// response instead of creating the order twice. Responses are kept in a bounded cache for oms.idempotency.ttl and,
+// with oms.idempotency.database.enabled, in the idempotency_key table shared by all instances. Requests with the same
+// key that arrive while the first is running wait for its response instead of repeating the work; a key reused with
+// a different body is refused with 422
+@Component
+public class IdempotencyStore implements MeterBinder {
+
+    private static final Logger log = LoggerFactory.getLogger(IdempotencyStore.class);
+
+    public static final String REPLAYED_HEADER = "Idempotent-Replayed";
+    private static final int MAX_KEY_LENGTH = 255;
+
+    private record InFlight(String fingerprint, CompletableFuture<IdempotentResponse> response) {
+    }
+
+    private final Cache<String, IdempotentResponse> responses;
+    private final Map<String, InFlight> inFlight = new ConcurrentHashMap<>();
+    private final IdempotencyRecordRepository idempotencyRecordRepository;
+    private final TransactionTemplate transactionTemplate;
+    private final ObjectMapper objectMapper;
+    private final Duration ttl;
+    private final Duration waitTimeout;
+    private final boolean databaseEnabled;
+    private final Duration claimTimeout;
+    private final LongAdder replayed = new LongAdder();
+    private final LongAdder coalesced = new LongAdder();
+    private final LongAdder mismatched = new LongAdder();
+
+    public IdempotencyStore(IdempotencyRecordRepository idempotencyRecordRepository, PlatformTransactionManager transactionManager,
+                            ObjectMapper objectMapper,
+                            @Value("${oms.idempotency.maximum-size:100000}") long maximumSize,
+                            @Value("${oms.idempotency.ttl:24h}") Duration ttl,
+                            @Value("${oms.idempotency.wait-timeout:30s}") Duration waitTimeout,
+                            @Value("${oms.idempotency.database.enabled:false}") boolean databaseEnabled,
+                            @Value("${oms.idempotency.database.claim-timeout:5m}") Duration claimTimeout) {
+        this.idempotencyRecordRepository = idempotencyRecordRepository;
+        // Claims commit on their own, whatever transaction the caller is in
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.transactionTemplate.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+        this.objectMapper = objectMapper;
+        this.responses = Caffeine.newBuilder().maximumSize(maximumSize).expireAfterWrite(ttl).recordStats().build();
+        this.ttl = ttl;
+        this.waitTimeout = waitTimeout;
+        this.databaseEnabled = databaseEnabled;
+        this.claimTimeout = claimTimeout;
+    }
+
+    // Hash of the parts of a request that must match for a retry to be answered with the stored response
+    public static String fingerprint(String request) {
+        try {
+            return HexFormat.of().formatHex(MessageDigest.getInstance("SHA-256").digest(request.getBytes(StandardCharsets.UTF_8)));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    // Run the action once per key of the scope (the endpoint); without a key it simply runs
+    public ResponseEntity<Map<String, String>> execute(String scope, String key, String fingerprint,
+                                                       Supplier<ResponseEntity<Map<String, String>>> action) {
+        if (key == null) {
+            return action.get();
+        }
+        if (key.isBlank() || key.length() > MAX_KEY_LENGTH) {
+            return failure(HttpStatus.BAD_REQUEST, "The Idempotency-Key header must be 1 to " + MAX_KEY_LENGTH + " characters long.");
+        }
+        String id = scope + " " + key;
+        IdempotentResponse stored = responses.getIfPresent(id);
+        if (stored != null) {
+            return replay(stored, fingerprint);
+        }
+        InFlight own = new InFlight(fingerprint, new CompletableFuture<>());
+        InFlight running = inFlight.putIfAbsent(id, own);
+        if (running != null) {
+            return join(running, fingerprint);
+        }
+        String recordId = fingerprint(id);
+        boolean claimed = false;
+        try {
+            // The first request may have finished between the cache lookup and taking its place
+            stored = responses.getIfPresent(id);
+            if (stored == null && databaseEnabled) {
+                IdempotencyRecord existing = claim(recordId, fingerprint);
+                if (existing != null && existing.getStatus() == null) {
+                    // Claimed by a request running on another instance
+                    ResponseEntity<Map<String, String>> response = existing.getFingerprint().equals(fingerprint)
+                            ? failure(HttpStatus.CONFLICT, "A request with this Idempotency-Key is still being processed, please retry.")
+                            : mismatch();
+                    own.response().complete(toIdempotentResponse(fingerprint, response));
+                    return response;
+                }
+                claimed = existing == null;
+                stored = existing == null ? null : read(existing);
+                if (stored != null) {
+                    responses.put(id, stored);
+                }
+            }
+            if (stored != null) {
+                own.response().complete(stored);
+                return replay(stored, fingerprint);
+            }
+
+            ResponseEntity<Map<String, String>> response = action.get();
+            IdempotentResponse result = toIdempotentResponse(fingerprint, response);
+            if (isFinal(result.status())) {
+                responses.put(id, result);
+                if (claimed) {
+                    idempotencyRecordRepository.complete(recordId, result.status(), objectMapper.writeValueAsString(result), Instant.now().plus(ttl));
+                    claimed = false;
+                }
+            }
+            own.response().complete(result);
+            return response;
+        } catch (JsonProcessingException e) {
+            own.response().completeExceptionally(e);
+            throw new IllegalStateException("Could not store the response", e);
+        } catch (RuntimeException e) {
+            own.response().completeExceptionally(e);
+            throw e;
+        } finally {
+            if (claimed) {
+                idempotencyRecordRepository.release(recordId);
+            }
+            inFlight.remove(id, own);
+        }
+    }
+
+    // Server errors and responses asking to retry later are not kept, so a retry runs the request again
+    private static boolean isFinal(int status) {
+        return status < 500 && status != HttpStatus.CONFLICT.value() && status != HttpStatus.TOO_MANY_REQUESTS.value();
+    }
+
+    // Insert the claim; returns null once claimed, or the record of whoever claimed the key first
+    private IdempotencyRecord claim(String recordId, String fingerprint) {
+        while (true) {
+            try {
+                transactionTemplate.executeWithoutResult(status -> idempotencyRecordRepository.saveAndFlush(
+                        IdempotencyRecord.claim(recordId, fingerprint, Instant.now().plus(claimTimeout))));
+                return null;
+            } catch (DataIntegrityViolationException e) {
+                IdempotencyRecord existing = transactionTemplate.execute(status -> idempotencyRecordRepository.findById(recordId).orElse(null));
+                // Retry the claim when the record was released or has expired, e.g. left behind by a crashed instance
+                if (existing != null && existing.getExpiresAt().isAfter(Instant.now())) {
+                    return existing;
+                }
+                if (existing != null) {
+                    idempotencyRecordRepository.deleteIfExpired(recordId, Instant.now());
+                }
+            }
+        }
+    }
+
+    private IdempotentResponse read(IdempotencyRecord record) {
+        try {
+            return objectMapper.readValue(record.getResponse(), IdempotentResponse.class);
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("Could not read the stored response", e);
+        }
+    }
+
+    private ResponseEntity<Map<String, String>> join(InFlight running, String fingerprint) {
+        if (!running.fingerprint().equals(fingerprint)) {
+            return mismatch();
+        }
+        coalesced.increment();
+        try {
+            return toResponse(running.response().get(waitTimeout.toMillis(), TimeUnit.MILLISECONDS));
+        } catch (TimeoutException e) {
+            return failure(HttpStatus.CONFLICT, "A request with this Idempotency-Key is still being processed, please retry.");
+        } catch (ExecutionException e) {
+            return failure(HttpStatus.INTERNAL_SERVER_ERROR, "An error occurred while processing the request.");
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return failure(HttpStatus.SERVICE_UNAVAILABLE, "Interrupted while waiting for the request with this Idempotency-Key.");
+        }
+    }
+
+    private ResponseEntity<Map<String, String>> replay(IdempotentResponse stored, String fingerprint) {
+        if (!stored.fingerprint().equals(fingerprint)) {
+            return mismatch();
+        }
+        replayed.increment();
+        return toResponse(stored);
+    }
+
+    private ResponseEntity<Map<String, String>> mismatch() {
+        mismatched.increment();
+        return failure(HttpStatus.UNPROCESSABLE_ENTITY, "The Idempotency-Key was already used with a different request body.");
+    }
+
+    private static ResponseEntity<Map<String, String>> toResponse(IdempotentResponse stored) {
+        HttpHeaders headers = new HttpHeaders();
+        stored.headers().forEach(headers::add);
+        headers.add(REPLAYED_HEADER, "true");
+        return ResponseEntity.status(stored.status()).headers(headers).body(stored.body());
+    }
+
+    // The order endpoints only set single-valued headers
+    private static IdempotentResponse toIdempotentResponse(String fingerprint, ResponseEntity<Map<String, String>> response) {
+        Map<String, String> headers = new LinkedHashMap<>();
+        response.getHeaders().forEach((name, values) -> headers.put(name, values.get(0)));
+        return new IdempotentResponse(fingerprint, response.getStatusCode().value(), headers, response.getBody());
+    }
+
+    private static ResponseEntity<Map<String, String>> failure(HttpStatus status, String message) {
+        Map<String, String> response = new HashMap<>();
+        response.put("status", "failure");
+        response.put("message", message);
+        return ResponseEntity.status(status).body(response);
+    }
+
+    @Scheduled(initialDelayString = "${oms.idempotency.database.purge-interval:PT10M}",
+            fixedDelayString = "${oms.idempotency.database.purge-interval:PT10M}")
+    public void purgeExpired() {
+        if (databaseEnabled) {
+            int purged = idempotencyRecordRepository.deleteExpired(Instant.now());
+            if (purged > 0) {
+                log.info("Purged {} expired idempotency keys", purged);
+            }
+        }
+    }
+
+    // Cache meters as cache.* with cache=idempotency, plus how often responses were replayed, duplicates were
+    // coalesced and keys were reused with another body
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        CaffeineCacheMetrics.monitor(registry, responses, "idempotency");
+        FunctionCounter.builder("oms.idempotency.replayed", replayed, LongAdder::sum).register(registry);
+        FunctionCounter.builder("oms.idempotency.coalesced", coalesced, LongAdder::sum).register(registry);
+        FunctionCounter.builder("oms.idempotency.mismatched", mismatched, LongAdder::sum).register(registry);
+    }
+}
@@ -0,0 +1,422 @@
+package com.example.order_management_system.cache;
+
+import com.example.order_management_system.dto.OrderLineView;
+import com.example.order_management_system.dto.OrderReplicaCheck;
+import com.example.order_management_system.dto.OrderView;
+import com.example.order_management_system.dto.ProductView;
+import com.example.order_management_system.repository.OrderRepository;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.SmartLifecycle;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.OptionalLong;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.BlockingDeque;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingDeque;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+
+// Optional in-process copy of every order, held as the read models the API returns, for read-heavy dashboards.
+// Readers get lock-free lookups from an immutable snapshot. Write paths report the orders they touched once their
+// transaction commits, and a single applier thread reloads those orders and swaps in a new snapshot, so reads trail
+// writes by the time it takes to apply them. Until the parallel startup load finishes, reads go to the database
+@Component
+public class OrderReadReplica implements SmartLifecycle, MeterBinder {
+    private static final Logger log = LoggerFactory.getLogger(OrderReadReplica.class);
+
+    // Orders reloaded per query when applying changes or re-checking differences
+    private static final int RELOAD_CHUNK_SIZE = 1000;
+    private static final long RETRY_DELAY_MS = 1000;
+
+    private sealed interface Change permits OrdersChanged, ProductChanged, RangeChanged, Barrier {
+    }
+
+    private record OrdersChanged(Collection<Long> orderIds) implements Change {
+    }
+
+    private record ProductChanged(Long productId) implements Change {
+    }
+
+    private record RangeChanged(long fromId, long toId) implements Change {
+    }
+
+    // Released once every change queued before it has been applied
+    private record Barrier(CountDownLatch applied) implements Change {
+    }
+
+    private final OrderRepository orderRepository;
+    private final boolean enabled;
+    private final int loadThreads;
+
+    private volatile SortedLongMap<OrderView> orders = SortedLongMap.empty();
+    // One shared instance per product for every line that references it; only touched by the applier thread
+    private SortedLongMap<ProductView> products = SortedLongMap.empty();
+    private final BlockingDeque<Change> changes = new LinkedBlockingDeque<>();
+    private final LongAdder appliedChanges = new LongAdder();
+    private volatile boolean ready;
+    private volatile boolean running;
+    private volatile long loadMillis;
+    private Thread applier;
+
+    public OrderReadReplica(OrderRepository orderRepository,
+                            @Value("${oms.order-replica.enabled:false}") boolean enabled,
+                            @Value("${oms.order-replica.load-threads:4}") int loadThreads) {
+        this.orderRepository = orderRepository;
+        this.enabled = enabled;
+        this.loadThreads = loadThreads;
+    }
+
+    // Whether reads can be served from the replica; false while it is disabled or still loading
+    public boolean isReady() {
+        return ready;
+    }
+
+    public Optional<OrderView> get(Long orderId) {
+        return Optional.ofNullable(orders.get(orderId));
+    }
+
+    public List<OrderView> getAll() {
+        return orders.values();
+    }
+
+    public List<OrderView> getPage(Long afterId, int size) {
+        return orders.valuesAfter(afterId, size);
+    }
+
+    public void forEach(Consumer<OrderView> consumer) {
+        orders.forEach(consumer);
+    }
+
+    // Reload these orders once the surrounding transaction commits, or right away outside of one
+    public void refreshAfterCommit(Collection<Long> orderIds) {
+        if (!orderIds.isEmpty()) {
+            queueAfterCommit(new OrdersChanged(List.copyOf(orderIds)));
+        }
+    }
+
+    // Reload every order that contains the product, and drop the product if it is gone
+    public void refreshProductAfterCommit(Long productId) {
+        queueAfterCommit(new ProductChanged(productId));
+    }
+
+    // Reload the orders of an ID range the replica holds, e.g. after a bulk update of their totals
+    public void refreshRangeAfterCommit(long fromId, long toId) {
+        queueAfterCommit(new RangeChanged(fromId, toId));
+    }
+
+    private void queueAfterCommit(Change change) {
+        if (!enabled) {
+            return;
+        }
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    changes.add(change);
+                }
+            });
+        } else {
+            changes.add(change);
+        }
+    }
+
+    // Wait until every change reported so far is visible to readers; false if that took longer than the timeout
+    public boolean awaitApplied(Duration timeout) throws InterruptedException {
+        if (!running) {
+            return false;
+        }
+        Barrier barrier = new Barrier(new CountDownLatch(1));
+        changes.add(barrier);
+        return barrier.applied().await(timeout.toMillis(), TimeUnit.MILLISECONDS);
+    }
+
+    private void applyLoop() {
+        while (running && !ready) {
+            try {
+                load();
+            } catch (RuntimeException e) {
+                log.warn("Could not load the order replica, retrying in {} ms: {}", RETRY_DELAY_MS, e.getMessage());
+                if (!pause()) {
+                    return;
+                }
+            }
+        }
+        List<Change> batch = new ArrayList<>();
+        while (running) {
+            Change first;
+            try {
+                first = changes.poll(100, TimeUnit.MILLISECONDS);
+            } catch (InterruptedException e) {
+                return;
+            }
+            if (first == null) {
+                continue;
+            }
+            batch.add(first);
+            changes.drainTo(batch);
+            try {
+                apply(batch);
+            } catch (RuntimeException e) {
+                // Put the batch back in front of anything queued since, so changes keep their order
+                log.warn("Could not apply {} changes to the order replica, retrying in {} ms: {}", batch.size(), RETRY_DELAY_MS, e.getMessage());
+                for (int i = batch.size() - 1; i >= 0; i--) {
+                    changes.addFirst(batch.get(i));
+                }
+                if (!pause()) {
+                    return;
+                }
+            }
+            batch.clear();
+        }
+    }
+
+    private static boolean pause() {
+        try {
+            Thread.sleep(RETRY_DELAY_MS);
+            return true;
+        } catch (InterruptedException e) {
+            return false;
+        }
+    }
+
+    // Load segment-aligned ID ranges in parallel, one query each, and join them into the first snapshot.
+    // Changes that commit meanwhile are queued and applied right after, so none of them is missed
+    private void load() {
+        long startedAt = System.nanoTime();
+        Optional<Long> minId = orderRepository.findMinId();
+        Optional<Long> maxId = orderRepository.findMaxId();
+        Map<Long, ProductView> interned = new ConcurrentHashMap<>();
+        SortedLongMap<OrderView> loaded = SortedLongMap.empty();
+        if (minId.isPresent() && maxId.isPresent()) {
+            ExecutorService loaders = Executors.newFixedThreadPool(loadThreads);
+            try {
+                List<Future<SortedLongMap<OrderView>>> parts = new ArrayList<>();
+                for (long segment = SortedLongMap.segmentOf(minId.get()); segment <= SortedLongMap.segmentOf(maxId.get()); segment++) {
+                    long fromId = segment << SortedLongMap.SEGMENT_BITS;
+                    long toId = fromId + (1L << SortedLongMap.SEGMENT_BITS) - 1;
+                    parts.add(loaders.submit(() -> loadRange(fromId, toId, interned)));
+                }
+                List<SortedLongMap<OrderView>> maps = new ArrayList<>(parts.size());
+                for (Future<SortedLongMap<OrderView>> part : parts) {
+                    maps.add(part.get());
+                }
+                loaded = SortedLongMap.concat(maps);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IllegalStateException("Interrupted while loading the order replica", e);
+            } catch (ExecutionException e) {
+                throw e.getCause() instanceof RuntimeException runtimeException ? runtimeException : new IllegalStateException(e.getCause());
+            } finally {
+                loaders.shutdownNow();
+            }
+        }
+        products = SortedLongMap.<ProductView>empty().with(interned);
+        orders = loaded;
+        ready = true;
+        loadMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startedAt);
+        log.info("Loaded {} orders with {} products into the order replica in {} ms", loaded.size(), products.size(), loadMillis);
+    }
+
+    private SortedLongMap<OrderView> loadRange(long fromId, long toId, Map<Long, ProductView> interned) {
+        Map<Long, OrderView> range = new HashMap<>();
+        for (OrderView order : OrderView.fromRows(orderRepository.findViewRowsBetween(fromId, toId))) {
+            range.put(order.id(), intern(order, interned));
+        }
+        return SortedLongMap.<OrderView>empty().with(range);
+    }
+
+    private void apply(List<Change> batch) {
+        Set<Long> orderIds = new HashSet<>();
+        Map<Long, ProductView> productChanges = new HashMap<>();
+        List<CountDownLatch> barriers = new ArrayList<>();
+        for (Change change : batch) {
+            switch (change) {
+                case OrdersChanged ordersChanged -> orderIds.addAll(ordersChanged.orderIds());
+                case ProductChanged productChanged -> {
+                    // Dropped unless a reloaded line brings it back, so a deleted product does not linger
+                    productChanges.put(productChanged.productId(), null);
+                    orderIds.addAll(orderRepository.findOrderIdsByProductId(productChanged.productId()));
+                }
+                case RangeChanged rangeChanged -> {
+                    for (long orderId : orders.keysBetween(rangeChanged.fromId(), rangeChanged.toId())) {
+                        orderIds.add(orderId);
+                    }
+                }
+                case Barrier barrier -> barriers.add(barrier.applied());
+            }
+        }
+        Map<Long, OrderView> orderChanges = new HashMap<>();
+        List<Long> ids = new ArrayList<>(orderIds);
+        for (int from = 0; from < ids.size(); from += RELOAD_CHUNK_SIZE) {
+            List<Long> chunk = ids.subList(from, Math.min(ids.size(), from + RELOAD_CHUNK_SIZE));
+            // Orders that are no longer in the database stay mapped to null and are removed
+            chunk.forEach(orderId -> orderChanges.put(orderId, null));
+            for (OrderView order : OrderView.fromRows(orderRepository.findViewRowsByIdIn(chunk))) {
+                orderChanges.put(order.id(), intern(order, productChanges));
+            }
+        }
+        products = products.with(productChanges);
+        orders = orders.with(orderChanges);
+        appliedChanges.add(batch.size() - barriers.size());
+        barriers.forEach(CountDownLatch::countDown);
+    }
+
+    // Replace the product of every line with the instance already held for it, when it is unchanged
+    private OrderView intern(OrderView order, Map<Long, ProductView> productChanges) {
+        List<OrderLineView> lines = new ArrayList<>(order.orderProducts().size());
+        for (OrderLineView line : order.orderProducts()) {
+            lines.add(new OrderLineView(line.id(), intern(line.product(), productChanges), line.quantity()));
+        }
+        return new OrderView(order.id(), lines, order.total(), order.lineCount(), order.version());
+    }
+
+    private ProductView intern(ProductView product, Map<Long, ProductView> productChanges) {
+        ProductView known = productChanges.containsKey(product.id()) ? productChanges.get(product.id()) : products.get(product.id());
+        if (product.equals(known)) {
+            return known;
+        }
+        ProductView raced = productChanges.putIfAbsent(product.id(), product);
+        return product.equals(raced) ? raced : product;
+    }
+
+    // Compare every order in the database with the replica, one segment-aligned ID range at a time. Differences can
+    // come from changes still being applied, so they are re-read once those are in and only lasting ones are
+    // reported; with `repair` those are reloaded
+    public OrderReplicaCheck check(boolean repair) throws InterruptedException {
+        if (!ready) {
+            throw new IllegalStateException("The order replica is not loaded");
+        }
+        awaitApplied(Duration.ofSeconds(30));
+        SortedLongMap<OrderView> snapshot = orders;
+        OptionalLong firstKey = snapshot.firstKey();
+        OptionalLong lastKey = snapshot.lastKey();
+        long minId = Math.min(orderRepository.findMinId().orElse(Long.MAX_VALUE), firstKey.orElse(Long.MAX_VALUE));
+        long maxId = Math.max(orderRepository.findMaxId().orElse(Long.MIN_VALUE), lastKey.orElse(Long.MIN_VALUE));
+        Set<Long> suspects = new TreeSet<>();
+        long checked = 0;
+        for (long segment = SortedLongMap.segmentOf(minId); minId <= maxId && segment <= SortedLongMap.segmentOf(maxId); segment++) {
+            long fromId = segment << SortedLongMap.SEGMENT_BITS;
+            long toId = fromId + (1L << SortedLongMap.SEGMENT_BITS) - 1;
+            Set<Long> seen = new HashSet<>();
+            for (OrderView order : OrderView.fromRows(orderRepository.findViewRowsBetween(fromId, toId))) {
+                checked++;
+                seen.add(order.id());
+                if (!order.equals(snapshot.get(order.id()))) {
+                    suspects.add(order.id());
+                }
+            }
+            for (long orderId : snapshot.keysBetween(fromId, toId)) {
+                if (!seen.contains(orderId)) {
+                    suspects.add(orderId);
+                }
+            }
+        }
+
+        awaitApplied(Duration.ofSeconds(30));
+        snapshot = orders;
+        List<Long> missing = new ArrayList<>();
+        List<Long> stale = new ArrayList<>();
+        List<Long> unexpected = new ArrayList<>();
+        List<Long> ids = new ArrayList<>(suspects);
+        for (int from = 0; from < ids.size(); from += RELOAD_CHUNK_SIZE) {
+            List<Long> chunk = ids.subList(from, Math.min(ids.size(), from + RELOAD_CHUNK_SIZE));
+            Map<Long, OrderView> current = new HashMap<>();
+            OrderView.fromRows(orderRepository.findViewRowsByIdIn(chunk)).forEach(order -> current.put(order.id(), order));
+            for (Long orderId : chunk) {
+                OrderView inDatabase = current.get(orderId);
+                OrderView inReplica = snapshot.get(orderId);
+                if (inDatabase == null && inReplica != null) {
+                    unexpected.add(orderId);
+                } else if (inDatabase != null && inReplica == null) {
+                    missing.add(orderId);
+                } else if (inDatabase != null && !inDatabase.equals(inReplica)) {
+                    stale.add(orderId);
+                }
+            }
+        }
+        boolean repaired = repair && (!missing.isEmpty() || !stale.isEmpty() || !unexpected.isEmpty());
+        if (repaired) {
+            List<Long> differing = new ArrayList<>(missing);
+            differing.addAll(stale);
+            differing.addAll(unexpected);
+            changes.add(new OrdersChanged(differing));
+        }
+        return new OrderReplicaCheck(checked, missing, stale, unexpected, repaired);
+    }
+
+    public Map<String, Object> stats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("enabled", enabled);
+        if (enabled) {
+            stats.put("ready", ready);
+            stats.put("orders", orders.size());
+            stats.put("products", products.size());
+            stats.put("pendingChanges", changes.size());
+            stats.put("appliedChanges", appliedChanges.sum());
+            stats.put("loadMillis", loadMillis);
+        }
+        return stats;
+    }
+
+    // Starts loading in the background; the application serves reads from the database until it is done
+    @Override
+    public void start() {
+        if (!enabled) {
+            return;
+        }
+        running = true;
+        applier = Thread.ofPlatform().name("order-replica-applier").daemon().start(this::applyLoop);
+    }
+
+    @Override
+    public void stop() {
+        running = false;
+        ready = false;
+        applier.interrupt();
+        try {
+            applier.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    @Override
+    public boolean isRunning() {
+        return running;
+    }
+
+    // Publishes the replica size and how far it trails the write paths
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        if (enabled) {
+            Gauge.builder("oms.order-replica.orders", this, replica -> replica.orders.size()).register(registry);
+            Gauge.builder("oms.order-replica.pending", changes, Collection::size).register(registry);
+            FunctionCounter.builder("oms.order-replica.applied", appliedChanges, LongAdder::sum).register(registry);
+        }
+    }
+}
@@ -0,0 +1,103 @@
+package com.example.order_management_system.cache;
+
+import com.example.order_management_system.model.Product;
+import com.example.order_management_system.repository.ProductRepository;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.stats.CacheStats;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.time.Duration;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+// Bounded read-through cache of catalog products. Entries are detached entities and must not be modified.
+@Component
+public class ProductCatalogCache implements MeterBinder {
+
+    private final ProductRepository productRepository;
+    // Null when the cache is turned off, in which case every lookup goes to the repository
+    private final Cache<Long, Product> cache;
+
+    public ProductCatalogCache(ProductRepository productRepository,
+                               @Value("${oms.product-cache.enabled:true}") boolean enabled,
+                               @Value("${oms.product-cache.maximum-size:10000}") long maximumSize,
+                               @Value("${oms.product-cache.ttl:10m}") Duration ttl) {
+        this.productRepository = productRepository;
+        this.cache = enabled
+                ? Caffeine.newBuilder().maximumSize(maximumSize).expireAfterWrite(ttl).recordStats().build()
+                : null;
+    }
+
+    public Optional<Product> get(Long productId) {
+        if (cache == null) {
+            return productRepository.findById(productId);
+        }
+        return Optional.ofNullable(cache.get(productId, id -> productRepository.findById(id).orElse(null)));
+    }
+
+    // Products for the given IDs; misses are loaded with one query and IDs that do not exist are left out
+    public Map<Long, Product> getAll(Collection<Long> productIds) {
+        if (cache == null) {
+            return load(productIds);
+        }
+        return cache.getAll(productIds, this::load);
+    }
+
+    private Map<Long, Product> load(Collection<? extends Long> productIds) {
+        return productRepository.findAllById(List.copyOf(productIds)).stream()
+                .collect(Collectors.toMap(Product::getId, Function.identity()));
+    }
+
+    public void invalidate(Long productId) {
+        if (cache != null) {
+            cache.invalidate(productId);
+        }
+    }
+
+    // Invalidate once the surrounding transaction commits, so a concurrent read cannot re-cache the old row
+    public void invalidateAfterCommit(Long productId) {
+        invalidate(productId);
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    invalidate(productId);
+                }
+            });
+        }
+    }
+
+    // Publishes hit, miss, eviction and size meters as cache.* with cache=products
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        if (cache != null) {
+            CaffeineCacheMetrics.monitor(registry, cache, "products");
+        }
+    }
+
+    public Map<String, Object> stats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("enabled", cache != null);
+        if (cache != null) {
+            CacheStats cacheStats = cache.stats();
+            stats.put("size", cache.estimatedSize());
+            stats.put("hits", cacheStats.hitCount());
+            stats.put("misses", cacheStats.missCount());
+            stats.put("evictions", cacheStats.evictionCount());
+            stats.put("hitRate", cacheStats.hitRate());
+        }
+        return stats;
+    }
+}
@@ -0,0 +1,444 @@
+package com.example.order_management_system.cache;
+
+import com.example.order_management_system.dto.OrderLines;
+import com.example.order_management_system.dto.ProductSalesRow;
+import com.example.order_management_system.model.Order;
+import com.example.order_management_system.model.OrderProduct;
+import com.example.order_management_system.repository.OrderProductRepository;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.SmartLifecycle;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.LongPredicate;
+
+// Units ordered and order lines per product, summed over every order line. scan() computes them from the database:
+// the order_product ID range is split into chunks of oms.analytics.chunk-size IDs, each summed by one GROUP BY query,
+// and a fork-join pool of oms.analytics.threads workers, shared by every scan, runs the chunks, each worker adding its
+// rows into its own ProductSalesTotals. Memory is bounded by products times workers however many lines there are, and
+// at most oms.analytics.max-concurrent-scans scans run at once.
+// With oms.analytics.incremental.enabled the sums are also kept in memory: seeded by a scan at startup, then moved by
+// the order write paths as their transactions commit, and re-seeded every rebuild-interval
+@Component
+public class ProductSalesAggregate implements SmartLifecycle, MeterBinder {
+    private static final Logger log = LoggerFactory.getLogger(ProductSalesAggregate.class);
+
+    private static final long RETRY_DELAY_MS = 1000;
+    // Products that keep changing while they are re-summed are given up on after this many rounds
+    private static final int RESUM_ROUNDS = 3;
+    // Product IDs per query when summing the lines of given products
+    private static final int PRODUCT_CHUNK_SIZE = 1000;
+
+    private final OrderProductRepository orderProductRepository;
+    private final boolean incremental;
+    private final int chunkSize;
+    private final ForkJoinPool pool;
+    // Fair, so report requests queue here in order instead of taking every database connection
+    private final Semaphore scans;
+    private final ReentrantLock rebuilding = new ReentrantLock();
+
+    // Guarded by this
+    private ProductSalesTotals totals;
+    // Products whose in-memory sums may be off, because writes to them kept committing while they were summed and
+    // there were no earlier sums to fall back on. The totals are only served once this is empty
+    private Set<Long> inexactProducts = new HashSet<>();
+    // Writes between the start of their commit and its outcome
+    private final Set<Change> committing = new HashSet<>();
+    // Incremented as each write starts committing
+    private long commitSequence;
+    // Writes committed while a rebuild runs, replayed on its totals; null when no rebuild is running
+    private List<Change> committedDuringRebuild;
+    private volatile boolean ready;
+    private volatile boolean running;
+    private Thread seeder;
+
+    public ProductSalesAggregate(OrderProductRepository orderProductRepository,
+                                 @Value("${oms.analytics.incremental.enabled:false}") boolean incremental,
+                                 @Value("${oms.analytics.threads:4}") int threads,
+                                 @Value("${oms.analytics.chunk-size:100000}") int chunkSize,
+                                 @Value("${oms.analytics.max-concurrent-scans:1}") int maxConcurrentScans) {
+        this.orderProductRepository = orderProductRepository;
+        this.incremental = incremental;
+        this.chunkSize = chunkSize;
+        this.pool = new ForkJoinPool(threads);
+        this.scans = new Semaphore(maxConcurrentScans, true);
+    }
+
+    @PreDestroy
+    void shutdown() {
+        pool.shutdown();
+    }
+
+    // Sum every order line in the database
+    public ProductSalesTotals scan() {
+        try {
+            scans.acquire();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while waiting to scan the order lines", e);
+        }
+        try {
+            Optional<Long> minId = orderProductRepository.findMinId();
+            Optional<Long> maxId = orderProductRepository.findMaxId();
+            ProductSalesTotals merged = new ProductSalesTotals();
+            if (minId.isEmpty() || maxId.isEmpty()) {
+                return merged;
+            }
+            Map<Thread, ProductSalesTotals> partials = new ConcurrentHashMap<>();
+            pool.invoke(new ScanTask(minId.get(), maxId.get(), partials));
+            partials.values().forEach(merged::addAll);
+            return merged;
+        } finally {
+            scans.release();
+        }
+    }
+
+    // Sum the lines of the given products only, through the product index; what a page of a report needs
+    public ProductSalesTotals scanProducts(Collection<Long> productIds) {
+        List<Long> ids = List.copyOf(productIds);
+        ProductSalesTotals sums = new ProductSalesTotals(ids.size());
+        for (int from = 0; from < ids.size(); from += PRODUCT_CHUNK_SIZE) {
+            for (ProductSalesRow row : orderProductRepository.findSalesByProductIdIn(ids.subList(from, Math.min(ids.size(), from + PRODUCT_CHUNK_SIZE)))) {
+                sums.add(row.productId(), row.quantity(), row.lines());
+            }
+        }
+        return sums;
+    }
+
+    // Splits its ID range in halves down to one chunk, which it sums into the totals of the worker running it. A
+    // worker runs one chunk at a time, so its totals need no locking
+    private final class ScanTask extends RecursiveAction {
+        private final long fromId;
+        private final long toId;
+        private final Map<Thread, ProductSalesTotals> partials;
+
+        ScanTask(long fromId, long toId, Map<Thread, ProductSalesTotals> partials) {
+            this.fromId = fromId;
+            this.toId = toId;
+            this.partials = partials;
+        }
+
+        @Override
+        protected void compute() {
+            if (toId - fromId < chunkSize) {
+                ProductSalesTotals partial = partials.computeIfAbsent(Thread.currentThread(), worker -> new ProductSalesTotals());
+                for (ProductSalesRow row : orderProductRepository.findSalesBetween(fromId, toId)) {
+                    partial.add(row.productId(), row.quantity(), row.lines());
+                }
+                return;
+            }
+            long middle = fromId + (toId - fromId) / 2;
+            invokeAll(new ScanTask(fromId, middle, partials), new ScanTask(middle + 1, toId, partials));
+        }
+    }
+
+    public boolean isIncremental() {
+        return incremental;
+    }
+
+    // Whether current() is served from memory; false while the aggregate is disabled or being seeded
+    public boolean isReady() {
+        return ready;
+    }
+
+    // A copy of the in-memory totals, or empty while they are disabled or being seeded
+    public synchronized Optional<ProductSalesTotals> current() {
+        return ready ? Optional.of(totals.copy()) : Optional.empty();
+    }
+
+    // Sales on the orders' lines, to pass as the before or after state of a write; null when the aggregate is disabled
+    public ProductSalesTotals salesOf(Collection<Order> orders) {
+        if (!incremental) {
+            return null;
+        }
+        ProductSalesTotals sales = new ProductSalesTotals();
+        for (Order order : orders) {
+            for (OrderProduct orderProduct : order.getOrderProducts()) {
+                sales.add(orderProduct.getProduct().getId(), orderProduct.getQuantity(), 1);
+            }
+        }
+        return sales;
+    }
+
+    public ProductSalesTotals salesOf(Order order) {
+        return salesOf(List.of(order));
+    }
+
+    public ProductSalesTotals salesOfLines(Collection<OrderLines> orders) {
+        if (!incremental) {
+            return null;
+        }
+        ProductSalesTotals sales = new ProductSalesTotals();
+        for (OrderLines lines : orders) {
+            for (int line = 0; line < lines.size(); line++) {
+                sales.add(lines.productId(line), lines.quantity(line), 1);
+            }
+        }
+        return sales;
+    }
+
+    // Move the totals from the sales before a write to the sales after it once the write commits; either may be null
+    // for an order that did not exist before or no longer exists after
+    public void recordAfterCommit(ProductSalesTotals before, ProductSalesTotals after) {
+        if (!incremental) {
+            return;
+        }
+        ProductSalesTotals delta = new ProductSalesTotals();
+        if (after != null) {
+            delta.addAll(after);
+        }
+        if (before != null) {
+            delta.subtractAll(before);
+        }
+        onCommit(new Change(delta, 0));
+    }
+
+    // Zero the product once its deletion, which removes all its lines, commits
+    public void clearProductAfterCommit(long productId) {
+        if (incremental) {
+            onCommit(new Change(null, productId));
+        }
+    }
+
+    // A write's effect on the sums: the sales it added less the sales it removed, or a product deleted with its lines
+    private static final class Change {
+        private final ProductSalesTotals delta;
+        private final long clearedProductId;
+        // Position of the write in commitSequence, set as it starts committing
+        private long sequence;
+
+        Change(ProductSalesTotals delta, long clearedProductId) {
+            this.delta = delta;
+            this.clearedProductId = clearedProductId;
+        }
+
+        // Products whose sums a scan may or may not have counted the write in. A deleted product never gets lines
+        // again, so zeroing it is right whether or not a scan saw the deletion and leaves nothing ambiguous
+        long[] productIds() {
+            return delta == null ? new long[0] : delta.heldProductIds();
+        }
+
+        void applyTo(ProductSalesTotals totals, LongPredicate products) {
+            if (delta != null) {
+                totals.addAll(delta, products);
+            } else {
+                totals.clear(clearedProductId);
+            }
+        }
+    }
+
+    // The change is numbered just before the database commits, so a scan can tell the writes that committed before
+    // it started from the ones that may have committed while it ran
+    private void onCommit(Change change) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void beforeCommit(boolean readOnly) {
+                    committing(change);
+                }
+
+                @Override
+                public void afterCompletion(int status) {
+                    completed(change, status == STATUS_COMMITTED);
+                }
+            });
+        } else {
+            committing(change);
+            completed(change, true);
+        }
+    }
+
+    private synchronized void committing(Change change) {
+        change.sequence = ++commitSequence;
+        committing.add(change);
+    }
+
+    private synchronized void completed(Change change, boolean committed) {
+        committing.remove(change);
+        if (!committed) {
+            return;
+        }
+        if (totals != null) {
+            change.applyTo(totals, productId -> true);
+        }
+        if (committedDuringRebuild != null) {
+            committedDuringRebuild.add(change);
+        }
+    }
+
+    // Start watching for writes that a query about to run may or may not count: the ones already committing, added
+    // to `ambiguous` now, and the ones that start committing before closeWindow. Returns where the window opens
+    private synchronized long openWindow(Set<Long> ambiguous) {
+        committing.forEach(change -> addProducts(change, ambiguous));
+        return commitSequence;
+    }
+
+    // Adds the products of the writes that started committing since the window opened, and returns where it closes.
+    // Writes that start committing after it are committed after the query and were not counted by it
+    private synchronized long closeWindow(long opened, Set<Long> ambiguous) {
+        committing.forEach(change -> addProducts(change, ambiguous));
+        committedDuringRebuild.stream().filter(change -> change.sequence > opened).forEach(change -> addProducts(change, ambiguous));
+        return commitSequence;
+    }
+
+    private static void addProducts(Change change, Set<Long> products) {
+        for (long productId : change.productIds()) {
+            products.add(productId);
+        }
+    }
+
+    // Replace the in-memory totals with a fresh scan. Writes that committed after a product was summed are replayed
+    // on it. A product written while it was being summed may or may not include that write, so it is summed again on
+    // its own, up to RESUM_ROUNDS times; if it never settles it keeps the sums it had, which followed every write
+    public void rebuild() {
+        long startedAt = System.nanoTime();
+        rebuilding.lock();
+        try {
+            Set<Long> unsettled = new HashSet<>();
+            long opened;
+            synchronized (this) {
+                committedDuringRebuild = new ArrayList<>();
+                opened = openWindow(unsettled);
+            }
+            ProductSalesTotals scanned = scan();
+            long scanClosed = closeWindow(opened, unsettled);
+
+            // Products summed again, and where the window of their last sum closed
+            Map<Long, Long> resummedAt = new HashMap<>();
+            for (int round = 0; round < RESUM_ROUNDS && !unsettled.isEmpty(); round++) {
+                Set<Long> changed = new HashSet<>();
+                long resumOpened = openWindow(changed);
+                ProductSalesTotals resummed = scanProducts(unsettled);
+                long resumClosed = closeWindow(resumOpened, changed);
+                for (long productId : unsettled) {
+                    if (!changed.contains(productId)) {
+                        scanned.set(productId, resummed.quantity(productId), resummed.lines(productId));
+                        resummedAt.put(productId, resumClosed);
+                    }
+                }
+                unsettled.retainAll(changed);
+            }
+
+            int inexact;
+            synchronized (this) {
+                Set<Long> keptPrevious = new HashSet<>();
+                Set<Long> stillInexact = new HashSet<>();
+                for (long productId : unsettled) {
+                    if (totals != null && !inexactProducts.contains(productId)) {
+                        scanned.set(productId, totals.quantity(productId), totals.lines(productId));
+                        keptPrevious.add(productId);
+                    } else {
+                        stillInexact.add(productId);
+                    }
+                }
+                for (Change change : committedDuringRebuild) {
+                    change.applyTo(scanned, productId -> !keptPrevious.contains(productId)
+                            && change.sequence > resummedAt.getOrDefault(productId, scanClosed));
+                }
+                committedDuringRebuild = null;
+                totals = scanned;
+                inexactProducts = stillInexact;
+                ready = stillInexact.isEmpty();
+                inexact = stillInexact.size();
+            }
+            if (inexact > 0) {
+                log.warn("Aggregated the sales of {} products, {} of which kept changing while they were summed; rebuilding again",
+                        scanned.size(), inexact);
+            } else {
+                log.info("Aggregated the sales of {} products in {} ms ({} summed again)", scanned.size(),
+                        TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startedAt), resummedAt.size());
+            }
+        } finally {
+            synchronized (this) {
+                committedDuringRebuild = null;
+            }
+            rebuilding.unlock();
+        }
+    }
+
+    // Once seeded the sums stay exact: products that do not settle during a rebuild keep their previous sums
+    @Scheduled(initialDelayString = "${oms.analytics.incremental.rebuild-interval:PT6H}",
+            fixedDelayString = "${oms.analytics.incremental.rebuild-interval:PT6H}")
+    public void scheduledRebuild() {
+        if (ready) {
+            rebuild();
+        }
+    }
+
+    private void seedLoop() {
+        while (running && !ready) {
+            try {
+                rebuild();
+            } catch (RuntimeException e) {
+                log.warn("Could not seed the product sales aggregate, retrying in {} ms: {}", RETRY_DELAY_MS, e.getMessage());
+            }
+            if (!ready) {
+                try {
+                    Thread.sleep(RETRY_DELAY_MS);
+                } catch (InterruptedException interrupted) {
+                    return;
+                }
+            }
+        }
+    }
+
+    // Seeds in the background; analytics scan the database until it is done
+    @Override
+    public void start() {
+        if (!incremental) {
+            return;
+        }
+        running = true;
+        seeder = Thread.ofPlatform().name("product-sales-seeder").daemon().start(this::seedLoop);
+    }
+
+    @Override
+    public void stop() {
+        running = false;
+        ready = false;
+        seeder.interrupt();
+        try {
+            seeder.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    @Override
+    public boolean isRunning() {
+        return running;
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        if (incremental) {
+            Gauge.builder("oms.analytics.products", this, aggregate -> aggregate.productCount()).register(registry);
+        }
+    }
+
+    private synchronized int productCount() {
+        return totals == null ? 0 : totals.size();
+    }
+}
@@ -0,0 +1,193 @@
+package com.example.order_management_system.cache;
+
+import java.util.Arrays;
+import java.util.PriorityQueue;
+import java.util.function.LongPredicate;
+
+// Units ordered and order lines per product, kept in open-addressing arrays keyed by the product ID so adding to a
+// product boxes nothing. Memory grows with the number of products, never with the number of lines added. Not
+// thread-safe: each thread aggregates into its own and the results are merged
+public final class ProductSalesTotals {
+
+    // Marks a free slot; product IDs are generated positive
+    private static final long FREE = Long.MIN_VALUE;
+
+    private long[] productIds;
+    private long[] quantities;
+    private long[] lines;
+    private int size;
+
+    public ProductSalesTotals() {
+        this(16);
+    }
+
+    public ProductSalesTotals(int expectedProducts) {
+        allocate(Integer.highestOneBit(Math.max(expectedProducts, 8) * 2 - 1) * 2);
+    }
+
+    private void allocate(int capacity) {
+        productIds = new long[capacity];
+        quantities = new long[capacity];
+        lines = new long[capacity];
+        Arrays.fill(productIds, FREE);
+    }
+
+    // Number of products held, including products whose sums went back to zero
+    public int size() {
+        return size;
+    }
+
+    public void add(long productId, long quantity, long lineCount) {
+        int slot = slotOf(productId);
+        if (productIds[slot] == FREE) {
+            if ((size + 1) * 2 > productIds.length) {
+                grow();
+                slot = slotOf(productId);
+            }
+            productIds[slot] = productId;
+            size++;
+        }
+        quantities[slot] += quantity;
+        lines[slot] += lineCount;
+    }
+
+    public void addAll(ProductSalesTotals other) {
+        addAll(other, productId -> true);
+    }
+
+    // Add only the products the filter accepts
+    public void addAll(ProductSalesTotals other, LongPredicate products) {
+        for (int slot = 0; slot < other.productIds.length; slot++) {
+            if (other.productIds[slot] != FREE && products.test(other.productIds[slot])) {
+                add(other.productIds[slot], other.quantities[slot], other.lines[slot]);
+            }
+        }
+    }
+
+    // Subtract everything the other totals hold, e.g. the lines an order had before a change
+    public void subtractAll(ProductSalesTotals other) {
+        for (int slot = 0; slot < other.productIds.length; slot++) {
+            if (other.productIds[slot] != FREE) {
+                add(other.productIds[slot], -other.quantities[slot], -other.lines[slot]);
+            }
+        }
+    }
+
+    // Reset the product's sums, e.g. once its lines are deleted with it
+    public void clear(long productId) {
+        int slot = slotOf(productId);
+        if (productIds[slot] != FREE) {
+            quantities[slot] = 0;
+            lines[slot] = 0;
+        }
+    }
+
+    // Replace the product's sums, e.g. with a fresh count of its lines
+    public void set(long productId, long quantity, long lineCount) {
+        clear(productId);
+        add(productId, quantity, lineCount);
+    }
+
+    public long quantity(long productId) {
+        int slot = slotOf(productId);
+        return productIds[slot] == FREE ? 0 : quantities[slot];
+    }
+
+    public long lines(long productId) {
+        int slot = slotOf(productId);
+        return productIds[slot] == FREE ? 0 : lines[slot];
+    }
+
+    public ProductSalesTotals copy() {
+        ProductSalesTotals copy = new ProductSalesTotals(0);
+        copy.productIds = productIds.clone();
+        copy.quantities = quantities.clone();
+        copy.lines = lines.clone();
+        copy.size = size;
+        return copy;
+    }
+
+    public interface Visitor {
+        void visit(long productId, long quantity, long lines);
+    }
+
+    // Visit every product that is on at least one order line, in no particular order
+    public void forEach(Visitor visitor) {
+        for (int slot = 0; slot < productIds.length; slot++) {
+            if (productIds[slot] != FREE && lines[slot] != 0) {
+                visitor.visit(productIds[slot], quantities[slot], lines[slot]);
+            }
+        }
+    }
+
+    // IDs of every product held, including products whose sums went back to zero, in no particular order
+    public long[] heldProductIds() {
+        long[] ids = new long[size];
+        int count = 0;
+        for (long productId : productIds) {
+            if (productId != FREE) {
+                ids[count++] = productId;
+            }
+        }
+        return ids;
+    }
+
+    // IDs of the products that are on at least one order line, sorted
+    public long[] sortedProductIds() {
+        long[] ids = new long[size];
+        int count = 0;
+        for (int slot = 0; slot < productIds.length; slot++) {
+            if (productIds[slot] != FREE && lines[slot] != 0) {
+                ids[count++] = productIds[slot];
+            }
+        }
+        ids = Arrays.copyOf(ids, count);
+        Arrays.sort(ids);
+        return ids;
+    }
+
+    // IDs of up to `limit` products with the most units ordered, most first and by ID among equals, picked with a heap
+    // of `limit` entries instead of sorting every product
+    public long[] topByQuantity(int limit) {
+        PriorityQueue<Integer> heap = new PriorityQueue<>(limit + 1, (first, second) -> quantities[first] != quantities[second]
+                ? Long.compare(quantities[first], quantities[second])
+                : Long.compare(productIds[second], productIds[first]));
+        for (int slot = 0; slot < productIds.length && limit > 0; slot++) {
+            if (productIds[slot] != FREE && lines[slot] != 0) {
+                heap.add(slot);
+                if (heap.size() > limit) {
+                    heap.poll();
+                }
+            }
+        }
+        long[] top = new long[heap.size()];
+        for (int i = top.length - 1; i >= 0; i--) {
+            top[i] = productIds[heap.poll()];
+        }
+        return top;
+    }
+
+    private int slotOf(long productId) {
+        int mask = productIds.length - 1;
+        int slot = Long.hashCode(productId * 0x9E3779B97F4A7C15L) & mask;
+        while (productIds[slot] != FREE && productIds[slot] != productId) {
+            slot = (slot + 1) & mask;
+        }
+        return slot;
+    }
+
+    private void grow() {
+        long[] oldProductIds = productIds;
+        long[] oldQuantities = quantities;
+        long[] oldLines = lines;
+        allocate(oldProductIds.length * 2);
+        for (int slot = 0; slot < oldProductIds.length; slot++) {
+            if (oldProductIds[slot] != FREE) {
+                int newSlot = slotOf(oldProductIds[slot]);
+                productIds[newSlot] = oldProductIds[slot];
+                quantities[newSlot] = oldQuantities[slot];
+                lines[newSlot] = oldLines[slot];
+            }
+        }
+    }
+}
@@ -0,0 +1,575 @@
+package com.example.order_management_system.cache;
+
+import com.example.order_management_system.dto.ProductView;
+import com.example.order_management_system.repository.ProductRepository;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.SmartLifecycle;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.regex.Pattern;
+
+// In-process product search: an inverted index from the words of product names and descriptions to the sorted IDs of
+// the products that contain them, beside every product sorted by price. Searches read an immutable snapshot without
+// locks. Product writes reload the products they changed once their transaction commits and swap in a snapshot that
+// copies only the postings they touched. Until the startup load finishes, searches go to the database
+@Component
+public class ProductSearchIndex implements SmartLifecycle, MeterBinder {
+    private static final Logger log = LoggerFactory.getLogger(ProductSearchIndex.class);
+
+    private static final long RETRY_DELAY_MS = 1000;
+    // Products reloaded per query when applying changes
+    private static final int RELOAD_CHUNK_SIZE = 1000;
+    // A price range holding more than 1/SCAN_RATIO of the products is searched by walking the products in ID order
+    // instead of sorting the IDs of the range
+    private static final int SCAN_RATIO = 8;
+    // Words are runs of letters and digits, compared in lower case
+    private static final Pattern SEPARATORS = Pattern.compile("[^\\p{L}\\p{N}]+");
+
+    private final ProductRepository productRepository;
+    private final TransactionTemplate transactionTemplate;
+    private final boolean enabled;
+
+    private volatile Snapshot snapshot = Snapshot.EMPTY;
+    // Products changed by committed transactions and not yet reloaded into the snapshot
+    private final Set<Long> pending = ConcurrentHashMap.newKeySet();
+    private final ReentrantLock applyLock = new ReentrantLock();
+    private final CountDownLatch loaded = new CountDownLatch(1);
+    private volatile boolean ready;
+    private volatile boolean running;
+    private volatile long loadMillis;
+    private Thread loader;
+
+    public ProductSearchIndex(ProductRepository productRepository, PlatformTransactionManager transactionManager,
+                              @Value("${oms.product-search.index.enabled:true}") boolean enabled) {
+        this.productRepository = productRepository;
+        // Reloads run after the writing transaction committed, so they need a transaction of their own
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.transactionTemplate.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+        this.transactionTemplate.setReadOnly(true);
+        this.enabled = enabled;
+    }
+
+    // The distinct lower-case words of the text, in the order they first appear
+    public static List<String> words(String text) {
+        if (text == null) {
+            return List.of();
+        }
+        Set<String> words = new LinkedHashSet<>();
+        for (String word : SEPARATORS.split(text.toLowerCase(Locale.ROOT))) {
+            if (!word.isEmpty()) {
+                words.add(word);
+            }
+        }
+        return List.copyOf(words);
+    }
+
+    // Whether searches can be served from the index; false while it is disabled or still loading
+    public boolean isReady() {
+        return ready;
+    }
+
+    public boolean awaitReady(Duration timeout) throws InterruptedException {
+        return enabled && loaded.await(timeout.toMillis(), TimeUnit.MILLISECONDS);
+    }
+
+    // A keyset page, in ID order, of the products after `afterId` that have a word starting with each of the given
+    // words in their name or description and a price within [minPrice, maxPrice]. Bounds of -Double.MAX_VALUE and
+    // Double.MAX_VALUE leave the price unfiltered
+    public List<ProductView> search(List<String> words, double minPrice, double maxPrice, long afterId, int size) {
+        Snapshot current = snapshot;
+        boolean priced = minPrice > -Double.MAX_VALUE || maxPrice < Double.MAX_VALUE;
+        if (words.isEmpty()) {
+            return priced ? current.searchPrices(minPrice, maxPrice, afterId, size) : current.products.valuesAfter(afterId, size);
+        }
+        long[][] matches = new long[words.size()][];
+        for (int i = 0; i < matches.length; i++) {
+            matches[i] = current.postingsStartingWith(words.get(i));
+            if (matches[i].length == 0) {
+                return List.of();
+            }
+        }
+        // Walk the rarest word's products and look the others up, so a page costs about `size` probes per word
+        Arrays.sort(matches, Comparator.comparingInt(ids -> ids.length));
+        List<ProductView> page = new ArrayList<>(Math.min(size, matches[0].length));
+        for (int i = firstAfter(matches[0], afterId); i < matches[0].length && page.size() < size; i++) {
+            long productId = matches[0][i];
+            boolean matching = true;
+            for (int w = 1; matching && w < matches.length; w++) {
+                matching = Arrays.binarySearch(matches[w], productId) >= 0;
+            }
+            ProductView product = matching ? current.products.get(productId) : null;
+            if (product != null && (!priced || inRange(product, minPrice, maxPrice))) {
+                page.add(product);
+            }
+        }
+        return page;
+    }
+
+    private static boolean inRange(ProductView product, double minPrice, double maxPrice) {
+        return product.price() != null && product.price() >= minPrice && product.price() <= maxPrice;
+    }
+
+    private static int firstAfter(long[] sortedIds, long afterId) {
+        int position = Arrays.binarySearch(sortedIds, afterId);
+        return position < 0 ? -position - 1 : position + 1;
+    }
+
+    // Reload the product once the surrounding transaction commits, or right away outside of one
+    public void refreshAfterCommit(Long productId) {
+        if (!enabled) {
+            return;
+        }
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    pending.add(productId);
+                    applyPending();
+                }
+            });
+        } else {
+            pending.add(productId);
+            applyPending();
+        }
+    }
+
+    // Apply the pending changes unless another thread is applying them or loading the index; that thread picks them up
+    // once it is done, so writers never wait for each other
+    private void applyPending() {
+        while (ready && !pending.isEmpty() && applyLock.tryLock()) {
+            try {
+                if (!reloadPending()) {
+                    return;
+                }
+            } finally {
+                applyLock.unlock();
+            }
+        }
+    }
+
+    private boolean reloadPending() {
+        List<Long> productIds = new ArrayList<>(pending);
+        // Products changed again from here on are reloaded by the next round
+        productIds.forEach(pending::remove);
+        Map<Long, ProductView> changes = new HashMap<>();
+        try {
+            for (int from = 0; from < productIds.size(); from += RELOAD_CHUNK_SIZE) {
+                List<Long> chunk = productIds.subList(from, Math.min(productIds.size(), from + RELOAD_CHUNK_SIZE));
+                // Products that are no longer in the database stay mapped to null and are removed
+                chunk.forEach(productId -> changes.put(productId, null));
+                transactionTemplate.execute(status -> productRepository.findViewsByIdIn(chunk))
+                        .forEach(product -> changes.put(product.id(), product));
+            }
+        } catch (RuntimeException e) {
+            pending.addAll(productIds);
+            log.warn("Could not reload {} changed products into the search index, retrying in {} ms: {}",
+                    productIds.size(), RETRY_DELAY_MS, e.getMessage());
+            return false;
+        }
+        snapshot = snapshot.with(changes);
+        return true;
+    }
+
+    // Changes that could not be reloaded are retried here, so they do not wait for the next product write
+    @Scheduled(initialDelay = RETRY_DELAY_MS, fixedDelay = RETRY_DELAY_MS)
+    public void retryPending() {
+        applyPending();
+    }
+
+    // Replace the index with one built from every product in a single query. Changes that commit meanwhile are
+    // applied right after, so none of them is missed
+    public void rebuild() {
+        long startedAt = System.nanoTime();
+        applyLock.lock();
+        try {
+            snapshot = Snapshot.build(productRepository.findAllViews());
+            ready = true;
+        } finally {
+            applyLock.unlock();
+        }
+        loadMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startedAt);
+        loaded.countDown();
+        log.info("Indexed {} products with {} words for search in {} ms", snapshot.products.size(), snapshot.words.length, loadMillis);
+        applyPending();
+    }
+
+    private void loadLoop() {
+        while (running && !ready) {
+            try {
+                rebuild();
+            } catch (RuntimeException e) {
+                log.warn("Could not load the product search index, retrying in {} ms: {}", RETRY_DELAY_MS, e.getMessage());
+                try {
+                    Thread.sleep(RETRY_DELAY_MS);
+                } catch (InterruptedException interrupted) {
+                    return;
+                }
+            }
+        }
+    }
+
+    public Map<String, Object> stats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("enabled", enabled);
+        if (enabled) {
+            Snapshot current = snapshot;
+            stats.put("ready", ready);
+            stats.put("products", current.products.size());
+            stats.put("words", current.words.length);
+            stats.put("pendingChanges", pending.size());
+            stats.put("loadMillis", loadMillis);
+        }
+        return stats;
+    }
+
+    // Starts loading in the background; searches go to the database until it is done
+    @Override
+    public void start() {
+        if (!enabled) {
+            return;
+        }
+        running = true;
+        loader = Thread.ofPlatform().name("product-search-loader").daemon().start(this::loadLoop);
+    }
+
+    @Override
+    public void stop() {
+        running = false;
+        ready = false;
+        loader.interrupt();
+        try {
+            loader.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    @Override
+    public boolean isRunning() {
+        return running;
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        if (enabled) {
+            Gauge.builder("oms.product-search.products", this, index -> index.snapshot.products.size()).register(registry);
+            Gauge.builder("oms.product-search.words", this, index -> index.snapshot.words.length).register(registry);
+            Gauge.builder("oms.product-search.pending", pending, Collection::size).register(registry);
+        }
+    }
+
+    private record PriceEntry(double price, long productId) {
+        static final Comparator<PriceEntry> ORDER = Comparator.comparingDouble(PriceEntry::price).thenComparingLong(PriceEntry::productId);
+    }
+
+    // One immutable version of the index. `words` is sorted, so the words sharing a prefix are neighbours, and
+    // postings[i] holds the sorted IDs of the products containing words[i]. prices and priceProductIds list the priced
+    // products ordered by price, then ID
+    private static final class Snapshot {
+        static final Snapshot EMPTY = new Snapshot(SortedLongMap.empty(), new String[0], new long[0][], new double[0], new long[0]);
+
+        final SortedLongMap<ProductView> products;
+        final String[] words;
+        final long[][] postings;
+        final double[] prices;
+        final long[] priceProductIds;
+
+        Snapshot(SortedLongMap<ProductView> products, String[] words, long[][] postings, double[] prices, long[] priceProductIds) {
+            this.products = products;
+            this.words = words;
+            this.postings = postings;
+            this.prices = prices;
+            this.priceProductIds = priceProductIds;
+        }
+
+        // Products arrive in ID order, so every posting is appended to in order and never needs sorting
+        static Snapshot build(List<ProductView> products) {
+            Map<Long, ProductView> byId = new HashMap<>(products.size() * 2);
+            Map<String, Posting> postings = new HashMap<>();
+            List<PriceEntry> prices = new ArrayList<>(products.size());
+            for (ProductView product : products) {
+                byId.put(product.id(), product);
+                for (String word : indexedWords(product)) {
+                    postings.computeIfAbsent(word, w -> new Posting()).add(product.id());
+                }
+                if (product.price() != null) {
+                    prices.add(new PriceEntry(product.price(), product.id()));
+                }
+            }
+            String[] words = postings.keySet().toArray(String[]::new);
+            Arrays.sort(words);
+            long[][] postingArrays = new long[words.length][];
+            for (int i = 0; i < words.length; i++) {
+                postingArrays[i] = postings.get(words[i]).toArray();
+            }
+            prices.sort(PriceEntry.ORDER);
+            return new Snapshot(SortedLongMap.<ProductView>empty().with(byId), words, postingArrays,
+                    prices.stream().mapToDouble(PriceEntry::price).toArray(),
+                    prices.stream().mapToLong(PriceEntry::productId).toArray());
+        }
+
+        static List<String> indexedWords(ProductView product) {
+            return product == null ? List.of() : words(product.name() + " " + product.description());
+        }
+
+        // A new snapshot with the given products set; products mapped to null are removed
+        Snapshot with(Map<Long, ProductView> changes) {
+            Map<String, long[][]> wordChanges = new TreeMap<>();
+            Map<String, List<Long>> removedIds = new HashMap<>();
+            Map<String, List<Long>> addedIds = new HashMap<>();
+            List<PriceEntry> removedPrices = new ArrayList<>();
+            List<PriceEntry> addedPrices = new ArrayList<>();
+            Map<Long, ProductView> productChanges = new HashMap<>();
+            changes.forEach((productId, product) -> {
+                ProductView previous = products.get(productId);
+                if (previous == null ? product == null : previous.equals(product)) {
+                    return;
+                }
+                productChanges.put(productId, product);
+                List<String> previousWords = indexedWords(previous);
+                List<String> currentWords = indexedWords(product);
+                for (String word : previousWords) {
+                    if (!currentWords.contains(word)) {
+                        removedIds.computeIfAbsent(word, w -> new ArrayList<>()).add(productId);
+                    }
+                }
+                for (String word : currentWords) {
+                    if (!previousWords.contains(word)) {
+                        addedIds.computeIfAbsent(word, w -> new ArrayList<>()).add(productId);
+                    }
+                }
+                if (previous != null && previous.price() != null) {
+                    removedPrices.add(new PriceEntry(previous.price(), productId));
+                }
+                if (product != null && product.price() != null) {
+                    addedPrices.add(new PriceEntry(product.price(), productId));
+                }
+            });
+            if (productChanges.isEmpty()) {
+                return this;
+            }
+            removedIds.forEach((word, ids) -> wordChanges.computeIfAbsent(word, w -> new long[2][])[0] = sorted(ids));
+            addedIds.forEach((word, ids) -> wordChanges.computeIfAbsent(word, w -> new long[2][])[1] = sorted(ids));
+
+            // Merge the changed words into the sorted dictionary, sharing the postings of every other word
+            List<String> newWords = new ArrayList<>(words.length + addedIds.size());
+            List<long[]> newPostings = new ArrayList<>(words.length + addedIds.size());
+            int w = 0;
+            for (Map.Entry<String, long[][]> change : wordChanges.entrySet()) {
+                while (w < words.length && words[w].compareTo(change.getKey()) < 0) {
+                    newWords.add(words[w]);
+                    newPostings.add(postings[w++]);
+                }
+                long[] posting = new long[0];
+                if (w < words.length && words[w].equals(change.getKey())) {
+                    posting = postings[w++];
+                }
+                posting = merge(posting, change.getValue()[0], change.getValue()[1]);
+                if (posting.length > 0) {
+                    newWords.add(change.getKey());
+                    newPostings.add(posting);
+                }
+            }
+            while (w < words.length) {
+                newWords.add(words[w]);
+                newPostings.add(postings[w++]);
+            }
+
+            // Drop the old price entries and merge in the new ones, both in price order
+            removedPrices.sort(PriceEntry.ORDER);
+            addedPrices.sort(PriceEntry.ORDER);
+            int[] removedPositions = removedPrices.stream().mapToInt(this::pricePosition).toArray();
+            int newLength = prices.length - removedPositions.length + addedPrices.size();
+            double[] newPrices = new double[newLength];
+            long[] newPriceProductIds = new long[newLength];
+            int n = 0;
+            int r = 0;
+            int a = 0;
+            for (int p = 0; p < prices.length; p++) {
+                if (r < removedPositions.length && removedPositions[r] == p) {
+                    r++;
+                    continue;
+                }
+                while (a < addedPrices.size() && PriceEntry.ORDER.compare(addedPrices.get(a), new PriceEntry(prices[p], priceProductIds[p])) < 0) {
+                    newPrices[n] = addedPrices.get(a).price();
+                    newPriceProductIds[n++] = addedPrices.get(a++).productId();
+                }
+                newPrices[n] = prices[p];
+                newPriceProductIds[n++] = priceProductIds[p];
+            }
+            while (a < addedPrices.size()) {
+                newPrices[n] = addedPrices.get(a).price();
+                newPriceProductIds[n++] = addedPrices.get(a++).productId();
+            }
+            return new Snapshot(products.with(productChanges), newWords.toArray(String[]::new), newPostings.toArray(long[][]::new),
+                    newPrices, newPriceProductIds);
+        }
+
+        private static long[] sorted(List<Long> ids) {
+            return ids.stream().mapToLong(Long::longValue).sorted().toArray();
+        }
+
+        // The posting without the removed IDs and with the added ones, still sorted
+        private static long[] merge(long[] posting, long[] removed, long[] added) {
+            removed = removed == null ? new long[0] : removed;
+            added = added == null ? new long[0] : added;
+            long[] merged = new long[posting.length + added.length];
+            int size = 0;
+            int a = 0;
+            for (long productId : posting) {
+                while (a < added.length && added[a] <= productId) {
+                    // An ID already in the posting is kept once
+                    if (added[a] < productId) {
+                        merged[size++] = added[a];
+                    }
+                    a++;
+                }
+                if (Arrays.binarySearch(removed, productId) < 0) {
+                    merged[size++] = productId;
+                }
+            }
+            while (a < added.length) {
+                merged[size++] = added[a++];
+            }
+            return size == merged.length ? merged : Arrays.copyOf(merged, size);
+        }
+
+        // Position of the first entry not ordered before the given price and product ID
+        private int pricePosition(PriceEntry entry) {
+            int low = 0;
+            int high = prices.length;
+            while (low < high) {
+                int middle = (low + high) >>> 1;
+                if (PriceEntry.ORDER.compare(new PriceEntry(prices[middle], priceProductIds[middle]), entry) < 0) {
+                    low = middle + 1;
+                } else {
+                    high = middle;
+                }
+            }
+            return low;
+        }
+
+        // Position of the first entry priced at `price` or more, or above it when `inclusive` is false
+        private int priceBound(double price, boolean inclusive) {
+            int low = 0;
+            int high = prices.length;
+            while (low < high) {
+                int middle = (low + high) >>> 1;
+                if (inclusive ? prices[middle] < price : prices[middle] <= price) {
+                    low = middle + 1;
+                } else {
+                    high = middle;
+                }
+            }
+            return low;
+        }
+
+        // IDs of the products with a word starting with the prefix, sorted and without duplicates
+        long[] postingsStartingWith(String prefix) {
+            int from = Arrays.binarySearch(words, prefix);
+            from = from < 0 ? -from - 1 : from;
+            int to = from;
+            while (to < words.length && words[to].startsWith(prefix)) {
+                to++;
+            }
+            if (to - from <= 1) {
+                return to == from ? new long[0] : postings[from];
+            }
+            int length = 0;
+            for (int i = from; i < to; i++) {
+                length += postings[i].length;
+            }
+            long[] ids = new long[length];
+            length = 0;
+            for (int i = from; i < to; i++) {
+                System.arraycopy(postings[i], 0, ids, length, postings[i].length);
+                length += postings[i].length;
+            }
+            Arrays.sort(ids);
+            int distinct = 0;
+            for (int i = 0; i < ids.length; i++) {
+                if (i == 0 || ids[i] != ids[i - 1]) {
+                    ids[distinct++] = ids[i];
+                }
+            }
+            return Arrays.copyOf(ids, distinct);
+        }
+
+        List<ProductView> searchPrices(double minPrice, double maxPrice, long afterId, int size) {
+            int from = priceBound(minPrice, true);
+            int to = priceBound(maxPrice, false);
+            if (from >= to) {
+                return List.of();
+            }
+            List<ProductView> page = new ArrayList<>(size);
+            if ((long) (to - from) * SCAN_RATIO >= products.size()) {
+                // Most products match, so a page is found within a few pages of the products in ID order
+                long cursor = afterId;
+                while (page.size() < size) {
+                    List<ProductView> batch = products.valuesAfter(cursor, size);
+                    for (ProductView product : batch) {
+                        if (page.size() < size && inRange(product, minPrice, maxPrice)) {
+                            page.add(product);
+                        }
+                    }
+                    if (batch.size() < size) {
+                        break;
+                    }
+                    cursor = batch.get(batch.size() - 1).id();
+                }
+                return page;
+            }
+            long[] ids = Arrays.copyOfRange(priceProductIds, from, to);
+            Arrays.sort(ids);
+            for (int i = firstAfter(ids, afterId); i < ids.length && page.size() < size; i++) {
+                page.add(products.get(ids[i]));
+            }
+            return page;
+        }
+    }
+
+    // Growable array of product IDs, appended to in ID order while building
+    private static final class Posting {
+        private long[] ids = new long[4];
+        private int size;
+
+        void add(long productId) {
+            if (size == ids.length) {
+                ids = Arrays.copyOf(ids, size * 2);
+            }
+            ids[size++] = productId;
+        }
+
+        long[] toArray() {
+            return Arrays.copyOf(ids, size);
+        }
+    }
+}
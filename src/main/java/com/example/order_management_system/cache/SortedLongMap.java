@@ -0,0 +1,197 @@
+package com.example.order_management_system.cache;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.OptionalLong;
+import java.util.function.Consumer;
+import java.util.stream.LongStream;
+
+// Immutable map from long keys to values, split into segments of consecutive key ranges. Each segment keeps its keys
+// in a sorted long[] beside its values, so lookups are two binary searches without boxing, iteration is in key order,
+// and a change copies only the segments it touches while the untouched ones are shared with the previous map
+public final class SortedLongMap<V> {
+
+    // 4096 consecutive keys per segment
+    static final int SEGMENT_BITS = 12;
+
+    private record Segment(long[] keys, Object[] values) {
+    }
+
+    private static final Segment EMPTY_SEGMENT = new Segment(new long[0], new Object[0]);
+    private static final SortedLongMap<Object> EMPTY = new SortedLongMap<>(new long[0], new Segment[0], 0);
+
+    private final long[] segmentIds;
+    private final Segment[] segments;
+    private final int size;
+
+    private SortedLongMap(long[] segmentIds, Segment[] segments, int size) {
+        this.segmentIds = segmentIds;
+        this.segments = segments;
+        this.size = size;
+    }
+
+    @SuppressWarnings("unchecked")
+    public static <V> SortedLongMap<V> empty() {
+        return (SortedLongMap<V>) EMPTY;
+    }
+
+    static long segmentOf(long key) {
+        return key >> SEGMENT_BITS;
+    }
+
+    // Join maps built from disjoint, segment-aligned key ranges, given in ascending key order
+    public static <V> SortedLongMap<V> concat(List<SortedLongMap<V>> parts) {
+        int segmentCount = parts.stream().mapToInt(part -> part.segments.length).sum();
+        long[] segmentIds = new long[segmentCount];
+        Segment[] segments = new Segment[segmentCount];
+        int size = 0;
+        int n = 0;
+        for (SortedLongMap<V> part : parts) {
+            if (n > 0 && part.segments.length > 0 && part.segmentIds[0] <= segmentIds[n - 1]) {
+                throw new IllegalArgumentException("Parts overlap or are out of order");
+            }
+            System.arraycopy(part.segmentIds, 0, segmentIds, n, part.segments.length);
+            System.arraycopy(part.segments, 0, segments, n, part.segments.length);
+            n += part.segments.length;
+            size += part.size;
+        }
+        return new SortedLongMap<>(segmentIds, segments, size);
+    }
+
+    public int size() {
+        return size;
+    }
+
+    @SuppressWarnings("unchecked")
+    public V get(long key) {
+        int s = Arrays.binarySearch(segmentIds, segmentOf(key));
+        if (s < 0) {
+            return null;
+        }
+        Segment segment = segments[s];
+        int i = Arrays.binarySearch(segment.keys, key);
+        return i < 0 ? null : (V) segment.values[i];
+    }
+
+    public OptionalLong firstKey() {
+        return size == 0 ? OptionalLong.empty() : OptionalLong.of(segments[0].keys[0]);
+    }
+
+    public OptionalLong lastKey() {
+        if (size == 0) {
+            return OptionalLong.empty();
+        }
+        long[] keys = segments[segments.length - 1].keys;
+        return OptionalLong.of(keys[keys.length - 1]);
+    }
+
+    // Up to `limit` values whose keys are greater than `afterKey`, in key order
+    @SuppressWarnings("unchecked")
+    public List<V> valuesAfter(long afterKey, int limit) {
+        List<V> values = new ArrayList<>(Math.min(limit, size));
+        for (int s = firstSegmentFrom(afterKey); s < segments.length && values.size() < limit; s++) {
+            Segment segment = segments[s];
+            int i = Arrays.binarySearch(segment.keys, afterKey);
+            for (i = i < 0 ? -i - 1 : i + 1; i < segment.keys.length && values.size() < limit; i++) {
+                values.add((V) segment.values[i]);
+            }
+        }
+        return values;
+    }
+
+    public List<V> values() {
+        return valuesAfter(Long.MIN_VALUE, size);
+    }
+
+    @SuppressWarnings("unchecked")
+    public void forEach(Consumer<? super V> action) {
+        for (Segment segment : segments) {
+            for (Object value : segment.values) {
+                action.accept((V) value);
+            }
+        }
+    }
+
+    // Keys from `fromKey` to `toKey`, both inclusive, in key order
+    public long[] keysBetween(long fromKey, long toKey) {
+        LongStream.Builder keys = LongStream.builder();
+        for (int s = firstSegmentFrom(fromKey); s < segments.length && segmentIds[s] <= segmentOf(toKey); s++) {
+            for (long key : segments[s].keys) {
+                if (key >= fromKey && key <= toKey) {
+                    keys.add(key);
+                }
+            }
+        }
+        return keys.build().toArray();
+    }
+
+    private int firstSegmentFrom(long key) {
+        int s = Arrays.binarySearch(segmentIds, segmentOf(key));
+        return s < 0 ? -s - 1 : s;
+    }
+
+    // A new map with the given keys set; keys mapped to null are removed
+    public SortedLongMap<V> with(Map<Long, ? extends V> changes) {
+        if (changes.isEmpty()) {
+            return this;
+        }
+        long[] changedKeys = changes.keySet().stream().mapToLong(Long::longValue).sorted().toArray();
+        long[] newSegmentIds = new long[segments.length + changedKeys.length];
+        Segment[] newSegments = new Segment[newSegmentIds.length];
+        int newSize = size;
+        int n = 0;
+        int s = 0;
+        int from = 0;
+        while (from < changedKeys.length) {
+            long segmentId = segmentOf(changedKeys[from]);
+            int to = from;
+            while (to < changedKeys.length && segmentOf(changedKeys[to]) == segmentId) {
+                to++;
+            }
+            while (s < segments.length && segmentIds[s] < segmentId) {
+                newSegmentIds[n] = segmentIds[s];
+                newSegments[n++] = segments[s++];
+            }
+            Segment existing = s < segments.length && segmentIds[s] == segmentId ? segments[s++] : EMPTY_SEGMENT;
+            Segment merged = merge(existing, changedKeys, from, to, changes);
+            newSize += merged.keys.length - existing.keys.length;
+            if (merged.keys.length > 0) {
+                newSegmentIds[n] = segmentId;
+                newSegments[n++] = merged;
+            }
+            from = to;
+        }
+        while (s < segments.length) {
+            newSegmentIds[n] = segmentIds[s];
+            newSegments[n++] = segments[s++];
+        }
+        return new SortedLongMap<>(Arrays.copyOf(newSegmentIds, n), Arrays.copyOf(newSegments, n), newSize);
+    }
+
+    private static Segment merge(Segment existing, long[] changedKeys, int from, int to, Map<Long, ?> changes) {
+        long[] keys = new long[existing.keys.length + to - from];
+        Object[] values = new Object[keys.length];
+        int n = 0;
+        int i = 0;
+        int k = from;
+        while (i < existing.keys.length || k < to) {
+            if (k == to || (i < existing.keys.length && existing.keys[i] < changedKeys[k])) {
+                keys[n] = existing.keys[i];
+                values[n++] = existing.values[i++];
+            } else {
+                long key = changedKeys[k++];
+                if (i < existing.keys.length && existing.keys[i] == key) {
+                    i++;
+                }
+                Object value = changes.get(key);
+                if (value != null) {
+                    keys[n] = key;
+                    values[n++] = value;
+                }
+            }
+        }
+        return new Segment(Arrays.copyOf(keys, n), Arrays.copyOf(values, n));
+    }
+}
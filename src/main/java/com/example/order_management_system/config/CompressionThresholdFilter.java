@@ -0,0 +1,253 @@
+package com.example.order_management_system.config;
+
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.ServletOutputStream;
+import jakarta.servlet.WriteListener;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import jakarta.servlet.http.HttpServletResponseWrapper;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpHeaders;
+import org.springframework.stereotype.Component;
+import org.springframework.util.unit.DataSize;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+
+// Makes server.compression.min-response-size apply to serialized responses. Message converters stream and never
+// declare a length, and the container gzips every response of unknown length, so even a 60-byte status envelope was
+// compressed. The first min-response-size bytes of each response are held back: a response that ends within them is
+// sent with its Content-Length, which the container leaves uncompressed, and a larger one is passed on as it is
+// written and gzipped as before
+@Component
+public class CompressionThresholdFilter extends OncePerRequestFilter {
+    private static final String HELD_RESPONSE_ATTRIBUTE = CompressionThresholdFilter.class.getName() + ".response";
+
+    private final boolean enabled;
+    private final int threshold;
+
+    public CompressionThresholdFilter(@Value("${server.compression.enabled:false}") boolean enabled,
+                                      @Value("${server.compression.min-response-size:2KB}") DataSize minResponseSize) {
+        this.enabled = enabled;
+        this.threshold = (int) minResponseSize.toBytes();
+    }
+
+    @Override
+    protected boolean shouldNotFilter(HttpServletRequest request) {
+        String acceptEncoding = request.getHeader(HttpHeaders.ACCEPT_ENCODING);
+        return !enabled || acceptEncoding == null || !acceptEncoding.contains("gzip");
+    }
+
+    // Streamed bodies (NDJSON) are written after the handler returns, so what they hold back is released on the
+    // dispatch that completes them
+    @Override
+    protected boolean shouldNotFilterAsyncDispatch() {
+        return false;
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain filterChain)
+            throws ServletException, IOException {
+        ThresholdResponse held = (ThresholdResponse) request.getAttribute(HELD_RESPONSE_ATTRIBUTE);
+        if (held == null) {
+            held = new ThresholdResponse(response, threshold);
+            request.setAttribute(HELD_RESPONSE_ATTRIBUTE, held);
+            filterChain.doFilter(request, held);
+        } else {
+            filterChain.doFilter(request, response);
+        }
+        if (!request.isAsyncStarted()) {
+            held.release();
+        }
+    }
+
+    private static final class ThresholdResponse extends HttpServletResponseWrapper {
+        private final int threshold;
+        private final ByteArrayOutputStream held = new ByteArrayOutputStream();
+        // Set once the body outgrew the threshold, declared its own length, took a write listener, or gave way to an
+        // error or redirect
+        private boolean passingThrough;
+        private ServletOutputStream outputStream;
+        private PrintWriter writer;
+
+        ThresholdResponse(HttpServletResponse response, int threshold) {
+            super(response);
+            this.threshold = threshold;
+        }
+
+        private void write(byte[] bytes, int offset, int length) throws IOException {
+            if (!passingThrough && held.size() + length > threshold) {
+                passThrough();
+            }
+            if (passingThrough) {
+                getResponse().getOutputStream().write(bytes, offset, length);
+            } else {
+                held.write(bytes, offset, length);
+            }
+        }
+
+        private void passThrough() throws IOException {
+            if (!passingThrough) {
+                passingThrough = true;
+                if (held.size() > 0) {
+                    held.writeTo(getResponse().getOutputStream());
+                }
+                held.reset();
+            }
+        }
+
+        // Sends a body that stayed within the threshold, with its length
+        void release() throws IOException {
+            if (writer != null) {
+                writer.flush();
+            }
+            if (passingThrough || outputStream == null) {
+                return;
+            }
+            passingThrough = true;
+            super.setContentLengthLong(held.size());
+            held.writeTo(getResponse().getOutputStream());
+            held.reset();
+        }
+
+        @Override
+        public ServletOutputStream getOutputStream() {
+            if (outputStream == null) {
+                outputStream = new ServletOutputStream() {
+                    @Override
+                    public void write(int b) throws IOException {
+                        ThresholdResponse.this.write(new byte[]{(byte) b}, 0, 1);
+                    }
+
+                    @Override
+                    public void write(byte[] bytes, int offset, int length) throws IOException {
+                        ThresholdResponse.this.write(bytes, offset, length);
+                    }
+
+                    // Held bytes wait for the threshold or the end of the response
+                    @Override
+                    public void flush() throws IOException {
+                        if (passingThrough) {
+                            getResponse().getOutputStream().flush();
+                        }
+                    }
+
+                    // Held bytes are written to memory and never block
+                    @Override
+                    public boolean isReady() {
+                        if (!passingThrough) {
+                            return true;
+                        }
+                        try {
+                            return getResponse().getOutputStream().isReady();
+                        } catch (IOException e) {
+                            throw new IllegalStateException(e);
+                        }
+                    }
+
+                    // A non-blocking writer gets the container's stream as it is: what was held is sent first, while
+                    // writes may still block, and everything after goes straight through
+                    @Override
+                    public void setWriteListener(WriteListener writeListener) {
+                        try {
+                            passThrough();
+                            getResponse().getOutputStream().setWriteListener(writeListener);
+                        } catch (IOException e) {
+                            throw new IllegalStateException(e);
+                        }
+                    }
+                };
+            }
+            return outputStream;
+        }
+
+        @Override
+        public PrintWriter getWriter() throws IOException {
+            if (writer == null) {
+                writer = new PrintWriter(new OutputStreamWriter(getOutputStream(), getCharacterEncoding()));
+            }
+            return writer;
+        }
+
+        // A body that declares its length lets the container decide by itself
+        @Override
+        public void setContentLength(int length) {
+            setContentLengthLong(length);
+        }
+
+        @Override
+        public void setContentLengthLong(long length) {
+            try {
+                passThrough();
+            } catch (IOException e) {
+                throw new IllegalStateException(e);
+            }
+            super.setContentLengthLong(length);
+        }
+
+        @Override
+        public void setHeader(String name, String value) {
+            if (HttpHeaders.CONTENT_LENGTH.equalsIgnoreCase(name)) {
+                setContentLengthLong(Long.parseLong(value));
+            } else {
+                super.setHeader(name, value);
+            }
+        }
+
+        @Override
+        public void addHeader(String name, String value) {
+            if (HttpHeaders.CONTENT_LENGTH.equalsIgnoreCase(name)) {
+                setContentLengthLong(Long.parseLong(value));
+            } else {
+                super.addHeader(name, value);
+            }
+        }
+
+        @Override
+        public void flushBuffer() throws IOException {
+            if (passingThrough) {
+                super.flushBuffer();
+            }
+        }
+
+        @Override
+        public void resetBuffer() {
+            super.resetBuffer();
+            held.reset();
+        }
+
+        @Override
+        public void reset() {
+            super.reset();
+            held.reset();
+            passingThrough = false;
+        }
+
+        @Override
+        public void sendError(int status, String message) throws IOException {
+            discard();
+            super.sendError(status, message);
+        }
+
+        @Override
+        public void sendError(int status) throws IOException {
+            discard();
+            super.sendError(status);
+        }
+
+        @Override
+        public void sendRedirect(String location) throws IOException {
+            discard();
+            super.sendRedirect(location);
+        }
+
+        private void discard() {
+            held.reset();
+            passingThrough = true;
+        }
+    }
+}
@@ -0,0 +1,113 @@
+package com.example.order_management_system.config;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.binder.MeterBinder;
+
+import java.sql.SQLTransientConnectionException;
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+// Fair semaphore in front of the connection pool, so thousands of virtual threads queue here rather than in the pool
+public class DataSourceConcurrencyLimiter implements MeterBinder {
+
+    private final Semaphore permits;
+    private final int maxConcurrency;
+    private final long acquireTimeoutNanos;
+
+    private final AtomicInteger waiting = new AtomicInteger();
+    private final AtomicInteger maxWaiting = new AtomicInteger();
+    private final LongAdder acquisitions = new LongAdder();
+    private final LongAdder timeouts = new LongAdder();
+    private final LongAdder totalWaitNanos = new LongAdder();
+    private final AtomicLong maxWaitNanos = new AtomicLong();
+    // Set once the limiter is bound to a meter registry
+    private volatile Timer waitTimer;
+
+    public DataSourceConcurrencyLimiter(int maxConcurrency, Duration acquireTimeout) {
+        this.permits = new Semaphore(maxConcurrency, true);
+        this.maxConcurrency = maxConcurrency;
+        this.acquireTimeoutNanos = acquireTimeout.toNanos();
+    }
+
+    public void acquire() throws SQLTransientConnectionException {
+        if (permits.tryAcquire()) {
+            acquisitions.increment();
+            recordWait(0);
+            return;
+        }
+        long start = System.nanoTime();
+        int queued = waiting.incrementAndGet();
+        maxWaiting.accumulateAndGet(queued, Math::max);
+        boolean acquired;
+        try {
+            acquired = permits.tryAcquire(acquireTimeoutNanos, TimeUnit.NANOSECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new SQLTransientConnectionException("Interrupted while waiting for a database permit", e);
+        } finally {
+            waiting.decrementAndGet();
+        }
+        // Timed-out waits are only counted, since each lasts the whole timeout and would skew the wait statistics
+        if (!acquired) {
+            timeouts.increment();
+            throw new SQLTransientConnectionException("Timed out waiting for one of " + maxConcurrency + " database permits");
+        }
+        long waited = System.nanoTime() - start;
+        acquisitions.increment();
+        totalWaitNanos.add(waited);
+        maxWaitNanos.accumulateAndGet(waited, Math::max);
+        recordWait(waited);
+    }
+
+    private void recordWait(long waitedNanos) {
+        Timer timer = waitTimer;
+        if (timer != null) {
+            timer.record(waitedNanos, TimeUnit.NANOSECONDS);
+        }
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        Gauge.builder("oms.db.limiter.active", this, DataSourceConcurrencyLimiter::getActive).register(registry);
+        Gauge.builder("oms.db.limiter.queue", this, DataSourceConcurrencyLimiter::getQueueDepth).register(registry);
+        FunctionCounter.builder("oms.db.limiter.timeouts", timeouts, LongAdder::sum).register(registry);
+        waitTimer = Timer.builder("oms.db.limiter.wait")
+                .description("Time spent waiting for a database permit that was acquired, zero when one was free")
+                .register(registry);
+    }
+
+    public void release() {
+        permits.release();
+    }
+
+    public int getQueueDepth() {
+        return waiting.get();
+    }
+
+    public int getActive() {
+        return maxConcurrency - permits.availablePermits();
+    }
+
+    public Map<String, Object> stats() {
+        long acquired = acquisitions.sum();
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("maxConcurrency", maxConcurrency);
+        stats.put("active", getActive());
+        stats.put("queueDepth", getQueueDepth());
+        stats.put("maxQueueDepth", maxWaiting.get());
+        stats.put("acquisitions", acquired);
+        stats.put("timeouts", timeouts.sum());
+        stats.put("averageWaitMillis", acquired == 0 ? 0.0 : totalWaitNanos.sum() / 1_000_000.0 / acquired);
+        stats.put("maxWaitMillis", maxWaitNanos.get() / 1_000_000.0);
+        return stats;
+    }
+}
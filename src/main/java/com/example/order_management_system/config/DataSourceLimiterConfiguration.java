@@ -0,0 +1,37 @@
+package com.example.order_management_system.config;
+
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import javax.sql.DataSource;
+import java.time.Duration;
+
+// Wraps the DataSource in a concurrency limiter; meant for oms.db-limiter.enabled=true together with virtual threads
+@Configuration
+@ConditionalOnProperty(name = "oms.db-limiter.enabled", havingValue = "true")
+public class DataSourceLimiterConfiguration {
+
+    @Bean
+    public DataSourceConcurrencyLimiter dataSourceConcurrencyLimiter(
+            @Value("${oms.db-limiter.max-concurrency:${spring.datasource.hikari.maximum-pool-size:10}}") int maxConcurrency,
+            @Value("${oms.db-limiter.acquire-timeout:30s}") Duration acquireTimeout) {
+        return new DataSourceConcurrencyLimiter(maxConcurrency, acquireTimeout);
+    }
+
+    @Bean
+    public static BeanPostProcessor concurrencyLimitedDataSourcePostProcessor(ObjectProvider<DataSourceConcurrencyLimiter> limiter) {
+        return new BeanPostProcessor() {
+            @Override
+            public Object postProcessAfterInitialization(Object bean, String beanName) {
+                if (bean instanceof DataSource dataSource && !(bean instanceof ConcurrencyLimitedDataSource)) {
+                    return new ConcurrencyLimitedDataSource(dataSource, limiter.getObject());
+                }
+                return bean;
+            }
+        };
+    }
+}
@@ -0,0 +1,53 @@
+package com.example.order_management_system.config;
+
+import io.micrometer.core.aop.TimedAspect;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.observation.ObservationPredicate;
+import org.hibernate.cfg.AvailableSettings;
+import org.hibernate.resource.jdbc.spi.StatementInspector;
+import org.springframework.boot.autoconfigure.orm.jpa.HibernatePropertiesCustomizer;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.http.server.observation.ServerRequestObservationContext;
+import org.springframework.util.ClassUtils;
+
+@Configuration
+public class MetricsConfiguration {
+
+    // Times the service classes annotated with @Timed, tagged with class and method
+    @Bean
+    public TimedAspect timedAspect(MeterRegistry meterRegistry) {
+        return new TimedAspect(meterRegistry);
+    }
+
+    // Leaves the startup warmup's requests out of http.server.requests, so its thousands of calls against a cold
+    // server do not show up in the latency histograms of the routes it warms
+    @Bean
+    public ObservationPredicate skipWarmupRequests() {
+        return (name, context) -> !(context instanceof ServerRequestObservationContext request
+                && request.getCarrier().getHeader(StartupWarmup.WARMUP_HEADER) != null);
+    }
+
+    // Installs the per-request statement counter, chained after any inspector configured through properties
+    @Bean
+    public HibernatePropertiesCustomizer requestSqlStatementCounterCustomizer() {
+        return properties -> {
+            StatementInspector counter = new RequestSqlStatementCounter();
+            StatementInspector configured = configuredInspector(properties.get(AvailableSettings.STATEMENT_INSPECTOR));
+            properties.put(AvailableSettings.STATEMENT_INSPECTOR,
+                    configured == null ? counter : (StatementInspector) sql -> counter.inspect(configured.inspect(sql)));
+        };
+    }
+
+    private static StatementInspector configuredInspector(Object setting) {
+        if (setting == null || setting instanceof StatementInspector) {
+            return (StatementInspector) setting;
+        }
+        try {
+            Class<?> type = setting instanceof Class<?> inspectorClass ? inspectorClass : ClassUtils.forName(setting.toString(), MetricsConfiguration.class.getClassLoader());
+            return (StatementInspector) type.getDeclaredConstructor().newInstance();
+        } catch (ReflectiveOperationException e) {
+            throw new IllegalStateException("Cannot create statement inspector " + setting, e);
+        }
+    }
+}
@@ -0,0 +1,29 @@
+package com.example.order_management_system.config;
+
+import org.hibernate.resource.jdbc.spi.StatementInspector;
+
+// Counts the SQL statements Hibernate prepares on the current thread while a request is being served
+public class RequestSqlStatementCounter implements StatementInspector {
+
+    private static final ThreadLocal<int[]> CURRENT = new ThreadLocal<>();
+
+    @Override
+    public String inspect(String sql) {
+        int[] count = CURRENT.get();
+        if (count != null) {
+            count[0]++;
+        }
+        return sql;
+    }
+
+    public static void begin() {
+        CURRENT.set(new int[1]);
+    }
+
+    // Stops counting and returns the number of statements since begin()
+    public static int end() {
+        int[] count = CURRENT.get();
+        CURRENT.remove();
+        return count == null ? 0 : count[0];
+    }
+}
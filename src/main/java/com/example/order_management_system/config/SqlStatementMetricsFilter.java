@@ -0,0 +1,49 @@
+package com.example.order_management_system.config;
+
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.stereotype.Component;
+import org.springframework.web.filter.OncePerRequestFilter;
+import org.springframework.web.servlet.HandlerMapping;
+
+import java.io.IOException;
+
+// Records how many SQL statements each request issued, as oms.http.sql.statements tagged like http.server.requests.
+// Work handed to other threads (NDJSON streaming, bulk import commits) is not attributed to the request
+@Component
+public class SqlStatementMetricsFilter extends OncePerRequestFilter {
+
+    private final MeterRegistry meterRegistry;
+
+    public SqlStatementMetricsFilter(MeterRegistry meterRegistry) {
+        this.meterRegistry = meterRegistry;
+    }
+
+    // The startup warmup's requests would skew the counts of the routes it warms
+    @Override
+    protected boolean shouldNotFilter(HttpServletRequest request) {
+        return request.getHeader(StartupWarmup.WARMUP_HEADER) != null;
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain filterChain)
+            throws ServletException, IOException {
+        RequestSqlStatementCounter.begin();
+        try {
+            filterChain.doFilter(request, response);
+        } finally {
+            int statements = RequestSqlStatementCounter.end();
+            Object uri = request.getAttribute(HandlerMapping.BEST_MATCHING_PATTERN_ATTRIBUTE);
+            DistributionSummary.builder("oms.http.sql.statements")
+                    .description("SQL statements prepared while serving a request")
+                    .tag("method", request.getMethod())
+                    .tag("uri", uri == null ? "UNKNOWN" : uri.toString())
+                    .register(meterRegistry)
+                    .record(statements);
+        }
+    }
+}
@@ -0,0 +1,149 @@
+package com.example.order_management_system.config;
+
+import com.example.order_management_system.dto.OrderLines;
+import com.example.order_management_system.dto.OrderView;
+import com.example.order_management_system.dto.ProductView;
+import com.example.order_management_system.service.OrderService;
+import com.example.order_management_system.service.ProductService;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.core.env.Environment;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+// Runs the read paths of the API a few thousand times before the application reports itself ready: application
+// runners finish before readiness switches to ACCEPTING_TRAFFIC, so the first real requests find the queries parsed
+// and prepared on several pooled connections, the hot methods compiled and the Jackson serializers built.
+// Only reads are issued, so it is safe against a live database; a failure is logged and does not stop startup
+@Component
+@ConditionalOnProperty(name = "oms.warmup.enabled", havingValue = "true")
+public class StartupWarmup implements ApplicationRunner {
+
+    private static final Logger log = LoggerFactory.getLogger(StartupWarmup.class);
+
+    // Orders and products sampled from the start of the tables for the lookups; an ID that never exists covers
+    // the not-found paths
+    private static final int SAMPLE_SIZE = 100;
+    private static final long MISSING_ID = -1L;
+    // Page sizes cycle through the powers of two up to 128, the IN-list lengths Hibernate pads the default pages to
+    private static final int PAGE_SIZE_STEPS = 8;
+    // Sent with the warmup's own HTTP requests, which are left out of the request metrics
+    public static final String WARMUP_HEADER = "X-OMS-Warmup";
+
+    private final OrderService orderService;
+    private final ProductService productService;
+    private final ObjectMapper objectMapper;
+    private final Environment environment;
+    private final int iterations;
+    private final int threads;
+    private final Duration timeLimit;
+    private final int maxPageSize;
+    private final AtomicInteger rounds = new AtomicInteger();
+
+    public StartupWarmup(OrderService orderService, ProductService productService, ObjectMapper objectMapper, Environment environment,
+                         @Value("${oms.warmup.iterations:2000}") int iterations,
+                         @Value("${oms.warmup.threads:4}") int threads,
+                         @Value("${oms.warmup.time-limit:30s}") Duration timeLimit,
+                         @Value("${oms.pagination.max-page-size:1000}") int maxPageSize) {
+        this.orderService = orderService;
+        this.productService = productService;
+        this.objectMapper = objectMapper;
+        this.environment = environment;
+        this.iterations = iterations;
+        this.threads = threads;
+        this.timeLimit = timeLimit;
+        this.maxPageSize = maxPageSize;
+    }
+
+    // Rounds completed by the last warmup
+    public int getRounds() {
+        return rounds.get();
+    }
+
+    @Override
+    public void run(ApplicationArguments args) throws InterruptedException {
+        long start = System.nanoTime();
+        long deadline = start + timeLimit.toNanos();
+        rounds.set(0);
+        // The embedded server is already listening while runners run; without one only the services are warmed
+        String port = environment.getProperty("local.server.port");
+
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try {
+            List<Long> orderIds = orderService.getOrderViewsPage(0L, SAMPLE_SIZE).stream().map(OrderView::id).toList();
+            List<Long> productIds = productService.getProductViewsPage(0L, SAMPLE_SIZE).stream().map(ProductView::id).toList();
+            AtomicInteger next = new AtomicInteger();
+            List<Callable<Void>> workers = new ArrayList<>(threads);
+            for (int t = 0; t < threads; t++) {
+                workers.add(() -> {
+                    for (int round = next.getAndIncrement(); round < iterations && System.nanoTime() < deadline; round = next.getAndIncrement()) {
+                        round(round, orderIds, productIds, port);
+                        rounds.incrementAndGet();
+                    }
+                    return null;
+                });
+            }
+            for (Future<Void> worker : executor.invokeAll(workers)) {
+                worker.get();
+            }
+            log.info("Warmed up with {} rounds on {} threads in {} ms", rounds.get(), threads, (System.nanoTime() - start) / 1_000_000);
+        } catch (ExecutionException e) {
+            log.warn("Warmup stopped after {} rounds", rounds.get(), e.getCause());
+        } catch (RuntimeException e) {
+            log.warn("Warmup stopped after {} rounds", rounds.get(), e);
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private void round(int round, List<Long> orderIds, List<Long> productIds, String port) throws IOException {
+        long orderId = orderIds.isEmpty() || round % 10 == 0 ? MISSING_ID : orderIds.get(round % orderIds.size());
+        long productId = productIds.isEmpty() || round % 10 == 0 ? MISSING_ID : productIds.get(round % productIds.size());
+        int pageSize = Math.min(1 << (round % PAGE_SIZE_STEPS), maxPageSize);
+
+        objectMapper.writeValueAsBytes(orderService.getOrderViewById(orderId));
+        objectMapper.writeValueAsBytes(orderService.getOrderTotals(orderId));
+        objectMapper.writeValueAsBytes(orderService.getOrderViewsPage(Math.max(orderId - 1, 0L), pageSize));
+        objectMapper.writeValueAsBytes(productService.getProductById(productId));
+        objectMapper.writeValueAsBytes(productService.getProductViewsPage(Math.max(productId - 1, 0L), pageSize));
+        if (productId != MISSING_ID) {
+            productService.getOrderIdsPage(productId, 0L, pageSize);
+        }
+        objectMapper.readValue("{\"" + productId + "\": 1, \"" + (productId + 1) + "\": 2}", OrderLines.class);
+        if (port != null) {
+            get(port, "/api/orders/" + orderId);
+            get(port, "/api/products?size=" + pageSize);
+        }
+    }
+
+    // A bare HTTP/1.1 GET over a socket, so no client library has to be loaded and warmed alongside the server
+    private static void get(String port, String path) throws IOException {
+        try (Socket socket = new Socket("localhost", Integer.parseInt(port))) {
+            OutputStream request = socket.getOutputStream();
+            request.write(("GET " + path + " HTTP/1.1\r\nHost: localhost\r\nAccept: application/json\r\n" + WARMUP_HEADER + ": true\r\nConnection: close\r\n\r\n")
+                    .getBytes(StandardCharsets.US_ASCII));
+            request.flush();
+            InputStream response = socket.getInputStream();
+            response.transferTo(OutputStream.nullOutputStream());
+        }
+    }
+}
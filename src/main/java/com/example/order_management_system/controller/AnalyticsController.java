@@ -0,0 +1,66 @@
+package com.example.order_management_system.controller;
+
+import com.example.order_management_system.dto.ProductSales;
+import com.example.order_management_system.service.OrderAnalyticsService;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+@RestController
+@RequestMapping("/api/analytics")
+public class AnalyticsController {
+    private final OrderAnalyticsService orderAnalyticsService;
+    private final KeysetPagination keysetPagination;
+
+    public AnalyticsController(OrderAnalyticsService orderAnalyticsService, KeysetPagination keysetPagination) {
+        this.orderAnalyticsService = orderAnalyticsService;
+        this.keysetPagination = keysetPagination;
+    }
+
+    // The best-selling products by units ordered or by revenue; exact=true scans the order lines even when the sums
+    // are kept in memory
+    @GetMapping("/top-products")
+    public ResponseEntity<Map<String, Object>> getTopProducts(@RequestParam(required = false) Integer limit,
+                                                              @RequestParam(defaultValue = "quantity") String by,
+                                                              @RequestParam(defaultValue = "false") boolean exact) {
+        Map<String, Object> response = new HashMap<>();
+        int size = keysetPagination.pageSize(limit == null ? 10 : limit);
+        List<ProductSales> products;
+        if (by.equals("quantity")) {
+            products = orderAnalyticsService.topProductsByQuantity(size, exact);
+        } else if (by.equals("revenue")) {
+            products = orderAnalyticsService.topProductsByRevenue(size, exact);
+        } else {
+            response.put("status", "failure");
+            response.put("message", "by must be quantity or revenue.");
+            return ResponseEntity.badRequest().body(response);
+        }
+        response.put("status", "success");
+        response.put("products", products);
+        return ResponseEntity.ok(response);
+    }
+
+    // Units, lines and revenue of every product that was ordered, a keyset page at a time
+    @GetMapping("/sales-by-product")
+    public ResponseEntity<Map<String, Object>> getSalesByProduct(@RequestParam(required = false) Long afterId,
+                                                                 @RequestParam(required = false) Integer size,
+                                                                 @RequestParam(defaultValue = "false") boolean exact) {
+        Map<String, Object> response = new HashMap<>();
+        int pageSize = keysetPagination.pageSize(size);
+        List<ProductSales> products = orderAnalyticsService.salesByProduct(afterId == null ? 0L : afterId, pageSize, exact);
+        response.put("status", "success");
+        response.put("products", products);
+        if (products.isEmpty()) {
+            return ResponseEntity.ok(response);
+        }
+        Long lastId = products.get(products.size() - 1).productId();
+        response.put("nextAfterId", lastId);
+        return keysetPagination.ok(pageSize, products.size(), lastId).body(response);
+    }
+}
@@ -0,0 +1,71 @@
+package com.example.order_management_system.controller;
+
+import com.example.order_management_system.cache.OrderReadReplica;
+import com.example.order_management_system.cache.ProductSearchIndex;
+import com.example.order_management_system.config.DataSourceConcurrencyLimiter;
+import com.example.order_management_system.dto.OrderReplicaCheck;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.util.HashMap;
+import java.util.Map;
+
+@RestController
+@RequestMapping("/api/diagnostics")
+public class DiagnosticsController {
+
+    private final ObjectProvider<DataSourceConcurrencyLimiter> dataSourceConcurrencyLimiter;
+    private final OrderReadReplica orderReadReplica;
+    private final ProductSearchIndex productSearchIndex;
+
+    public DiagnosticsController(ObjectProvider<DataSourceConcurrencyLimiter> dataSourceConcurrencyLimiter, OrderReadReplica orderReadReplica,
+                                 ProductSearchIndex productSearchIndex) {
+        this.dataSourceConcurrencyLimiter = dataSourceConcurrencyLimiter;
+        this.orderReadReplica = orderReadReplica;
+        this.productSearchIndex = productSearchIndex;
+    }
+
+    // Queue depth and wait times of the database concurrency limiter
+    @GetMapping("/db-limiter")
+    public ResponseEntity<Map<String, Object>> getDbLimiterStats() {
+        DataSourceConcurrencyLimiter limiter = dataSourceConcurrencyLimiter.getIfAvailable();
+        Map<String, Object> response = new HashMap<>();
+        response.put("enabled", limiter != null);
+        if (limiter != null) {
+            response.putAll(limiter.stats());
+        }
+        return ResponseEntity.ok(response);
+    }
+
+    // Size, load time and pending changes of the in-memory order replica
+    @GetMapping("/order-replica")
+    public ResponseEntity<Map<String, Object>> getOrderReplicaStats() {
+        return ResponseEntity.ok(orderReadReplica.stats());
+    }
+
+    // Size, load time and pending changes of the product search index
+    @GetMapping("/product-search")
+    public ResponseEntity<Map<String, Object>> getProductSearchStats() {
+        return ResponseEntity.ok(productSearchIndex.stats());
+    }
+
+    // Compare the order replica with the database, optionally reloading the orders that differ
+    @PostMapping("/order-replica/check")
+    public ResponseEntity<OrderReplicaCheck> checkOrderReplica(@RequestParam(defaultValue = "false") boolean repair) {
+        if (!orderReadReplica.isReady()) {
+            return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE).body(null);
+        }
+        try {
+            return ResponseEntity.ok(orderReadReplica.check(repair));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE).body(null);
+        }
+    }
+}
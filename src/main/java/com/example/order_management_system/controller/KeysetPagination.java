@@ -0,0 +1,42 @@
+package com.example.order_management_system.controller;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.ResponseEntity;
+import org.springframework.stereotype.Component;
+import org.springframework.web.servlet.support.ServletUriComponentsBuilder;
+
+// Page size limits and next-page links shared by the keyset-paginated list endpoints
+@Component
+public class KeysetPagination {
+
+    private final int defaultPageSize;
+    private final int maxPageSize;
+
+    public KeysetPagination(@Value("${oms.pagination.default-page-size:100}") int defaultPageSize,
+                            @Value("${oms.pagination.max-page-size:1000}") int maxPageSize) {
+        this.defaultPageSize = defaultPageSize;
+        this.maxPageSize = maxPageSize;
+    }
+
+    // Clamp the requested page size into [1, max], falling back to the default
+    public int pageSize(Integer requestedSize) {
+        if (requestedSize == null) {
+            return defaultPageSize;
+        }
+        return Math.max(1, Math.min(requestedSize, maxPageSize));
+    }
+
+    // A full page may have a successor, so point the client at it with a Link header
+    public ResponseEntity.BodyBuilder ok(int pageSize, int returned, Long lastId) {
+        ResponseEntity.BodyBuilder builder = ResponseEntity.ok();
+        if (returned == pageSize) {
+            String next = ServletUriComponentsBuilder.fromCurrentRequest()
+                    .replaceQueryParam("afterId", lastId)
+                    .replaceQueryParam("size", pageSize)
+                    .toUriString();
+            builder.header(HttpHeaders.LINK, "<" + next + ">; rel=\"next\"");
+        }
+        return builder;
+    }
+}
@@ -0,0 +1,42 @@
+package com.example.order_management_system.controller;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SequenceWriter;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.function.Consumer;
+
+// Writes rows as newline-delimited JSON while they are read, so nothing is buffered per response
+final class NdjsonResponses {
+
+    private NdjsonResponses() {
+    }
+
+    static <T> ResponseEntity<StreamingResponseBody> stream(ObjectMapper objectMapper, Consumer<Consumer<T>> source) {
+        StreamingResponseBody body = outputStream -> {
+            boolean[] written = {false};
+            try (SequenceWriter writer = objectMapper.writer()
+                    .without(JsonGenerator.Feature.AUTO_CLOSE_TARGET)
+                    .withRootValueSeparator("\n")
+                    .writeValues(outputStream)) {
+                source.accept(row -> {
+                    try {
+                        writer.write(row);
+                        written[0] = true;
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                });
+            }
+            if (written[0]) {
+                outputStream.write('\n');
+            }
+        };
+        return ResponseEntity.ok().contentType(MediaType.APPLICATION_NDJSON).body(body);
+    }
+}
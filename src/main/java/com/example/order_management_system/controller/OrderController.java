@@ -1,12 +1,32 @@
 package com.example.order_management_system.controller;
 
+import com.example.order_management_system.cache.IdempotencyStore;
+import com.example.order_management_system.dto.BulkOrderResult;
+import com.example.order_management_system.dto.OrderLines;
+import com.example.order_management_system.dto.OrderMutation;
+import com.example.order_management_system.dto.OrderMutationResult;
+import com.example.order_management_system.dto.OrderPlacementStatus;
+import com.example.order_management_system.dto.OrderTotals;
+import com.example.order_management_system.dto.OrderView;
+import com.example.order_management_system.exception.OrderQueueFullException;
 import com.example.order_management_system.exception.ResourceNotFoundException;
 import com.example.order_management_system.model.Order;
+import com.example.order_management_system.service.OrderBulkService;
+import com.example.order_management_system.service.OrderPlacementPipeline;
 import com.example.order_management_system.service.OrderService;
+import com.fasterxml.jackson.databind.MappingIterator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.springframework.dao.ConcurrencyFailureException;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URI;
 import java.util.List;
 import java.util.Optional;
 import java.util.HashMap;
@@ -16,19 +36,51 @@ import java.util.Map;
 @RequestMapping("/api/orders")
 public class OrderController {
 
+    private static final String RESPOND_ASYNC = "respond-async";
+    private static final String IDEMPOTENCY_KEY = "Idempotency-Key";
+
     private final OrderService orderService;
+    private final OrderBulkService orderBulkService;
+    private final OrderPlacementPipeline orderPlacementPipeline;
+    private final KeysetPagination keysetPagination;
+    private final ObjectMapper objectMapper;
+    private final IdempotencyStore idempotencyStore;
 
     // Constructor-based injection
-    public OrderController(OrderService orderService) {
+    public OrderController(OrderService orderService, OrderBulkService orderBulkService, OrderPlacementPipeline orderPlacementPipeline,
+                           KeysetPagination keysetPagination, ObjectMapper objectMapper, IdempotencyStore idempotencyStore) {
         this.orderService = orderService;
+        this.orderBulkService = orderBulkService;
+        this.orderPlacementPipeline = orderPlacementPipeline;
+        this.keysetPagination = keysetPagination;
+        this.objectMapper = objectMapper;
+        this.idempotencyStore = idempotencyStore;
     }
 
-    // Create a new order (with list of product IDs)
+    // Create a new order (with list of product IDs). With "Prefer: respond-async" the order is only validated and
+    // logged before answering 202; it is committed shortly after and its progress is at /api/orders/{id}/status.
+    // A retry sent with the same Idempotency-Key gets the original response instead of a second order
     @PostMapping
-    public ResponseEntity<Map<String, String>> createOrder(@RequestBody Map<Long, Integer> productQuantities) {
+    public ResponseEntity<Map<String, String>> createOrder(@RequestBody OrderLines lines,
+                                                           @RequestHeader(value = "Prefer", required = false) String prefer,
+                                                           @RequestHeader(value = IDEMPOTENCY_KEY, required = false) String idempotencyKey) {
+        return idempotencyStore.execute("POST /api/orders", idempotencyKey, fingerprint(lines), () -> createOrder(lines, prefer));
+    }
+
+    private ResponseEntity<Map<String, String>> createOrder(OrderLines lines, String prefer) {
         Map<String, String> response = new HashMap<>();
         try {
-            Order createdOrder = orderService.createOrder(productQuantities);
+            if (prefer != null && prefer.contains(RESPOND_ASYNC)) {
+                Long orderId = orderPlacementPipeline.placeOrder(lines);
+                response.put("status", "accepted");
+                response.put("orderId", orderId.toString());
+                response.put("message", "Order accepted and will be created shortly.");
+                return ResponseEntity.status(HttpStatus.ACCEPTED)
+                        .header("Preference-Applied", RESPOND_ASYNC)
+                        .location(URI.create("/api/orders/" + orderId + "/status"))
+                        .body(response);
+            }
+            Order createdOrder = orderService.createOrder(lines);
             response.put("status", "success");
             response.put("orderId", createdOrder.getId().toString());
             response.put("message", "Order created successfully.");
@@ -37,6 +89,10 @@ public class OrderController {
             response.put("status", "failure");
             response.put("message", e.toString());
             return ResponseEntity.status(HttpStatus.NOT_FOUND).body(response);
+        } catch (OrderQueueFullException e) {
+            response.put("status", "failure");
+            response.put("message", e.getMessage());
+            return ResponseEntity.status(HttpStatus.TOO_MANY_REQUESTS).header(HttpHeaders.RETRY_AFTER, "1").body(response);
         } catch (Exception e) {
             response.put("status", "failure");
             response.put("message", "An error occurred while creating the order.");
@@ -44,12 +100,67 @@ public class OrderController {
         }
     }
 
-    // Add products with quantities to an existing order
+    // Create many orders from a JSON array or NDJSON stream of product-quantity maps
+    @PostMapping(value = "/bulk", consumes = {MediaType.APPLICATION_JSON_VALUE, MediaType.APPLICATION_NDJSON_VALUE})
+    public ResponseEntity<Map<String, Object>> createOrdersInBulk(InputStream body) {
+        Map<String, Object> response = new HashMap<>();
+        try (MappingIterator<OrderLines> orders = objectMapper.readerFor(OrderLines.class)
+                .readValues(body)) {
+            List<BulkOrderResult> results = orderBulkService.createOrders(orders);
+            long created = results.stream().filter(result -> result.orderId() != null).count();
+            response.put("status", created == results.size() ? "success" : "partial");
+            response.put("created", created);
+            response.put("failed", results.size() - created);
+            response.put("results", results);
+            return ResponseEntity.ok(response);
+        } catch (IOException e) {
+            response.put("status", "failure");
+            response.put("message", "Could not read the orders: " + e.getMessage());
+            return ResponseEntity.status(HttpStatus.BAD_REQUEST).body(response);
+        } catch (Exception e) {
+            response.put("status", "failure");
+            response.put("message", "An error occurred while importing the orders.");
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).body(response);
+        }
+    }
+
+    // Apply a list of update, addProducts, removeProduct and delete operations across many orders, reporting the
+    // outcome of each operation
+    @PostMapping("/batch")
+    public ResponseEntity<Map<String, Object>> mutateOrders(@RequestBody List<OrderMutation> mutations) {
+        Map<String, Object> response = new HashMap<>();
+        try {
+            List<OrderMutationResult> results = orderBulkService.mutateOrders(mutations);
+            long applied = results.stream().filter(result -> result.status().equals("success")).count();
+            response.put("status", applied == results.size() ? "success" : "partial");
+            response.put("applied", applied);
+            response.put("failed", results.size() - applied);
+            response.put("results", results);
+            return ResponseEntity.ok(response);
+        } catch (Exception e) {
+            response.put("status", "failure");
+            response.put("message", "An error occurred while applying the operations.");
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).body(response);
+        }
+    }
+
+    // Add products with quantities to an existing order, at most once per Idempotency-Key
     @PostMapping("/{orderId}/products")
-    public ResponseEntity<Map<String, String>> addProductsToOrder(@PathVariable Long orderId, @RequestBody Map<Long, Integer> productQuantities) {
+    public ResponseEntity<Map<String, String>> addProductsToOrder(@PathVariable Long orderId, @RequestBody OrderLines lines,
+                                                                  @RequestHeader(value = IDEMPOTENCY_KEY, required = false) String idempotencyKey) {
+        return idempotencyStore.execute("POST /api/orders/" + orderId + "/products", idempotencyKey, fingerprint(lines),
+                () -> addProductsToOrder(orderId, lines));
+    }
+
+    // The stored response of a key is only replayed for the same lines, in whatever order they are listed
+    private static String fingerprint(OrderLines lines) {
+        return IdempotencyStore.fingerprint(lines.sortedByProductId().toString());
+    }
+
+    private ResponseEntity<Map<String, String>> addProductsToOrder(Long orderId, OrderLines lines) {
         Map<String, String> response = new HashMap<>();
         try {
-            orderService.addProductsToOrder(orderId, productQuantities);
+            orderService.addProductsToOrder(orderId, lines);
             response.put("status", "success");
             response.put("message", "Products added to order successfully.");
             return ResponseEntity.status(HttpStatus.CREATED).body(response);
@@ -57,6 +168,10 @@ public class OrderController {
             response.put("status", "failure");
             response.put("message", "Order or Product not found.");
             return ResponseEntity.status(HttpStatus.NOT_FOUND).body(response);
+        } catch (ConcurrencyFailureException e) {
+            response.put("status", "failure");
+            response.put("message", "The order is being modified concurrently, please retry.");
+            return ResponseEntity.status(HttpStatus.CONFLICT).body(response);
         }catch (Exception e) {
             response.put("status", "failure");
             response.put("message", e.toString());
@@ -66,10 +181,10 @@ public class OrderController {
 
     // Update an order (with product IDs and quantities)
     @PutMapping("/{orderId}")
-    public ResponseEntity<Map<String, String>> updateOrder(@PathVariable Long orderId, @RequestBody Map<Long, Integer> productQuantities) {
+    public ResponseEntity<Map<String, String>> updateOrder(@PathVariable Long orderId, @RequestBody OrderLines lines) {
         Map<String, String> response = new HashMap<>();
         try {
-            orderService.updateOrder(orderId, productQuantities);
+            orderService.updateOrder(orderId, lines);
             response.put("status", "success");
             response.put("message", "Order updated successfully.");
             return ResponseEntity.ok(response);
@@ -77,6 +192,10 @@ public class OrderController {
             response.put("status", "failure");
             response.put("message", "Order or Product not found.");
             return ResponseEntity.status(HttpStatus.NOT_FOUND).body(response);
+        } catch (ConcurrencyFailureException e) {
+            response.put("status", "failure");
+            response.put("message", "The order is being modified concurrently, please retry.");
+            return ResponseEntity.status(HttpStatus.CONFLICT).body(response);
         } catch (Exception e) {
             response.put("status", "failure");
             response.put("message", "An error occurred while updating the order.");
@@ -87,8 +206,8 @@ public class OrderController {
 
     // Get an order by ID
     @GetMapping("/{id}")
-    public ResponseEntity<Order> getOrderById(@PathVariable Long id) {
-        Optional<Order> order = orderService.getOrderById(id);
+    public ResponseEntity<OrderView> getOrderById(@PathVariable Long id) {
+        Optional<OrderView> order = orderService.getOrderViewById(id);
         if (order.isPresent()) {
             return ResponseEntity.ok(order.get());
         } else {
@@ -96,15 +215,53 @@ public class OrderController {
         }
     }
 
-    // Get all orders
-    @GetMapping
-    public ResponseEntity<List<Order>> getAllOrders() {
-        List<Order> orders = orderService.getAllOrders();
-        if (!orders.isEmpty()) {
-            return ResponseEntity.ok(orders);
+    // Get the stored total and line count of an order without loading its lines
+    @GetMapping("/{id}/totals")
+    public ResponseEntity<OrderTotals> getOrderTotals(@PathVariable Long id) {
+        Optional<OrderTotals> totals = orderService.getOrderTotals(id);
+        if (totals.isPresent()) {
+            return ResponseEntity.ok(totals.get());
+        } else {
+            return ResponseEntity.status(HttpStatus.NOT_FOUND).body(null);
+        }
+    }
+
+    // Whether an order placed with respond-async is still pending, was created, or failed to be committed
+    @GetMapping("/{id}/status")
+    public ResponseEntity<OrderPlacementStatus> getOrderStatus(@PathVariable Long id) {
+        Optional<OrderPlacementStatus> status = orderPlacementPipeline.getStatus(id);
+        if (status.isPresent()) {
+            return ResponseEntity.ok(status.get());
         } else {
+            return ResponseEntity.status(HttpStatus.NOT_FOUND).body(null);
+        }
+    }
+
+    // Get all orders, or a single keyset page of them when afterId or size is given
+    @GetMapping
+    public ResponseEntity<List<OrderView>> getAllOrders(@RequestParam(required = false) Long afterId,
+                                                        @RequestParam(required = false) Integer size) {
+        if (afterId == null && size == null) {
+            List<OrderView> orders = orderService.getAllOrderViews();
+            if (!orders.isEmpty()) {
+                return ResponseEntity.ok(orders);
+            } else {
+                return ResponseEntity.status(HttpStatus.NO_CONTENT).build();
+            }
+        }
+        int pageSize = keysetPagination.pageSize(size);
+        List<OrderView> orders = orderService.getOrderViewsPage(afterId == null ? 0L : afterId, pageSize);
+        if (orders.isEmpty()) {
             return ResponseEntity.status(HttpStatus.NO_CONTENT).build();
         }
+        Long lastId = orders.get(orders.size() - 1).id();
+        return keysetPagination.ok(pageSize, orders.size(), lastId).body(orders);
+    }
+
+    // Stream all orders as newline-delimited JSON
+    @GetMapping(produces = MediaType.APPLICATION_NDJSON_VALUE)
+    public ResponseEntity<StreamingResponseBody> streamAllOrders() {
+        return NdjsonResponses.stream(objectMapper, orderService::streamOrderViews);
     }
 
     // Remove a product from an order
@@ -120,6 +277,10 @@ public class OrderController {
             response.put("status", "failure");
             response.put("message", "Order or Product not found.");
             return ResponseEntity.status(HttpStatus.NOT_FOUND).body(response);
+        } catch (ConcurrencyFailureException e) {
+            response.put("status", "failure");
+            response.put("message", "The order is being modified concurrently, please retry.");
+            return ResponseEntity.status(HttpStatus.CONFLICT).body(response);
         } catch (Exception e) {
             response.put("status", "failure");
             response.put("message", "An error occurred while removing the product from the order.");
@@ -1,12 +1,17 @@
 package com.example.order_management_system.controller;
 
+import com.example.order_management_system.dto.ProductDeletionResult;
+import com.example.order_management_system.dto.ProductView;
 import com.example.order_management_system.exception.ResourceNotFoundException;
 import com.example.order_management_system.model.Product;
 import com.example.order_management_system.service.ProductService;
 
+import com.fasterxml.jackson.databind.ObjectMapper;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
 import java.util.HashMap;
 import java.util.List;
@@ -17,9 +22,13 @@ import java.util.Optional;
 @RequestMapping("/api/products")
 public class ProductController {
     private final ProductService productService;
+    private final KeysetPagination keysetPagination;
+    private final ObjectMapper objectMapper;
 
-    public ProductController(ProductService productService) {
+    public ProductController(ProductService productService, KeysetPagination keysetPagination, ObjectMapper objectMapper) {
         this.productService = productService;
+        this.keysetPagination = keysetPagination;
+        this.objectMapper = objectMapper;
     }
 
     // Create Product
@@ -75,15 +84,25 @@ public class ProductController {
         }
     }
 
-    // Get All Products
+    // Get All Products, or a single keyset page of them when afterId or size is given
     @GetMapping
-    public ResponseEntity<Map<String, Object>> getAllProducts() {
+    public ResponseEntity<Map<String, Object>> getAllProducts(@RequestParam(required = false) Long afterId,
+                                                              @RequestParam(required = false) Integer size) {
         Map<String, Object> response = new HashMap<>();
-        List<Product> products = productService.getAllProducts();
+        boolean paged = afterId != null || size != null;
+        int pageSize = keysetPagination.pageSize(size);
+        List<ProductView> products = paged
+                ? productService.getProductViewsPage(afterId == null ? 0L : afterId, pageSize)
+                : productService.getAllProductViews();
         if (!products.isEmpty()) {
             response.put("status", "success");
             response.put("products", products);
-            return ResponseEntity.ok(response);
+            if (!paged) {
+                return ResponseEntity.ok(response);
+            }
+            Long lastId = products.get(products.size() - 1).id();
+            response.put("nextAfterId", lastId);
+            return keysetPagination.ok(pageSize, products.size(), lastId).body(response);
         } else {
             response.put("status", "failure");
             response.put("message", "No products found.");
@@ -91,13 +110,77 @@ public class ProductController {
         }
     }
 
+    // Search products by the words of their name and description and by price, a keyset page at a time
+    @GetMapping("/search")
+    public ResponseEntity<Map<String, Object>> searchProducts(@RequestParam(required = false) String q,
+                                                              @RequestParam(required = false) Double minPrice,
+                                                              @RequestParam(required = false) Double maxPrice,
+                                                              @RequestParam(required = false) Long afterId,
+                                                              @RequestParam(required = false) Integer size) {
+        Map<String, Object> response = new HashMap<>();
+        if (minPrice != null && maxPrice != null && minPrice > maxPrice) {
+            response.put("status", "failure");
+            response.put("message", "minPrice must not be greater than maxPrice.");
+            return ResponseEntity.badRequest().body(response);
+        }
+        int pageSize = keysetPagination.pageSize(size);
+        List<ProductView> products = productService.searchProducts(q, minPrice, maxPrice, afterId == null ? 0L : afterId, pageSize);
+        response.put("status", "success");
+        response.put("products", products);
+        if (products.isEmpty()) {
+            return ResponseEntity.ok(response);
+        }
+        Long lastId = products.get(products.size() - 1).id();
+        response.put("nextAfterId", lastId);
+        return keysetPagination.ok(pageSize, products.size(), lastId).body(response);
+    }
+
+    // Get a keyset page of the IDs of the orders containing a product
+    @GetMapping("/{id}/orders")
+    public ResponseEntity<Map<String, Object>> getOrdersContainingProduct(@PathVariable Long id,
+                                                                          @RequestParam(required = false) Long afterId,
+                                                                          @RequestParam(required = false) Integer size) {
+        Map<String, Object> response = new HashMap<>();
+        try {
+            int pageSize = keysetPagination.pageSize(size);
+            List<Long> orderIds = productService.getOrderIdsPage(id, afterId == null ? 0L : afterId, pageSize);
+            response.put("status", "success");
+            response.put("productId", id);
+            response.put("orderIds", orderIds);
+            if (orderIds.isEmpty()) {
+                return ResponseEntity.ok(response);
+            }
+            Long lastId = orderIds.get(orderIds.size() - 1);
+            response.put("nextAfterId", lastId);
+            return keysetPagination.ok(pageSize, orderIds.size(), lastId).body(response);
+        } catch (ResourceNotFoundException e) {
+            response.put("status", "failure");
+            response.put("message", "Product not found.");
+            return ResponseEntity.status(HttpStatus.NOT_FOUND).body(response);
+        }
+    }
+
+    // Product cache counters
+    @GetMapping("/cache-stats")
+    public ResponseEntity<Map<String, Object>> getCacheStats() {
+        return ResponseEntity.ok(productService.getCacheStats());
+    }
+
+    // Stream All Products as newline-delimited JSON
+    @GetMapping(produces = MediaType.APPLICATION_NDJSON_VALUE)
+    public ResponseEntity<StreamingResponseBody> streamAllProducts() {
+        return NdjsonResponses.stream(objectMapper, productService::streamProductViews);
+    }
+
     @DeleteMapping("/{id}")
     public ResponseEntity<Map<String, String>> deleteProduct(@PathVariable Long id) {
         Map<String, String> response = new HashMap<>();
         try {
-            productService.deleteProduct(id);
+            ProductDeletionResult result = productService.deleteProduct(id);
             response.put("status", "success");
             response.put("message", "Product deleted successfully.");
+            response.put("linesRemoved", String.valueOf(result.linesRemoved()));
+            response.put("ordersRemoved", String.valueOf(result.ordersRemoved()));
             return ResponseEntity.ok(response);
         } catch (ResourceNotFoundException e) {
             response.put("status", "failure");
@@ -0,0 +1,16 @@
+package com.example.order_management_system.dto;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+
+// Outcome of one order in a bulk import, identified by its position in the request
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public record BulkOrderResult(int index, String status, Long orderId, String message) {
+
+    public static BulkOrderResult success(int index, Long orderId) {
+        return new BulkOrderResult(index, "success", orderId, null);
+    }
+
+    public static BulkOrderResult failure(int index, String message) {
+        return new BulkOrderResult(index, "failure", null, message);
+    }
+}
@@ -0,0 +1,7 @@
+package com.example.order_management_system.dto;
+
+import java.util.Map;
+
+// A response kept under an Idempotency-Key, with the fingerprint of the request body that produced it
+public record IdempotentResponse(String fingerprint, int status, Map<String, String> headers, Map<String, String> body) {
+}
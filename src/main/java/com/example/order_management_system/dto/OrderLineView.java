@@ -0,0 +1,5 @@
+package com.example.order_management_system.dto;
+
+// Read model of an order line, serialized exactly like the OrderProduct entity
+public record OrderLineView(Long id, ProductView product, Integer quantity) {
+}
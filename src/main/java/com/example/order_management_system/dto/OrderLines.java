@@ -0,0 +1,295 @@
+package com.example.order_management_system.dto;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.DeserializationContext;
+import com.fasterxml.jackson.databind.SerializerProvider;
+import com.fasterxml.jackson.databind.annotation.JsonDeserialize;
+import com.fasterxml.jackson.databind.annotation.JsonSerialize;
+import com.fasterxml.jackson.databind.deser.std.StdDeserializer;
+import com.fasterxml.jackson.databind.ser.std.StdSerializer;
+
+import java.io.IOException;
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+// Product quantities of an order as parallel primitive arrays. Read straight from the JSON object the order endpoints
+// accept, {"<productId>": <quantity>, ...}, without boxing keys and values into a map; a product listed more than once
+// is merged into one line holding the sum of its quantities
+@JsonDeserialize(using = OrderLines.Deserializer.class)
+@JsonSerialize(using = OrderLines.Serializer.class)
+public final class OrderLines {
+
+    // Up to this many lines, lookups scan the arrays instead of building a hash index
+    private static final int LINEAR_SCAN_LIMIT = 8;
+
+    private final long[] productIds;
+    private final int[] quantities;
+    private final int size;
+    // Open-addressing table of position + 1 per product ID, 0 for a free slot; null for small orders
+    private final int[] index;
+
+    private OrderLines(long[] productIds, int[] quantities, int size, int[] index) {
+        this.productIds = productIds;
+        this.quantities = quantities;
+        this.size = size;
+        this.index = index;
+    }
+
+    public static OrderLines of(Map<Long, Integer> productQuantities) {
+        Builder builder = new Builder(productQuantities.size());
+        productQuantities.forEach(builder::add);
+        return builder.build();
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    public long productId(int line) {
+        return productIds[line];
+    }
+
+    public int quantity(int line) {
+        return quantities[line];
+    }
+
+    // Position of the product's line, or -1 when the order does not contain it
+    public int indexOf(long productId) {
+        return indexOf(productIds, size, index, productId);
+    }
+
+    private static int indexOf(long[] productIds, int size, int[] index, long productId) {
+        if (index == null) {
+            for (int line = 0; line < size; line++) {
+                if (productIds[line] == productId) {
+                    return line;
+                }
+            }
+            return -1;
+        }
+        int mask = index.length - 1;
+        for (int slot = slot(productId, mask); index[slot] != 0; slot = (slot + 1) & mask) {
+            if (productIds[index[slot] - 1] == productId) {
+                return index[slot] - 1;
+            }
+        }
+        return -1;
+    }
+
+    public boolean contains(long productId) {
+        return indexOf(productId) >= 0;
+    }
+
+    // Boxed view of the product IDs, for lookups keyed by Long such as the product cache
+    public List<Long> productIdList() {
+        return new AbstractList<>() {
+            @Override
+            public Long get(int line) {
+                return productIds[line];
+            }
+
+            @Override
+            public int size() {
+                return size;
+            }
+        };
+    }
+
+    // The same lines ordered by product ID, so payloads listing them in a different order compare equal
+    public OrderLines sortedByProductId() {
+        long[] sortedIds = Arrays.copyOf(productIds, size);
+        Arrays.sort(sortedIds);
+        Builder builder = new Builder(size);
+        for (long productId : sortedIds) {
+            builder.add(productId, quantities[indexOf(productId)]);
+        }
+        return builder.build();
+    }
+
+    private static int slot(long productId, int mask) {
+        return Long.hashCode(productId * 0x9E3779B97F4A7C15L) & mask;
+    }
+
+    @Override
+    public boolean equals(Object other) {
+        return other instanceof OrderLines lines
+                && Arrays.equals(productIds, 0, size, lines.productIds, 0, lines.size)
+                && Arrays.equals(quantities, 0, size, lines.quantities, 0, lines.size);
+    }
+
+    @Override
+    public int hashCode() {
+        int hash = 1;
+        for (int line = 0; line < size; line++) {
+            hash = 31 * hash + Long.hashCode(productIds[line]);
+            hash = 31 * hash + quantities[line];
+        }
+        return hash;
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder text = new StringBuilder("{");
+        for (int line = 0; line < size; line++) {
+            text.append(line == 0 ? "" : ", ").append(productIds[line]).append('=').append(quantities[line]);
+        }
+        return text.append('}').toString();
+    }
+
+    // Collects lines in the order they are added, merging repeated products as it goes. The built lines share the
+    // builder's arrays, so a builder builds once
+    public static final class Builder {
+        private long[] productIds;
+        private int[] quantities;
+        private int size;
+        private int[] index;
+
+        public Builder() {
+            this(LINEAR_SCAN_LIMIT);
+        }
+
+        public Builder(int expectedLines) {
+            productIds = new long[Math.max(expectedLines, 1)];
+            quantities = new int[productIds.length];
+        }
+
+        // Throws ArithmeticException when merged quantities overflow an int
+        public Builder add(long productId, int quantity) {
+            if (productIds == null) {
+                throw new IllegalStateException("The order lines were already built");
+            }
+            int line = indexOf(productIds, size, index, productId);
+            if (line >= 0) {
+                quantities[line] = Math.addExact(quantities[line], quantity);
+                return this;
+            }
+            if (size == productIds.length) {
+                productIds = Arrays.copyOf(productIds, size * 2);
+                quantities = Arrays.copyOf(quantities, size * 2);
+            }
+            productIds[size] = productId;
+            quantities[size] = quantity;
+            size++;
+            if (index != null && size * 2 > index.length) {
+                rebuildIndex(index.length * 2);
+            } else if (index != null) {
+                insert(index, size - 1);
+            } else if (size > LINEAR_SCAN_LIMIT) {
+                rebuildIndex(Integer.highestOneBit(size) * 4);
+            }
+            return this;
+        }
+
+        private void rebuildIndex(int capacity) {
+            index = new int[capacity];
+            for (int line = 0; line < size; line++) {
+                insert(index, line);
+            }
+        }
+
+        private void insert(int[] table, int line) {
+            int mask = table.length - 1;
+            int slot = slot(productIds[line], mask);
+            while (table[slot] != 0) {
+                slot = (slot + 1) & mask;
+            }
+            table[slot] = line + 1;
+        }
+
+        public OrderLines build() {
+            OrderLines lines = new OrderLines(productIds, quantities, size, index);
+            productIds = null;
+            return lines;
+        }
+    }
+
+    // Parses product IDs from the characters of each field name and quantities as ints, so no key is turned into a
+    // String and no number is boxed. Quantities given as strings are accepted like they were for Map<Long, Integer>
+    static final class Deserializer extends StdDeserializer<OrderLines> {
+
+        Deserializer() {
+            super(OrderLines.class);
+        }
+
+        @Override
+        public OrderLines deserialize(JsonParser parser, DeserializationContext context) throws IOException {
+            JsonToken token = parser.currentToken();
+            if (token == JsonToken.START_OBJECT) {
+                token = parser.nextToken();
+            } else if (token != JsonToken.FIELD_NAME && token != JsonToken.END_OBJECT) {
+                return (OrderLines) context.handleUnexpectedToken(OrderLines.class, parser);
+            }
+            Builder builder = new Builder();
+            for (; token == JsonToken.FIELD_NAME; token = parser.nextToken()) {
+                long productId = productId(parser, context);
+                int quantity = switch (parser.nextToken()) {
+                    case VALUE_NUMBER_INT -> parser.getIntValue();
+                    case VALUE_STRING -> quantity(parser, context);
+                    default -> (int) context.handleUnexpectedToken(Integer.class, parser);
+                };
+                try {
+                    builder.add(productId, quantity);
+                } catch (ArithmeticException e) {
+                    return (OrderLines) context.reportInputMismatch(this, "Quantities of product %d add up to more than %d", productId, Integer.MAX_VALUE);
+                }
+            }
+            return builder.build();
+        }
+
+        private static long productId(JsonParser parser, DeserializationContext context) throws IOException {
+            char[] text = parser.getTextCharacters();
+            int offset = parser.getTextOffset();
+            int length = parser.getTextLength();
+            boolean negative = length > 0 && text[offset] == '-';
+            int start = negative ? offset + 1 : offset;
+            int end = offset + length;
+            long value = 0;
+            boolean valid = start < end && end - start <= 19;
+            for (int i = start; valid && i < end; i++) {
+                int digit = text[i] - '0';
+                valid = digit >= 0 && digit <= 9;
+                value = value * 10 + digit;
+                valid &= value >= 0;
+            }
+            if (!valid) {
+                throw context.weirdKeyException(Long.class, parser.currentName(), "not a valid product ID");
+            }
+            return negative ? -value : value;
+        }
+
+        private static int quantity(JsonParser parser, DeserializationContext context) throws IOException {
+            String text = parser.getText().trim();
+            try {
+                return Integer.parseInt(text);
+            } catch (NumberFormatException e) {
+                throw context.weirdStringException(text, Integer.class, "not a valid quantity");
+            }
+        }
+    }
+
+    // Writes the same JSON object the deserializer reads
+    static final class Serializer extends StdSerializer<OrderLines> {
+
+        Serializer() {
+            super(OrderLines.class);
+        }
+
+        @Override
+        public void serialize(OrderLines lines, JsonGenerator generator, SerializerProvider provider) throws IOException {
+            generator.writeStartObject(lines);
+            for (int line = 0; line < lines.size; line++) {
+                generator.writeFieldId(lines.productIds[line]);
+                generator.writeNumber(lines.quantities[line]);
+            }
+            generator.writeEndObject();
+        }
+    }
+}
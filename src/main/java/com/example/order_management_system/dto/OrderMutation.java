@@ -0,0 +1,16 @@
+package com.example.order_management_system.dto;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+
+// One operation of a batch mutation, with the same effect as the single-order endpoint it names:
+// {"op": "update", "orderId": 1, "products": {"5": 2}}, {"op": "addProducts", "orderId": 1, "products": {"7": 1}},
+// {"op": "removeProduct", "orderId": 1, "productId": 5} or {"op": "delete", "orderId": 1}
+public record OrderMutation(Type op, Long orderId, OrderLines products, Long productId) {
+
+    public enum Type {
+        @JsonProperty("update") UPDATE,
+        @JsonProperty("addProducts") ADD_PRODUCTS,
+        @JsonProperty("removeProduct") REMOVE_PRODUCT,
+        @JsonProperty("delete") DELETE
+    }
+}
@@ -0,0 +1,16 @@
+package com.example.order_management_system.dto;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+
+// Outcome of one operation of a batch mutation, identified by its position in the request
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public record OrderMutationResult(int index, String status, Long orderId, String message) {
+
+    public static OrderMutationResult success(int index, Long orderId) {
+        return new OrderMutationResult(index, "success", orderId, null);
+    }
+
+    public static OrderMutationResult failure(int index, Long orderId, String message) {
+        return new OrderMutationResult(index, "failure", orderId, message);
+    }
+}
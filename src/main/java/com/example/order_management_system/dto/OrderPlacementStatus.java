@@ -0,0 +1,20 @@
+package com.example.order_management_system.dto;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+
+// Where an order accepted with respond-async stands: still queued, committed, or rejected while committing
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public record OrderPlacementStatus(Long orderId, String state, String message) {
+
+    public static OrderPlacementStatus pending(Long orderId) {
+        return new OrderPlacementStatus(orderId, "pending", null);
+    }
+
+    public static OrderPlacementStatus created(Long orderId) {
+        return new OrderPlacementStatus(orderId, "created", null);
+    }
+
+    public static OrderPlacementStatus failed(Long orderId, String message) {
+        return new OrderPlacementStatus(orderId, "failed", message);
+    }
+}
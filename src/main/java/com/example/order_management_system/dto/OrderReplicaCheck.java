@@ -0,0 +1,8 @@
+package com.example.order_management_system.dto;
+
+import java.util.List;
+
+// Outcome of comparing the in-memory order replica with the database: orders the replica lacks, holds in a different
+// state, or still holds after they were deleted, and whether reloading them was requested
+public record OrderReplicaCheck(long checked, List<Long> missing, List<Long> stale, List<Long> unexpected, boolean repaired) {
+}
@@ -0,0 +1,7 @@
+package com.example.order_management_system.dto;
+
+import java.math.BigDecimal;
+
+// Stored totals of an order, read without its lines
+public record OrderTotals(Long orderId, BigDecimal total, Integer lineCount) {
+}
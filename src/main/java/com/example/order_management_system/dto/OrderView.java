@@ -0,0 +1,26 @@
+package com.example.order_management_system.dto;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+
+// Read model of an order with its lines, serialized exactly like the Order entity
+public record OrderView(Long id, List<OrderLineView> orderProducts, BigDecimal total, Integer lineCount, Long version) {
+
+    // Groups rows ordered by order ID into one view per order, keeping the row order of the lines
+    public static List<OrderView> fromRows(List<OrderViewRow> rows) {
+        List<OrderView> orders = new ArrayList<>();
+        OrderView current = null;
+        for (OrderViewRow row : rows) {
+            if (current == null || !current.id().equals(row.orderId())) {
+                current = new OrderView(row.orderId(), new ArrayList<>(), row.total(), row.lineCount(), row.version());
+                orders.add(current);
+            }
+            if (row.lineId() != null) {
+                ProductView product = new ProductView(row.productId(), row.productName(), row.productPrice(), row.productDescription());
+                current.orderProducts().add(new OrderLineView(row.lineId(), product, row.quantity()));
+            }
+        }
+        return orders;
+    }
+}
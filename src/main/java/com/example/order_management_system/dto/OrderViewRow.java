@@ -0,0 +1,10 @@
+package com.example.order_management_system.dto;
+
+import java.math.BigDecimal;
+
+// One row of the flat order/line/product join the order read models are assembled from; the line and
+// product columns are null for an order without lines
+public record OrderViewRow(Long orderId, BigDecimal total, Integer lineCount, Long version,
+                           Long lineId, Integer quantity,
+                           Long productId, String productName, String productDescription, Double productPrice) {
+}
@@ -0,0 +1,7 @@
+package com.example.order_management_system.dto;
+
+import java.math.BigDecimal;
+
+// An order accepted by the async pipeline under a reserved ID, with its totals computed at acceptance time
+public record PendingOrder(Long id, OrderLines productQuantities, BigDecimal total, int lineCount) {
+}
@@ -0,0 +1,5 @@
+package com.example.order_management_system.dto;
+
+// What a product deletion removed besides the product itself
+public record ProductDeletionResult(int linesRemoved, int ordersRemoved) {
+}
@@ -0,0 +1,8 @@
+package com.example.order_management_system.dto;
+
+import java.math.BigDecimal;
+
+// Units ordered, order lines and revenue of a product over every order, with revenue at the current price like
+// order totals
+public record ProductSales(Long productId, String name, long quantity, long lines, BigDecimal revenue) {
+}
@@ -0,0 +1,5 @@
+package com.example.order_management_system.dto;
+
+// Units ordered and number of order lines of one product within a range of order lines, or over all its lines
+public record ProductSalesRow(Long productId, Long quantity, Long lines) {
+}
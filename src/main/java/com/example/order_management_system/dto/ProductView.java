@@ -0,0 +1,5 @@
+package com.example.order_management_system.dto;
+
+// Read model of a product, serialized exactly like the Product entity
+public record ProductView(Long id, String name, Double price, String description) {
+}
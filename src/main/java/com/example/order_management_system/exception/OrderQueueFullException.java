@@ -0,0 +1,9 @@
+package com.example.order_management_system.exception;
+
+// The async order pipeline has as many orders waiting to be committed as it is allowed to hold
+public class OrderQueueFullException extends RuntimeException {
+
+    public OrderQueueFullException(String message) {
+        super(message);
+    }
+}
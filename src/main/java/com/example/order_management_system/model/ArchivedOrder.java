@@ -0,0 +1,53 @@
+package com.example.order_management_system.model;
+
+import jakarta.persistence.*;
+
+import java.math.BigDecimal;
+import java.time.Instant;
+
+// An order moved out of the orders table by the OrderArchiver. Archived orders are read-only: they keep the ID,
+// totals and version they had when they were archived
+@Entity
+@Table(name = "archived_orders")
+public class ArchivedOrder {
+    @Id
+    private Long id;
+
+    @Column(nullable = false, precision = 19, scale = 2)
+    private BigDecimal total;
+
+    @Column(nullable = false)
+    private Integer lineCount;
+
+    @Column(nullable = false)
+    private Long version;
+
+    private Instant createdAt;
+
+    @Column(nullable = false)
+    private Instant archivedAt;
+
+    public Long getId() {
+        return id;
+    }
+
+    public BigDecimal getTotal() {
+        return total;
+    }
+
+    public Integer getLineCount() {
+        return lineCount;
+    }
+
+    public Long getVersion() {
+        return version;
+    }
+
+    public Instant getCreatedAt() {
+        return createdAt;
+    }
+
+    public Instant getArchivedAt() {
+        return archivedAt;
+    }
+}
@@ -0,0 +1,53 @@
+package com.example.order_management_system.model;
+
+import jakarta.persistence.*;
+
+// A line of an archived order. The product is copied as it was at archival, so archived orders still read the same
+// after the product is changed or deleted
+@Entity
+@Table(name = "archived_order_product", indexes = @Index(name = "idx_archived_order_product_order", columnList = "orderId"))
+public class ArchivedOrderLine {
+    @Id
+    private Long id;
+
+    @Column(nullable = false)
+    private Long orderId;
+
+    @Column(nullable = false)
+    private Long productId;
+
+    private String productName;
+    private String productDescription;
+    private Double productPrice;
+
+    @Column(nullable = false)
+    private Integer quantity;
+
+    public Long getId() {
+        return id;
+    }
+
+    public Long getOrderId() {
+        return orderId;
+    }
+
+    public Long getProductId() {
+        return productId;
+    }
+
+    public String getProductName() {
+        return productName;
+    }
+
+    public String getProductDescription() {
+        return productDescription;
+    }
+
+    public Double getProductPrice() {
+        return productPrice;
+    }
+
+    public Integer getQuantity() {
+        return quantity;
+    }
+}
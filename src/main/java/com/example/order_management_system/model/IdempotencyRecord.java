@@ -0,0 +1,73 @@
+package com.example.order_management_system.model;
+
+import jakarta.persistence.*;
+import org.springframework.data.domain.Persistable;
+
+import java.time.Instant;
+
+// A request claimed under an Idempotency-Key, shared by all instances when the database store is enabled. The status
+// stays null while the claiming request is running; afterwards it holds the stored response until the record expires
+@Entity
+@Table(name = "idempotency_key", indexes = @Index(name = "idx_idempotency_key_expires_at", columnList = "expiresAt"))
+public class IdempotencyRecord implements Persistable<String> {
+    // SHA-256 of the endpoint and the key, so keys of any content fit a fixed-width primary key
+    @Id
+    @Column(length = 64)
+    private String id;
+
+    @Column(nullable = false, length = 64)
+    private String fingerprint;
+
+    private Integer status;
+
+    @Column(length = 4000)
+    private String response;
+
+    @Column(nullable = false)
+    private Instant expiresAt;
+
+    // Always inserted, never merged, so a second claim of the same key fails on the primary key
+    @Transient
+    private boolean isNew;
+
+    public static IdempotencyRecord claim(String id, String fingerprint, Instant expiresAt) {
+        IdempotencyRecord record = new IdempotencyRecord();
+        record.id = id;
+        record.fingerprint = fingerprint;
+        record.expiresAt = expiresAt;
+        record.isNew = true;
+        return record;
+    }
+
+    @Override
+    public String getId() {
+        return id;
+    }
+
+    @Override
+    public boolean isNew() {
+        return isNew;
+    }
+
+    @PostLoad
+    @PostPersist
+    void markNotNew() {
+        isNew = false;
+    }
+
+    public String getFingerprint() {
+        return fingerprint;
+    }
+
+    public Integer getStatus() {
+        return status;
+    }
+
+    public String getResponse() {
+        return response;
+    }
+
+    public Instant getExpiresAt() {
+        return expiresAt;
+    }
+}
@@ -1,19 +1,51 @@
 package com.example.order_management_system.model;
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
 import jakarta.persistence.*;
+import java.math.BigDecimal;
+import java.time.Instant;
 import java.util.ArrayList;
 import java.util.List;
 
 @Entity
-@Table(name = "orders")
+// Indexed by creation time so the archiver finds the orders past oms.archive.max-age without a table scan
+@Table(name = "orders", indexes = @Index(name = "idx_orders_created_at", columnList = "createdAt"))
 public class Order {
+    // Pooled sequence (a table on MySQL) so inserts can be batched; IDENTITY forces one round-trip per row
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "orders_seq")
+    @SequenceGenerator(name = "orders_seq", sequenceName = "orders_seq", allocationSize = 50)
     private Long id;
 
     @OneToMany(mappedBy = "order", cascade = CascadeType.ALL, orphanRemoval = true)
     private List<OrderProduct> orderProducts = new ArrayList<>();
 
+    // Sum of price * quantity and number of lines, maintained by the OrderService write paths
+    // so totals can be read without loading the lines
+    @Column(nullable = false, precision = 19, scale = 2)
+    private BigDecimal total = BigDecimal.ZERO;
+
+    @Column(nullable = false)
+    private Integer lineCount = 0;
+
+    // Optimistic lock: every write path changes the totals, so a concurrent change to the lines
+    // always bumps the version and the losing writer fails instead of overwriting it
+    @Version
+    @Column(nullable = false)
+    private Long version;
+
+    // Set on insert; null for orders created before the column existed, which are only archived by ID.
+    // Not serialized, so responses stay the same as before
+    @JsonIgnore
+    private Instant createdAt;
+
+    @PrePersist
+    void onCreate() {
+        if (createdAt == null) {
+            createdAt = Instant.now();
+        }
+    }
+
     public Long getId() {
         return id;
     }
@@ -29,4 +61,36 @@ public class Order {
     public void setOrderProducts(List<OrderProduct> orderProducts) {
         this.orderProducts = orderProducts;
     }
+
+    public BigDecimal getTotal() {
+        return total;
+    }
+
+    public void setTotal(BigDecimal total) {
+        this.total = total;
+    }
+
+    public Integer getLineCount() {
+        return lineCount;
+    }
+
+    public void setLineCount(Integer lineCount) {
+        this.lineCount = lineCount;
+    }
+
+    public Long getVersion() {
+        return version;
+    }
+
+    public void setVersion(Long version) {
+        this.version = version;
+    }
+
+    public Instant getCreatedAt() {
+        return createdAt;
+    }
+
+    public void setCreatedAt(Instant createdAt) {
+        this.createdAt = createdAt;
+    }
 }
@@ -4,9 +4,17 @@ import com.fasterxml.jackson.annotation.JsonBackReference;
 import jakarta.persistence.*;
 
 @Entity
+@Table(name = "order_product", indexes = {
+        // Reverse lookup "orders containing product X", covering so it never touches the table rows
+        @Index(name = "idx_order_product_product_order", columnList = "product_id, order_id"),
+        // Loading the lines of an order, and checking whether an order contains a product
+        @Index(name = "idx_order_product_order_product", columnList = "order_id, product_id")
+})
 public class OrderProduct {
+    // Pooled sequence (a table on MySQL) so line inserts can be batched
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "order_product_seq")
+    @SequenceGenerator(name = "order_product_seq", sequenceName = "order_product_seq", allocationSize = 50)
     private Long id;
 
     @ManyToOne
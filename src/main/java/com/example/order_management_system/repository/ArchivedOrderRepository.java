@@ -0,0 +1,39 @@
+package com.example.order_management_system.repository;
+
+import com.example.order_management_system.dto.OrderTotals;
+import com.example.order_management_system.dto.OrderViewRow;
+import com.example.order_management_system.model.ArchivedOrder;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+
+import java.time.Instant;
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+
+public interface ArchivedOrderRepository extends JpaRepository<ArchivedOrder, Long> {
+
+    // Copy the given orders into the archive, in the transaction that then deletes them from the live tables
+    @Modifying
+    @Query("INSERT INTO ArchivedOrder (id, total, lineCount, version, createdAt, archivedAt) "
+            + "SELECT o.id, o.total, o.lineCount, o.version, o.createdAt, :archivedAt FROM Order o WHERE o.id IN :ids")
+    int copyOrders(@Param("ids") Collection<Long> ids, @Param("archivedAt") Instant archivedAt);
+
+    // Copy the lines of the given orders, each with its product as it is now
+    @Modifying
+    @Query("INSERT INTO ArchivedOrderLine (id, orderId, productId, productName, productDescription, productPrice, quantity) "
+            + "SELECT op.id, op.order.id, p.id, p.name, p.description, p.price, op.quantity "
+            + "FROM OrderProduct op JOIN op.product p WHERE op.order.id IN :ids")
+    int copyLines(@Param("ids") Collection<Long> ids);
+
+    // The same rows as OrderRepository.findViewRowsById, so archived orders read exactly like live ones
+    @Query("SELECT new com.example.order_management_system.dto.OrderViewRow("
+            + "o.id, o.total, o.lineCount, o.version, l.id, l.quantity, l.productId, l.productName, l.productDescription, l.productPrice) "
+            + "FROM ArchivedOrder o LEFT JOIN ArchivedOrderLine l ON l.orderId = o.id WHERE o.id = :id ORDER BY l.id")
+    List<OrderViewRow> findViewRowsById(@Param("id") Long id);
+
+    @Query("SELECT new com.example.order_management_system.dto.OrderTotals(o.id, o.total, o.lineCount) FROM ArchivedOrder o WHERE o.id = :id")
+    Optional<OrderTotals> findTotalsById(@Param("id") Long id);
+}
@@ -0,0 +1,35 @@
+package com.example.order_management_system.repository;
+
+import com.example.order_management_system.model.IdempotencyRecord;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.Instant;
+
+public interface IdempotencyRecordRepository extends JpaRepository<IdempotencyRecord, String> {
+
+    // Store the response of a claimed request and keep it until `expiresAt`
+    @Transactional
+    @Modifying
+    @Query("UPDATE IdempotencyRecord r SET r.status = :status, r.response = :response, r.expiresAt = :expiresAt WHERE r.id = :id")
+    int complete(@Param("id") String id, @Param("status") int status, @Param("response") String response, @Param("expiresAt") Instant expiresAt);
+
+    // Drop a claim whose request ended without a response worth keeping, so the key can be retried
+    @Transactional
+    @Modifying
+    @Query("DELETE FROM IdempotencyRecord r WHERE r.id = :id AND r.status IS NULL")
+    int release(@Param("id") String id);
+
+    @Transactional
+    @Modifying
+    @Query("DELETE FROM IdempotencyRecord r WHERE r.id = :id AND r.expiresAt < :now")
+    int deleteIfExpired(@Param("id") String id, @Param("now") Instant now);
+
+    @Transactional
+    @Modifying
+    @Query("DELETE FROM IdempotencyRecord r WHERE r.expiresAt < :now")
+    int deleteExpired(@Param("now") Instant now);
+}
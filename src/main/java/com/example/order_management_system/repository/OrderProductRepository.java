@@ -1,7 +1,30 @@
 package com.example.order_management_system.repository;
 
+import com.example.order_management_system.dto.ProductSalesRow;
 import com.example.order_management_system.model.OrderProduct;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
 
 public interface OrderProductRepository extends JpaRepository<OrderProduct, Long> {
+
+    // Per-product sums of a range of lines, grouped by the database so a chunk returns at most one row per product
+    @Query("SELECT new com.example.order_management_system.dto.ProductSalesRow(op.product.id, SUM(op.quantity), COUNT(op)) "
+            + "FROM OrderProduct op WHERE op.id BETWEEN :fromId AND :toId GROUP BY op.product.id")
+    List<ProductSalesRow> findSalesBetween(@Param("fromId") Long fromId, @Param("toId") Long toId);
+
+    // Per-product sums of the lines of the given products, read through the product index instead of a range of lines
+    @Query("SELECT new com.example.order_management_system.dto.ProductSalesRow(op.product.id, SUM(op.quantity), COUNT(op)) "
+            + "FROM OrderProduct op WHERE op.product.id IN :productIds GROUP BY op.product.id")
+    List<ProductSalesRow> findSalesByProductIdIn(@Param("productIds") Collection<Long> productIds);
+
+    @Query("SELECT MIN(op.id) FROM OrderProduct op")
+    Optional<Long> findMinId();
+
+    @Query("SELECT MAX(op.id) FROM OrderProduct op")
+    Optional<Long> findMaxId();
 }
@@ -1,22 +1,162 @@
 package com.example.order_management_system.repository;
 
+import com.example.order_management_system.dto.OrderTotals;
+import com.example.order_management_system.dto.OrderViewRow;
 import com.example.order_management_system.model.Order;
 
+import java.time.Instant;
+import java.util.Collection;
 import java.util.List;
+import java.util.Optional;
+import java.util.stream.Stream;
 
+import org.springframework.data.domain.Limit;
+import org.springframework.data.jpa.repository.EntityGraph;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
 import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
 import org.springframework.data.repository.query.Param;
 import org.springframework.transaction.annotation.Transactional;
 
+import jakarta.persistence.LockModeType;
+import jakarta.persistence.QueryHint;
+
+import static org.hibernate.jpa.HibernateHints.HINT_FETCH_SIZE;
+import static org.hibernate.jpa.HibernateHints.HINT_READ_ONLY;
+
 public interface OrderRepository extends JpaRepository<Order, Long> {
 
+    // Totals of an order computed from its lines at current product prices. The bulk updates below
+    // bump the version so a writer holding the old totals cannot overwrite the recomputed ones
+    String LINE_TOTAL = "CAST(ROUND(COALESCE((SELECT SUM(op.quantity * op.product.price) FROM OrderProduct op WHERE op.order = o), 0), 2) AS BigDecimal)";
+    String LINE_COUNT = "CAST((SELECT COUNT(op) FROM OrderProduct op WHERE op.order = o) AS Integer)";
+    // Flat order/line/product rows for the read models, built without managed entities
+    String ORDER_VIEW_ROWS = "SELECT new com.example.order_management_system.dto.OrderViewRow("
+            + "o.id, o.total, o.lineCount, o.version, op.id, op.quantity, p.id, p.name, p.description, p.price) "
+            + "FROM Order o LEFT JOIN o.orderProducts op LEFT JOIN op.product p";
+    String RECOMPUTE_TOTALS = "UPDATE Order o SET o.total = " + LINE_TOTAL + ", o.lineCount = " + LINE_COUNT + ", o.version = o.version + 1";
+
     @Transactional
-    @Modifying
+    @Modifying(flushAutomatically = true, clearAutomatically = true)
     @Query("DELETE FROM OrderProduct op WHERE op.product.id = :productId")
-    void removeProductFromOrders(Long productId);
+    int removeProductFromOrders(Long productId);
 
     @Query("SELECT op.order FROM OrderProduct op WHERE op.product.id = :productId")
     List<Order> findOrdersByProductId(@Param("productId") Long productId);
+
+    @Query("SELECT DISTINCT op.order.id FROM OrderProduct op WHERE op.product.id = :productId")
+    List<Long> findOrderIdsByProductId(@Param("productId") Long productId);
+
+    // Keyset page of the IDs of the orders containing a product, served from the (product_id, order_id) index.
+    // Selecting and ordering by both index columns lets H2 read the page straight off the index instead of sorting
+    // every match. DISTINCT counts an order that holds the product on two lines once, so a full page is never short
+    @Query("SELECT DISTINCT op.product.id, op.order.id FROM OrderProduct op WHERE op.product.id = :productId AND op.order.id > :afterId "
+            + "ORDER BY op.product.id, op.order.id")
+    List<Object[]> findProductOrderIdsAfter(@Param("productId") Long productId, @Param("afterId") Long afterId, Limit limit);
+
+    default List<Long> findOrderIdsByProductIdAfter(Long productId, Long afterId, Limit limit) {
+        return findProductOrderIdsAfter(productId, afterId, limit).stream().map(row -> (Long) row[1]).toList();
+    }
+
+    // Deletes those of the given orders that no longer have any lines
+    @Transactional
+    @Modifying(clearAutomatically = true)
+    @Query("DELETE FROM Order o WHERE o.id IN :ids AND o.orderProducts IS EMPTY")
+    int deleteEmptyOrdersByIdIn(@Param("ids") Collection<Long> ids);
+
+    // Single order with its lines and their products in one query
+    @EntityGraph(attributePaths = {"orderProducts", "orderProducts.product"})
+    @Query("SELECT o FROM Order o WHERE o.id = :id")
+    Optional<Order> findWithProductsById(@Param("id") Long id);
+
+    // Every order with its lines and their products in one query
+    @EntityGraph(attributePaths = {"orderProducts", "orderProducts.product"})
+    @Query("SELECT o FROM Order o ORDER BY o.id")
+    List<Order> findAllWithProducts();
+
+    // The given orders with their lines and their products in one query
+    @EntityGraph(attributePaths = {"orderProducts", "orderProducts.product"})
+    @Query("SELECT o FROM Order o WHERE o.id IN :ids ORDER BY o.id")
+    List<Order> findAllWithProductsByIdIn(@Param("ids") Collection<Long> ids);
+
+    @Query(ORDER_VIEW_ROWS + " WHERE o.id = :id ORDER BY op.id")
+    List<OrderViewRow> findViewRowsById(@Param("id") Long id);
+
+    @Query(ORDER_VIEW_ROWS + " ORDER BY o.id, op.id")
+    List<OrderViewRow> findAllViewRows();
+
+    @Query(ORDER_VIEW_ROWS + " WHERE o.id IN :ids ORDER BY o.id, op.id")
+    List<OrderViewRow> findViewRowsByIdIn(@Param("ids") Collection<Long> ids);
+
+    @Query(ORDER_VIEW_ROWS + " WHERE o.id BETWEEN :fromId AND :toId ORDER BY o.id, op.id")
+    List<OrderViewRow> findViewRowsBetween(@Param("fromId") Long fromId, @Param("toId") Long toId);
+
+    // Keyset page: the IDs of the next `limit` orders after the given ID
+    @Query("SELECT o.id FROM Order o WHERE o.id > :afterId ORDER BY o.id")
+    List<Long> findIdsAfter(@Param("afterId") Long afterId, Limit limit);
+
+    // Scrolls through every order ID without materializing the table; must be consumed inside a transaction
+    @QueryHints({@QueryHint(name = HINT_FETCH_SIZE, value = "500"), @QueryHint(name = HINT_READ_ONLY, value = "true")})
+    @Query("SELECT o.id FROM Order o ORDER BY o.id")
+    Stream<Long> streamAllIds();
+
+    @Query("SELECT o.id FROM Order o WHERE o.id IN :ids")
+    List<Long> findExistingIds(@Param("ids") Collection<Long> ids);
+
+    @Query("SELECT new com.example.order_management_system.dto.OrderTotals(o.id, o.total, o.lineCount) FROM Order o WHERE o.id = :id")
+    Optional<OrderTotals> findTotalsById(@Param("id") Long id);
+
+    // Recompute the stored totals of the given orders from their lines
+    @Transactional
+    @Modifying(flushAutomatically = true, clearAutomatically = true)
+    @Query(RECOMPUTE_TOTALS + " WHERE o.id IN :ids")
+    int recomputeTotalsByIdIn(@Param("ids") Collection<Long> ids);
+
+    // Recompute the stored totals of every order that contains the product, e.g. after a price change
+    @Transactional
+    @Modifying(flushAutomatically = true, clearAutomatically = true)
+    @Query(RECOMPUTE_TOTALS
+            + " WHERE o.id IN (SELECT op.order.id FROM OrderProduct op WHERE op.product.id = :productId)")
+    int recomputeTotalsForProduct(@Param("productId") Long productId);
+
+    // Fix the stored totals of the orders in an ID range that drifted from their lines; returns how many were fixed
+    @Transactional
+    @Modifying(flushAutomatically = true, clearAutomatically = true)
+    @Query(RECOMPUTE_TOTALS
+            + " WHERE o.id BETWEEN :fromId AND :toId AND (o.total <> " + LINE_TOTAL + " OR o.lineCount <> " + LINE_COUNT + ")")
+    int reconcileTotalsBetween(@Param("fromId") Long fromId, @Param("toId") Long toId);
+
+    // The next `limit` orders to archive by ID watermark, read off the primary key
+    @Query("SELECT o.id FROM Order o WHERE o.id < :beforeId ORDER BY o.id")
+    List<Long> findIdsBefore(@Param("beforeId") Long beforeId, Limit limit);
+
+    // The next `limit` orders to archive by age, oldest first, read off the created_at index
+    @Query("SELECT o.id FROM Order o WHERE o.createdAt < :cutoff ORDER BY o.createdAt, o.id")
+    List<Long> findIdsCreatedBefore(@Param("cutoff") Instant cutoff, Limit limit);
+
+    // Lock the orders of an archive chunk until its transaction ends. Every write to an order updates its row, so a
+    // write that starts after the lock waits, then finds the order gone, instead of committing between the copy and
+    // the delete. Orders already deleted are left out
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("SELECT o.id FROM Order o WHERE o.id IN :ids ORDER BY o.id")
+    List<Long> lockByIdIn(@Param("ids") Collection<Long> ids);
+
+    // Delete the given orders and their lines, lines first, without loading them
+    @Transactional
+    @Modifying(flushAutomatically = true, clearAutomatically = true)
+    @Query("DELETE FROM OrderProduct op WHERE op.order.id IN :ids")
+    int deleteLinesByOrderIdIn(@Param("ids") Collection<Long> ids);
+
+    @Transactional
+    @Modifying(flushAutomatically = true, clearAutomatically = true)
+    @Query("DELETE FROM Order o WHERE o.id IN :ids")
+    int deleteByIdIn(@Param("ids") Collection<Long> ids);
+
+    @Query("SELECT MIN(o.id) FROM Order o")
+    Optional<Long> findMinId();
+
+    @Query("SELECT MAX(o.id) FROM Order o")
+    Optional<Long> findMaxId();
 }
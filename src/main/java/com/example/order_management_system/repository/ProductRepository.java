@@ -1,7 +1,45 @@
 package com.example.order_management_system.repository;
 
+import com.example.order_management_system.dto.ProductView;
 import com.example.order_management_system.model.Product;
+import jakarta.persistence.QueryHint;
+import org.springframework.data.domain.Limit;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.data.repository.query.Param;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.stream.Stream;
+
+import static org.hibernate.jpa.HibernateHints.HINT_FETCH_SIZE;
 
 public interface ProductRepository extends JpaRepository<Product, Long> {
+
+    // Read models built straight from the columns, without managed entities
+    String PRODUCT_VIEWS = "SELECT new com.example.order_management_system.dto.ProductView(p.id, p.name, p.price, p.description) FROM Product p";
+
+    @Query(PRODUCT_VIEWS + " ORDER BY p.id")
+    List<ProductView> findAllViews();
+
+    @Query(PRODUCT_VIEWS + " WHERE p.id > :afterId ORDER BY p.id")
+    List<ProductView> findViewsAfter(@Param("afterId") Long afterId, Limit limit);
+
+    @Query(PRODUCT_VIEWS + " WHERE p.id IN :ids")
+    List<ProductView> findViewsByIdIn(@Param("ids") Collection<Long> ids);
+
+    // Keyset page of the products whose name or description matches the LIKE pattern, within a price range; what the
+    // search index answers without scanning the table. A null bound leaves that side open, and products without a
+    // price only match when both are null
+    @Query(PRODUCT_VIEWS + " WHERE p.id > :afterId"
+            + " AND (:minPrice IS NULL OR p.price >= :minPrice) AND (:maxPrice IS NULL OR p.price <= :maxPrice)"
+            + " AND (LOWER(p.name) LIKE :pattern OR LOWER(p.description) LIKE :pattern) ORDER BY p.id")
+    List<ProductView> searchViews(@Param("pattern") String pattern, @Param("minPrice") Double minPrice, @Param("maxPrice") Double maxPrice,
+                                  @Param("afterId") Long afterId, Limit limit);
+
+    // Scrolls through every product without materializing the table; must be consumed inside a transaction
+    @QueryHints(@QueryHint(name = HINT_FETCH_SIZE, value = "500"))
+    @Query(PRODUCT_VIEWS + " ORDER BY p.id")
+    Stream<ProductView> streamAllViews();
 }
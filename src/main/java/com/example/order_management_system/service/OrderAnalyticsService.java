@@ -0,0 +1,137 @@
+package com.example.order_management_system.service;
+
+import com.example.order_management_system.cache.ProductSalesAggregate;
+import com.example.order_management_system.cache.ProductSalesTotals;
+import com.example.order_management_system.dto.ProductSales;
+import com.example.order_management_system.dto.ProductView;
+import com.example.order_management_system.repository.ProductRepository;
+import io.micrometer.core.annotation.Timed;
+import org.springframework.data.domain.Limit;
+import org.springframework.stereotype.Service;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.PriorityQueue;
+
+// Sales reports per product, computed from the per-product sums of ProductSalesAggregate and joined with the products
+// only for the rows returned
+@Service
+@Timed("oms.service")
+public class OrderAnalyticsService {
+    private final ProductSalesAggregate productSalesAggregate;
+    private final ProductRepository productRepository;
+
+    // Product IDs per query when joining the sums with the products
+    private static final int PRODUCT_CHUNK_SIZE = 1000;
+    private static final Comparator<ProductSales> BY_REVENUE = Comparator.comparing(ProductSales::revenue)
+            .thenComparing(Comparator.comparing(ProductSales::productId).reversed());
+
+    public OrderAnalyticsService(ProductSalesAggregate productSalesAggregate, ProductRepository productRepository) {
+        this.productSalesAggregate = productSalesAggregate;
+        this.productRepository = productRepository;
+    }
+
+    // The in-memory sums when they are kept and loaded, unless `exact` asks for a fresh scan of the order lines, which
+    // waits for a free scan slot
+    private ProductSalesTotals totals(boolean exact) {
+        if (!exact) {
+            return productSalesAggregate.current().orElseGet(productSalesAggregate::scan);
+        }
+        return productSalesAggregate.scan();
+    }
+
+    // The `limit` products with the most units ordered, most first
+    public List<ProductSales> topProductsByQuantity(int limit, boolean exact) {
+        ProductSalesTotals totals = totals(exact);
+        long[] productIds = totals.topByQuantity(limit);
+        return toProductSales(productIds, totals, findProducts(productIds));
+    }
+
+    // The `limit` products with the highest revenue at their current price, highest first
+    public List<ProductSales> topProductsByRevenue(int limit, boolean exact) {
+        ProductSalesTotals totals = totals(exact);
+        Map<Long, ProductView> products = findProducts(totals.sortedProductIds());
+        PriorityQueue<ProductSales> top = new PriorityQueue<>(limit + 1, BY_REVENUE);
+        totals.forEach((productId, quantity, lines) -> {
+            ProductView product = products.get(productId);
+            if (product != null && limit > 0) {
+                top.add(toProductSales(product, quantity, lines));
+                if (top.size() > limit) {
+                    top.poll();
+                }
+            }
+        });
+        List<ProductSales> sales = new ArrayList<>(top);
+        sales.sort(BY_REVENUE.reversed());
+        return sales;
+    }
+
+    // Keyset page, in product ID order, of the sales of the products after `afterId` that were ordered at all. Without
+    // the in-memory sums only the lines of the products on the page are summed, a page of products at a time, so paging
+    // through a report never scans every order line once per page
+    public List<ProductSales> salesByProduct(long afterId, int size, boolean exact) {
+        Optional<ProductSalesTotals> current = exact ? Optional.empty() : productSalesAggregate.current();
+        if (current.isPresent()) {
+            ProductSalesTotals totals = current.get();
+            long[] productIds = totals.sortedProductIds();
+            int from = Arrays.binarySearch(productIds, afterId);
+            from = from < 0 ? -from - 1 : from + 1;
+            long[] page = Arrays.copyOfRange(productIds, Math.min(from, productIds.length), Math.min(from + size, productIds.length));
+            return toProductSales(page, totals, findProducts(page));
+        }
+        List<ProductSales> sales = new ArrayList<>(size);
+        long cursor = afterId;
+        while (sales.size() < size) {
+            List<ProductView> products = productRepository.findViewsAfter(cursor, Limit.of(size));
+            if (products.isEmpty()) {
+                break;
+            }
+            ProductSalesTotals totals = productSalesAggregate.scanProducts(products.stream().map(ProductView::id).toList());
+            for (ProductView product : products) {
+                if (sales.size() < size && totals.lines(product.id()) != 0) {
+                    sales.add(toProductSales(product, totals.quantity(product.id()), totals.lines(product.id())));
+                }
+            }
+            if (products.size() < size) {
+                break;
+            }
+            cursor = products.get(products.size() - 1).id();
+        }
+        return sales;
+    }
+
+    private Map<Long, ProductView> findProducts(long[] productIds) {
+        Map<Long, ProductView> products = new HashMap<>(productIds.length * 2);
+        for (int from = 0; from < productIds.length; from += PRODUCT_CHUNK_SIZE) {
+            List<Long> chunk = Arrays.stream(productIds, from, Math.min(productIds.length, from + PRODUCT_CHUNK_SIZE)).boxed().toList();
+            productRepository.findViewsByIdIn(chunk).forEach(product -> products.put(product.id(), product));
+        }
+        return products;
+    }
+
+    // Products deleted since the sums were taken are left out
+    private static List<ProductSales> toProductSales(long[] productIds, ProductSalesTotals totals, Map<Long, ProductView> products) {
+        List<ProductSales> sales = new ArrayList<>(productIds.length);
+        for (long productId : productIds) {
+            ProductView product = products.get(productId);
+            if (product != null) {
+                sales.add(toProductSales(product, totals.quantity(productId), totals.lines(productId)));
+            }
+        }
+        return sales;
+    }
+
+    // Priced like order totals: current price times units, rounded to cents
+    private static ProductSales toProductSales(ProductView product, long quantity, long lines) {
+        BigDecimal price = product.price() == null ? BigDecimal.ZERO : BigDecimal.valueOf(product.price());
+        BigDecimal revenue = price.multiply(BigDecimal.valueOf(quantity)).setScale(2, RoundingMode.HALF_UP);
+        return new ProductSales(product.id(), product.name(), quantity, lines, revenue);
+    }
+}
@@ -0,0 +1,155 @@
+package com.example.order_management_system.service;
+
+import com.example.order_management_system.cache.OrderReadReplica;
+import com.example.order_management_system.cache.ProductSalesAggregate;
+import com.example.order_management_system.cache.ProductSalesTotals;
+import com.example.order_management_system.repository.ArchivedOrderRepository;
+import com.example.order_management_system.repository.OrderRepository;
+import io.micrometer.core.annotation.Timed;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.Limit;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.TreeSet;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+
+// Moves orders created more than oms.archive.max-age ago, or with an ID below oms.archive.before-id, from the orders
+// and order_product tables into archived_orders and archived_order_product. Each chunk of oms.archive.chunk-size
+// orders is copied and deleted in its own short transaction, with oms.archive.pause between chunks so online traffic
+// keeps the connections and row locks most of the time
+@Service
+@Timed("oms.service")
+public class OrderArchiver implements MeterBinder {
+    private static final Logger log = LoggerFactory.getLogger(OrderArchiver.class);
+
+    private final OrderRepository orderRepository;
+    private final ArchivedOrderRepository archivedOrderRepository;
+    private final OrderReadReplica orderReadReplica;
+    private final ProductSalesAggregate productSalesAggregate;
+    private final TransactionTemplate transactionTemplate;
+    private final boolean enabled;
+    private final Duration maxAge;
+    private final long beforeId;
+    private final int chunkSize;
+    private final Duration pause;
+
+    // A scheduled run and one started by hand never interleave their chunks
+    private final ReentrantLock running = new ReentrantLock();
+    private final AtomicLong archivedOrders = new AtomicLong();
+
+    public OrderArchiver(OrderRepository orderRepository, ArchivedOrderRepository archivedOrderRepository,
+                         OrderReadReplica orderReadReplica, ProductSalesAggregate productSalesAggregate,
+                         TransactionTemplate transactionTemplate,
+                         @Value("${oms.archive.enabled:false}") boolean enabled,
+                         @Value("${oms.archive.max-age:}") Duration maxAge,
+                         @Value("${oms.archive.before-id:0}") long beforeId,
+                         @Value("${oms.archive.chunk-size:500}") int chunkSize,
+                         @Value("${oms.archive.pause:PT0.2S}") Duration pause) {
+        this.orderRepository = orderRepository;
+        this.archivedOrderRepository = archivedOrderRepository;
+        this.orderReadReplica = orderReadReplica;
+        this.productSalesAggregate = productSalesAggregate;
+        this.transactionTemplate = transactionTemplate;
+        this.enabled = enabled;
+        this.maxAge = maxAge;
+        this.beforeId = beforeId;
+        this.chunkSize = chunkSize;
+        this.pause = pause;
+    }
+
+    @Scheduled(initialDelayString = "${oms.archive.initial-delay:PT10M}", fixedDelayString = "${oms.archive.interval:PT1H}")
+    public void scheduledArchive() {
+        if (enabled) {
+            archive();
+        }
+    }
+
+    // Archive every order currently past the age or the ID watermark; returns how many were moved
+    public int archive() {
+        if (!running.tryLock()) {
+            return 0;
+        }
+        try {
+            long startedAt = System.nanoTime();
+            int archived = 0;
+            while (true) {
+                List<Long> ids = nextChunk();
+                if (ids.isEmpty()) {
+                    break;
+                }
+                archived += archiveChunk(ids);
+                if (!pause()) {
+                    break;
+                }
+            }
+            if (archived > 0) {
+                log.info("Archived {} orders in {} ms", archived, TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startedAt));
+            }
+            return archived;
+        } finally {
+            running.unlock();
+        }
+    }
+
+    // Archived rows are deleted from the live tables, so the next chunk is always the first one left
+    private List<Long> nextChunk() {
+        TreeSet<Long> ids = new TreeSet<>();
+        if (beforeId > 0) {
+            ids.addAll(orderRepository.findIdsBefore(beforeId, Limit.of(chunkSize)));
+        }
+        if (maxAge != null && ids.size() < chunkSize) {
+            ids.addAll(orderRepository.findIdsCreatedBefore(Instant.now().minus(maxAge), Limit.of(chunkSize - ids.size())));
+        }
+        return new ArrayList<>(ids);
+    }
+
+    private int archiveChunk(List<Long> chunk) {
+        Integer archived = transactionTemplate.execute(status -> {
+            // Locked before anything is copied, so a concurrent write lands either before the copy or not at all
+            List<Long> ids = orderRepository.lockByIdIn(chunk);
+            if (ids.isEmpty()) {
+                return 0;
+            }
+            ProductSalesTotals salesBefore = productSalesAggregate.isIncremental()
+                    ? productSalesAggregate.salesOf(orderRepository.findAllWithProductsByIdIn(ids))
+                    : null;
+            int copied = archivedOrderRepository.copyOrders(ids, Instant.now());
+            archivedOrderRepository.copyLines(ids);
+            orderRepository.deleteLinesByOrderIdIn(ids);
+            orderRepository.deleteByIdIn(ids);
+            orderReadReplica.refreshAfterCommit(ids);
+            productSalesAggregate.recordAfterCommit(salesBefore, null);
+            return copied;
+        });
+        archivedOrders.addAndGet(archived);
+        return archived;
+    }
+
+    private boolean pause() {
+        try {
+            Thread.sleep(pause.toMillis());
+            return true;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        FunctionCounter.builder("oms.archive.orders", archivedOrders, AtomicLong::get).register(registry);
+    }
+}
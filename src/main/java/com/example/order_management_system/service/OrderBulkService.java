@@ -0,0 +1,173 @@
+package com.example.order_management_system.service;
+
+import com.example.order_management_system.cache.OrderReadReplica;
+import com.example.order_management_system.cache.ProductCatalogCache;
+import com.example.order_management_system.cache.ProductSalesAggregate;
+import com.example.order_management_system.dto.BulkOrderResult;
+import com.example.order_management_system.dto.OrderLines;
+import com.example.order_management_system.dto.OrderMutation;
+import com.example.order_management_system.dto.OrderMutationResult;
+import com.example.order_management_system.exception.ResourceNotFoundException;
+import com.example.order_management_system.model.Order;
+import com.example.order_management_system.model.Product;
+import com.example.order_management_system.repository.OrderRepository;
+import jakarta.annotation.PreDestroy;
+import jakarta.persistence.EntityManager;
+import org.springframework.beans.factory.annotation.Value;
+import io.micrometer.core.annotation.Timed;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+// Imports and mutates large batches of orders: one product lookup and one transaction per chunk instead of per order
+@Service
+@Timed("oms.service")
+public class OrderBulkService {
+    private final OrderService orderService;
+    private final OrderRepository orderRepository;
+    private final ProductCatalogCache productCatalogCache;
+    private final OrderReadReplica orderReadReplica;
+    private final ProductSalesAggregate productSalesAggregate;
+    private final TransactionTemplate transactionTemplate;
+    private final EntityManager entityManager;
+    private final int chunkSize;
+    // Commits chunks while the request thread keeps parsing the next one
+    private final ExecutorService commitExecutor;
+
+    public OrderBulkService(OrderService orderService, OrderRepository orderRepository, ProductCatalogCache productCatalogCache,
+                            OrderReadReplica orderReadReplica, ProductSalesAggregate productSalesAggregate,
+                            TransactionTemplate transactionTemplate, EntityManager entityManager,
+                            @Value("${oms.bulk.chunk-size:500}") int chunkSize,
+                            @Value("${oms.bulk.commit-threads:4}") int commitThreads) {
+        this.orderService = orderService;
+        this.orderRepository = orderRepository;
+        this.productCatalogCache = productCatalogCache;
+        this.orderReadReplica = orderReadReplica;
+        this.productSalesAggregate = productSalesAggregate;
+        this.transactionTemplate = transactionTemplate;
+        this.entityManager = entityManager;
+        this.chunkSize = chunkSize;
+        this.commitExecutor = Executors.newFixedThreadPool(commitThreads);
+    }
+
+    @PreDestroy
+    void shutdown() {
+        commitExecutor.shutdown();
+    }
+
+    // Create every order read from the iterator, committing in chunks; one chunk is committed while the next is read
+    public List<BulkOrderResult> createOrders(Iterator<OrderLines> orders) {
+        List<BulkOrderResult> results = new ArrayList<>();
+        CompletableFuture<Void> inFlight = CompletableFuture.completedFuture(null);
+        List<OrderLines> chunk = new ArrayList<>(chunkSize);
+        int chunkStart = 0;
+        String malformed = null;
+        while (true) {
+            try {
+                if (!orders.hasNext()) {
+                    break;
+                }
+                chunk.add(orders.next());
+            } catch (RuntimeException e) {
+                // The rest of the input cannot be read; commit what was read so far and report the rest as failed
+                malformed = "Malformed order: " + e.getMessage();
+                break;
+            }
+            if (chunk.size() == chunkSize) {
+                inFlight = submitChunk(inFlight, chunkStart, chunk, results);
+                chunkStart += chunk.size();
+                chunk = new ArrayList<>(chunkSize);
+            }
+        }
+        if (!chunk.isEmpty()) {
+            inFlight = submitChunk(inFlight, chunkStart, chunk, results);
+        }
+        awaitCommit(inFlight);
+        if (malformed != null) {
+            results.add(BulkOrderResult.failure(chunkStart + chunk.size(), malformed));
+        }
+        return results;
+    }
+
+    // Wait for the previous chunk so that at most one chunk per import is being committed
+    private CompletableFuture<Void> submitChunk(CompletableFuture<Void> inFlight, int chunkStart,
+                                                List<OrderLines> chunk, List<BulkOrderResult> results) {
+        awaitCommit(inFlight);
+        return CompletableFuture.runAsync(() -> results.addAll(commitChunk(chunkStart, chunk)), commitExecutor);
+    }
+
+    private static void awaitCommit(CompletableFuture<Void> inFlight) {
+        try {
+            inFlight.join();
+        } catch (CompletionException e) {
+            throw e.getCause() instanceof RuntimeException runtimeException ? runtimeException : e;
+        }
+    }
+
+    private List<BulkOrderResult> commitChunk(int chunkStart, List<OrderLines> chunk) {
+        Set<Long> productIds = new HashSet<>();
+        chunk.forEach(lines -> productIds.addAll(lines.productIdList()));
+        Map<Long, Product> products = productCatalogCache.getAll(productIds);
+
+        List<BulkOrderResult> results = new ArrayList<>(chunk.size());
+        List<Order> validOrders = new ArrayList<>(chunk.size());
+        List<Integer> validIndexes = new ArrayList<>(chunk.size());
+        for (int i = 0; i < chunk.size(); i++) {
+            try {
+                validOrders.add(orderService.buildOrder(chunk.get(i), products));
+                validIndexes.add(chunkStart + i);
+            } catch (ResourceNotFoundException e) {
+                results.add(BulkOrderResult.failure(chunkStart + i, e.getMessage()));
+            }
+        }
+        if (validOrders.isEmpty()) {
+            return results;
+        }
+
+        try {
+            transactionTemplate.executeWithoutResult(status -> {
+                orderRepository.saveAll(validOrders);
+                entityManager.flush();
+                entityManager.clear();
+            });
+            orderReadReplica.refreshAfterCommit(validOrders.stream().map(Order::getId).toList());
+            productSalesAggregate.recordAfterCommit(null, productSalesAggregate.salesOf(validOrders));
+            for (int i = 0; i < validOrders.size(); i++) {
+                results.add(BulkOrderResult.success(validIndexes.get(i), validOrders.get(i).getId()));
+            }
+        } catch (RuntimeException e) {
+            validIndexes.forEach(index -> results.add(BulkOrderResult.failure(index, "Chunk could not be committed: " + e.getMessage())));
+        }
+        results.sort((first, second) -> Integer.compare(first.index(), second.index()));
+        return results;
+    }
+
+    // Apply the mutations in request order, one transaction per chunk of oms.bulk.chunk-size mutations. Chunks run one
+    // after another, so a mutation always sees the effect of the ones before it
+    public List<OrderMutationResult> mutateOrders(List<OrderMutation> mutations) {
+        List<OrderMutationResult> results = new ArrayList<>(mutations.size());
+        for (int chunkStart = 0; chunkStart < mutations.size(); chunkStart += chunkSize) {
+            List<OrderMutation> chunk = mutations.subList(chunkStart, Math.min(mutations.size(), chunkStart + chunkSize));
+            try {
+                results.addAll(orderService.applyMutations(chunkStart, chunk));
+            } catch (RuntimeException e) {
+                for (int i = 0; i < chunk.size(); i++) {
+                    results.add(OrderMutationResult.failure(chunkStart + i, chunk.get(i).orderId(), "Chunk could not be committed: " + e.getMessage()));
+                }
+            }
+            // Keep the persistence context of the request, if any, from holding every chunk's orders
+            entityManager.clear();
+        }
+        return results;
+    }
+}
@@ -0,0 +1,353 @@
+package com.example.order_management_system.service;
+
+import com.example.order_management_system.cache.OrderReadReplica;
+import com.example.order_management_system.cache.ProductCatalogCache;
+import com.example.order_management_system.cache.ProductSalesAggregate;
+import com.example.order_management_system.dto.OrderLines;
+import com.example.order_management_system.dto.OrderPlacementStatus;
+import com.example.order_management_system.dto.PendingOrder;
+import com.example.order_management_system.exception.OrderQueueFullException;
+import com.example.order_management_system.model.Order;
+import com.example.order_management_system.model.OrderProduct;
+import com.example.order_management_system.model.Product;
+import com.example.order_management_system.repository.OrderRepository;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.annotation.Timed;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import jakarta.persistence.EntityManagerFactory;
+import org.hibernate.StatelessSession;
+import org.hibernate.engine.spi.SessionFactoryImplementor;
+import org.hibernate.engine.spi.SharedSessionContractImplementor;
+import org.hibernate.id.IdentifierGenerator;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.SmartLifecycle;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.time.ZonedDateTime;
+import java.util.ArrayList;
+import java.util.Calendar;
+import java.util.GregorianCalendar;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+// Acknowledge-then-persist order placement: an order is validated against the catalog, given its ID and written to
+// the write-ahead log on the request thread, then committed with the orders queued alongside it by a single writer
+// thread, one transaction and two JDBC batches per group. Orders left in the log by a crash are committed on startup
+@Service
+@Timed("oms.service")
+public class OrderPlacementPipeline implements SmartLifecycle, MeterBinder {
+    private static final Logger log = LoggerFactory.getLogger(OrderPlacementPipeline.class);
+
+    private static final String INSERT_ORDER = "INSERT INTO orders (id, total, line_count, version, created_at) VALUES (?, ?, ?, 0, ?)";
+    private static final String INSERT_LINE = "INSERT INTO order_product (id, order_id, product_id, quantity) VALUES (?, ?, ?, ?)";
+    private static final long MAX_RETRY_DELAY_MS = 5000;
+
+    // A queued order and the log segment it was written to
+    private record Accepted(PendingOrder order, long segment) {
+    }
+
+    private final OrderService orderService;
+    private final OrderRepository orderRepository;
+    private final ProductCatalogCache productCatalogCache;
+    private final OrderReadReplica orderReadReplica;
+    private final ProductSalesAggregate productSalesAggregate;
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final SessionFactoryImplementor sessionFactory;
+    private final IdentifierGenerator orderIds;
+    private final IdentifierGenerator lineIds;
+    private final OrderWriteAheadLog writeAheadLog;
+    private final int maxBatchSize;
+
+    // One permit per order that may wait to be committed; taken before the order is logged so a rejected order
+    // leaves no trace, and given back once it is committed or failed
+    private final Semaphore capacity;
+    private final BlockingQueue<Accepted> queue = new LinkedBlockingQueue<>();
+    private final Set<Long> pending = ConcurrentHashMap.newKeySet();
+    // Orders that could not be committed, kept for a while so their status can still be asked for
+    private final Cache<Long, String> failures = Caffeine.newBuilder().maximumSize(10_000).expireAfterWrite(Duration.ofHours(1)).build();
+    private final LongAdder rejected = new LongAdder();
+    private final LongAdder committedBatches = new LongAdder();
+
+    private volatile boolean running;
+    private volatile boolean stopping;
+    private Thread writer;
+
+    public OrderPlacementPipeline(OrderService orderService, OrderRepository orderRepository, ProductCatalogCache productCatalogCache,
+                                  OrderReadReplica orderReadReplica, ProductSalesAggregate productSalesAggregate,
+                                  JdbcTemplate jdbcTemplate, TransactionTemplate transactionTemplate,
+                                  EntityManagerFactory entityManagerFactory, ObjectMapper objectMapper,
+                                  @Value("${oms.async-orders.queue-capacity:10000}") int queueCapacity,
+                                  @Value("${oms.async-orders.max-batch-size:500}") int maxBatchSize,
+                                  @Value("${oms.async-orders.wal-directory:order-wal}") Path walDirectory,
+                                  @Value("${oms.async-orders.wal-segment-bytes:67108864}") long walSegmentBytes,
+                                  @Value("${oms.async-orders.wal-sync:true}") boolean walSync) {
+        this.orderService = orderService;
+        this.orderRepository = orderRepository;
+        this.productCatalogCache = productCatalogCache;
+        this.orderReadReplica = orderReadReplica;
+        this.productSalesAggregate = productSalesAggregate;
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = transactionTemplate;
+        // IDs come from the same pooled generators the entities use, so they never collide with synchronous inserts
+        this.sessionFactory = entityManagerFactory.unwrap(SessionFactoryImplementor.class);
+        this.orderIds = (IdentifierGenerator) sessionFactory.getMappingMetamodel().getEntityDescriptor(Order.class).getGenerator();
+        this.lineIds = (IdentifierGenerator) sessionFactory.getMappingMetamodel().getEntityDescriptor(OrderProduct.class).getGenerator();
+        this.writeAheadLog = new OrderWriteAheadLog(walDirectory, walSegmentBytes, walSync, objectMapper);
+        this.maxBatchSize = maxBatchSize;
+        this.capacity = new Semaphore(queueCapacity);
+    }
+
+    // Validate the order, reserve its ID and log it; it is committed shortly after this returns
+    public Long placeOrder(OrderLines lines) {
+        if (!running) {
+            throw new IllegalStateException("The order pipeline is not running");
+        }
+        Map<Long, Product> products = productCatalogCache.getAll(lines.productIdList());
+        Order order = orderService.buildOrder(lines, products);
+        if (!capacity.tryAcquire()) {
+            rejected.increment();
+            throw new OrderQueueFullException("Too many orders are waiting to be committed, please retry later.");
+        }
+        try {
+            PendingOrder pendingOrder = new PendingOrder(nextId(), lines, order.getTotal(), order.getLineCount());
+            long segment = writeAheadLog.append(pendingOrder);
+            pending.add(pendingOrder.id());
+            queue.add(new Accepted(pendingOrder, segment));
+            return pendingOrder.id();
+        } catch (IOException e) {
+            capacity.release();
+            throw new UncheckedIOException("Could not log the order", e);
+        } catch (RuntimeException e) {
+            capacity.release();
+            throw e;
+        }
+    }
+
+    // Status of an order placed through the pipeline, or of any committed order; empty when the ID is unknown
+    public Optional<OrderPlacementStatus> getStatus(Long orderId) {
+        if (pending.contains(orderId)) {
+            return Optional.of(OrderPlacementStatus.pending(orderId));
+        }
+        String failure = failures.getIfPresent(orderId);
+        if (failure != null) {
+            return Optional.of(OrderPlacementStatus.failed(orderId, failure));
+        }
+        // An order leaves the pending set only after it was committed or its failure was recorded
+        if (orderRepository.existsById(orderId)) {
+            return Optional.of(OrderPlacementStatus.created(orderId));
+        }
+        return Optional.empty();
+    }
+
+    public int getQueueDepth() {
+        return queue.size();
+    }
+
+    private Long nextId() {
+        try (StatelessSession session = sessionFactory.openStatelessSession()) {
+            return (Long) orderIds.generate((SharedSessionContractImplementor) session, null);
+        }
+    }
+
+    // Take everything that queued up while the previous group was being committed, up to the batch size
+    private void writeLoop() {
+        List<Accepted> batch = new ArrayList<>(maxBatchSize);
+        while (true) {
+            Accepted first;
+            try {
+                first = queue.poll(100, TimeUnit.MILLISECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+            if (first == null) {
+                if (stopping) {
+                    return;
+                }
+                continue;
+            }
+            batch.add(first);
+            queue.drainTo(batch, maxBatchSize - 1);
+            commit(batch);
+            batch.clear();
+        }
+    }
+
+    // Commit a group; when the database is unavailable keep retrying with backoff, the orders are safe in the log.
+    // When an order is rejected by a constraint, e.g. its product was deleted after it was accepted, commit the
+    // others one by one so only that order fails
+    private void commit(List<Accepted> batch) {
+        long delay = 100;
+        while (true) {
+            try {
+                insert(batch);
+                completed(batch, null);
+                committedBatches.increment();
+                return;
+            } catch (DataIntegrityViolationException e) {
+                if (batch.size() == 1) {
+                    completed(batch, "The order could not be committed: " + e.getMostSpecificCause().getMessage());
+                } else {
+                    batch.forEach(accepted -> commit(List.of(accepted)));
+                }
+                return;
+            } catch (RuntimeException e) {
+                if (stopping) {
+                    log.warn("Leaving {} orders in the write-ahead log for the next start: {}", batch.size(), e.getMessage());
+                    return;
+                }
+                log.warn("Could not commit {} queued orders, retrying in {} ms: {}", batch.size(), delay, e.getMessage());
+                try {
+                    Thread.sleep(delay);
+                } catch (InterruptedException interrupted) {
+                    Thread.currentThread().interrupt();
+                    return;
+                }
+                delay = Math.min(delay * 2, MAX_RETRY_DELAY_MS);
+            }
+        }
+    }
+
+    private void insert(List<Accepted> batch) {
+        List<Object[]> orders = new ArrayList<>(batch.size());
+        List<Object[]> lines = new ArrayList<>();
+        // A UTC calendar has the driver store the instant in UTC, as Hibernate does for orders it saves
+        Calendar createdAt = GregorianCalendar.from(ZonedDateTime.ofInstant(Instant.now(), ZoneOffset.UTC));
+        try (StatelessSession session = sessionFactory.openStatelessSession()) {
+            for (Accepted accepted : batch) {
+                PendingOrder order = accepted.order();
+                orders.add(new Object[]{order.id(), order.total(), order.lineCount(), createdAt});
+                OrderLines productQuantities = order.productQuantities();
+                for (int line = 0; line < productQuantities.size(); line++) {
+                    lines.add(new Object[]{lineIds.generate((SharedSessionContractImplementor) session, null), order.id(),
+                            productQuantities.productId(line), productQuantities.quantity(line)});
+                }
+            }
+        }
+        transactionTemplate.executeWithoutResult(status -> {
+            jdbcTemplate.batchUpdate(INSERT_ORDER, orders);
+            jdbcTemplate.batchUpdate(INSERT_LINE, lines);
+        });
+    }
+
+    private void completed(List<Accepted> batch, String failure) {
+        List<Long> segments = new ArrayList<>(batch.size());
+        for (Accepted accepted : batch) {
+            if (failure != null) {
+                failures.put(accepted.order().id(), failure);
+            }
+            pending.remove(accepted.order().id());
+            segments.add(accepted.segment());
+        }
+        if (failure == null) {
+            orderReadReplica.refreshAfterCommit(batch.stream().map(accepted -> accepted.order().id()).toList());
+            productSalesAggregate.recordAfterCommit(null,
+                    productSalesAggregate.salesOfLines(batch.stream().map(accepted -> accepted.order().productQuantities()).toList()));
+        }
+        capacity.release(batch.size());
+        try {
+            writeAheadLog.committed(segments);
+        } catch (IOException e) {
+            log.warn("Could not delete a committed write-ahead log segment: {}", e.getMessage());
+        }
+    }
+
+    // Open the log and queue the orders a previous run acknowledged but did not get to commit
+    @Override
+    public void start() {
+        List<OrderWriteAheadLog.Entry> entries;
+        try {
+            entries = writeAheadLog.open();
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not open the order write-ahead log", e);
+        }
+        Set<Long> alreadyCommitted = new HashSet<>();
+        List<Long> ids = entries.stream().map(entry -> entry.order().id()).toList();
+        for (int from = 0; from < ids.size(); from += maxBatchSize) {
+            alreadyCommitted.addAll(orderRepository.findExistingIds(ids.subList(from, Math.min(ids.size(), from + maxBatchSize))));
+        }
+        // The writer runs before the recovered orders are queued, so more of them than the queue holds cannot block
+        stopping = false;
+        writer = Thread.ofPlatform().name("order-pipeline-writer").daemon().start(this::writeLoop);
+        List<Long> committedSegments = new ArrayList<>();
+        for (OrderWriteAheadLog.Entry entry : entries) {
+            if (alreadyCommitted.contains(entry.order().id())) {
+                committedSegments.add(entry.segment());
+            } else {
+                capacity.acquireUninterruptibly();
+                pending.add(entry.order().id());
+                queue.add(new Accepted(entry.order(), entry.segment()));
+            }
+        }
+        try {
+            writeAheadLog.committed(committedSegments);
+        } catch (IOException e) {
+            log.warn("Could not delete a committed write-ahead log segment: {}", e.getMessage());
+        }
+        if (entries.size() > alreadyCommitted.size()) {
+            log.info("Recovered {} uncommitted orders from the write-ahead log", entries.size() - alreadyCommitted.size());
+        }
+        running = true;
+    }
+
+    // Stop accepting orders, commit everything already queued and close the log
+    @Override
+    public void stop() {
+        running = false;
+        stopping = true;
+        try {
+            writer.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        try {
+            writeAheadLog.close();
+        } catch (IOException e) {
+            log.warn("Could not close the order write-ahead log: {}", e.getMessage());
+        }
+    }
+
+    @Override
+    public boolean isRunning() {
+        return running;
+    }
+
+    // Started before and stopped after the web server, so no request finds the pipeline closed
+    @Override
+    public int getPhase() {
+        return SmartLifecycle.DEFAULT_PHASE - 4096;
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        Gauge.builder("oms.orders.async.queue", this, OrderPlacementPipeline::getQueueDepth).register(registry);
+        FunctionCounter.builder("oms.orders.async.rejected", rejected, LongAdder::sum).register(registry);
+        FunctionCounter.builder("oms.orders.async.batches", committedBatches, LongAdder::sum).register(registry);
+    }
+}
@@ -1,94 +1,298 @@
 package com.example.order_management_system.service;
 
+import com.example.order_management_system.cache.OrderReadReplica;
+import com.example.order_management_system.cache.ProductCatalogCache;
+import com.example.order_management_system.cache.ProductSalesAggregate;
+import com.example.order_management_system.cache.ProductSalesTotals;
+import com.example.order_management_system.dto.OrderLines;
+import com.example.order_management_system.dto.OrderMutation;
+import com.example.order_management_system.dto.OrderMutationResult;
+import com.example.order_management_system.dto.OrderTotals;
+import com.example.order_management_system.dto.OrderView;
 import com.example.order_management_system.exception.ResourceNotFoundException;
 import com.example.order_management_system.model.Order;
 import com.example.order_management_system.model.OrderProduct;
 import com.example.order_management_system.model.Product;
+import com.example.order_management_system.repository.ArchivedOrderRepository;
 import com.example.order_management_system.repository.OrderProductRepository;
 import com.example.order_management_system.repository.OrderRepository;
-import com.example.order_management_system.repository.ProductRepository;
+import org.springframework.data.domain.Limit;
+import io.micrometer.core.annotation.Timed;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
 
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
+import java.util.Set;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
 
 @Service
+@Timed("oms.service")
 public class OrderService {
     private final OrderRepository orderRepository;
-    private final ProductRepository productRepository;
+    private final ProductCatalogCache productCatalogCache;
+    private final OrderReadReplica orderReadReplica;
+    private final ProductSalesAggregate productSalesAggregate;
+    private final ArchivedOrderRepository archivedOrderRepository;
     @SuppressWarnings("unused")
     private final OrderProductRepository orderProductRepository;
 
-    public OrderService(OrderRepository orderRepository, ProductRepository productRepository, OrderProductRepository orderProductRepository) {
+    // Number of streamed orders fetched, with their lines, per query
+    private static final int STREAM_CHUNK_SIZE = 256;
+
+    public OrderService(OrderRepository orderRepository, ProductCatalogCache productCatalogCache, OrderReadReplica orderReadReplica,
+                        ProductSalesAggregate productSalesAggregate, ArchivedOrderRepository archivedOrderRepository,
+                        OrderProductRepository orderProductRepository) {
         this.orderRepository = orderRepository;
-        this.productRepository = productRepository;
+        this.productCatalogCache = productCatalogCache;
+        this.orderReadReplica = orderReadReplica;
+        this.productSalesAggregate = productSalesAggregate;
+        this.archivedOrderRepository = archivedOrderRepository;
         this.orderProductRepository = orderProductRepository;
     }
 
-    public Order createOrder(Map<Long, Integer> productQuantities) {
-        Order order = new Order();
-        List<OrderProduct> orderProducts = productQuantities.entrySet().stream().map(entry -> {
-            if(entry.getValue()<=0){
-                throw new ResourceNotFoundException("Product quantity for product ID " + entry.getKey() + " must be greater than 0.");
+    // Load every product referenced by a request with a single query, failing with all missing IDs at once
+    private Map<Long, Product> resolveProducts(Collection<Long> productIds) {
+        Map<Long, Product> products = productCatalogCache.getAll(productIds);
+        requireProducts(productIds, products);
+        return products;
+    }
+
+    private static void requireProducts(Collection<Long> productIds, Map<Long, Product> products) {
+        if (!products.keySet().containsAll(productIds)) {
+            List<Long> missingIds = productIds.stream()
+                    .filter(productId -> !products.containsKey(productId))
+                    .sorted()
+                    .toList();
+            throw new ResourceNotFoundException("Products with IDs " + missingIds + " not found");
+        }
+    }
+
+    // Set the stored totals of the order from its lines. The sum is rounded once to the column's scale, as LINE_TOTAL
+    // rounds it; adding per-line deltas to an already rounded total would drift from it and the reconciler would keep
+    // rewriting the order
+    private static void updateTotals(Order order) {
+        BigDecimal total = BigDecimal.ZERO;
+        for (OrderProduct orderProduct : order.getOrderProducts()) {
+            total = total.add(BigDecimal.valueOf(orderProduct.getProduct().getPrice()).multiply(BigDecimal.valueOf(orderProduct.getQuantity())));
+        }
+        order.setTotal(total.setScale(2, RoundingMode.HALF_UP));
+        order.setLineCount(order.getOrderProducts().size());
+    }
+
+    // Validate a new order against already resolved products and build it without saving it
+    Order buildOrder(OrderLines lines, Map<Long, Product> products) {
+        for (int line = 0; line < lines.size(); line++) {
+            if (lines.quantity(line) <= 0) {
+                throw new ResourceNotFoundException("Product quantity for product ID " + lines.productId(line) + " must be greater than 0.");
             }
-            Product product = productRepository.findById(entry.getKey()).orElseThrow();
+        }
+        requireProducts(lines.productIdList(), products);
+        Order order = new Order();
+        List<OrderProduct> orderProducts = new ArrayList<>(lines.size());
+        for (int line = 0; line < lines.size(); line++) {
+            Product product = products.get(lines.productId(line));
             OrderProduct orderProduct = new OrderProduct();
             orderProduct.setOrder(order);
             orderProduct.setProduct(product);
-            orderProduct.setQuantity(entry.getValue());  // Set the quantity from the map
-            return orderProduct;
-        }).toList();
+            orderProduct.setQuantity(lines.quantity(line));
+            orderProducts.add(orderProduct);
+        }
         order.setOrderProducts(orderProducts);
-        return orderRepository.save(order);
+        updateTotals(order);
+        return order;
+    }
+
+    @Transactional
+    public Order createOrder(OrderLines lines) {
+        Map<Long, Product> products = productCatalogCache.getAll(lines.productIdList());
+        Order order = orderRepository.save(buildOrder(lines, products));
+        orderReadReplica.refreshAfterCommit(List.of(order.getId()));
+        productSalesAggregate.recordAfterCommit(null, productSalesAggregate.salesOf(order));
+        return order;
+    }
+
+    @Transactional
+    public Order createOrder(Map<Long, Integer> productQuantities) {
+        return createOrder(OrderLines.of(productQuantities));
     }
     
 
     // Get an order by ID
     public Optional<Order> getOrderById(Long id) {
-        return orderRepository.findById(id);
+        return orderRepository.findWithProductsById(id);
+    }
+
+    // Read models of orders, built from a single join without loading entities into the persistence context,
+    // or taken from the in-memory replica once it is loaded. The replica applies changes after they commit, so an
+    // order it does not hold yet is read from the database; an order that is not live is looked up in the archive
+    public Optional<OrderView> getOrderViewById(Long id) {
+        Optional<OrderView> order = orderReadReplica.isReady() ? orderReadReplica.get(id) : Optional.empty();
+        return order
+                .or(() -> OrderView.fromRows(orderRepository.findViewRowsById(id)).stream().findFirst())
+                .or(() -> OrderView.fromRows(archivedOrderRepository.findViewRowsById(id)).stream().findFirst());
+    }
+
+    public List<OrderView> getAllOrderViews() {
+        if (orderReadReplica.isReady()) {
+            return orderReadReplica.getAll();
+        }
+        return OrderView.fromRows(orderRepository.findAllViewRows());
+    }
+
+    public List<OrderView> getOrderViewsPage(Long afterId, int size) {
+        if (orderReadReplica.isReady()) {
+            return orderReadReplica.getPage(afterId, size);
+        }
+        List<Long> ids = orderRepository.findIdsAfter(afterId, Limit.of(size));
+        if (ids.isEmpty()) {
+            return List.of();
+        }
+        return OrderView.fromRows(orderRepository.findViewRowsByIdIn(ids));
+    }
+
+    // Hand every order read model to the consumer in ID order, one chunk of orders per query
+    @Transactional(readOnly = true)
+    public void streamOrderViews(Consumer<OrderView> consumer) {
+        if (orderReadReplica.isReady()) {
+            orderReadReplica.forEach(consumer);
+            return;
+        }
+        try (Stream<Long> ids = orderRepository.streamAllIds()) {
+            Iterator<Long> iterator = ids.iterator();
+            List<Long> chunk = new ArrayList<>(STREAM_CHUNK_SIZE);
+            while (iterator.hasNext()) {
+                chunk.add(iterator.next());
+                if (chunk.size() == STREAM_CHUNK_SIZE) {
+                    OrderView.fromRows(orderRepository.findViewRowsByIdIn(chunk)).forEach(consumer);
+                    chunk.clear();
+                }
+            }
+            if (!chunk.isEmpty()) {
+                OrderView.fromRows(orderRepository.findViewRowsByIdIn(chunk)).forEach(consumer);
+            }
+        }
+    }
+
+    // Get the stored totals of an order without loading its lines, from the archive if it is no longer live
+    public Optional<OrderTotals> getOrderTotals(Long id) {
+        return orderRepository.findTotalsById(id).or(() -> archivedOrderRepository.findTotalsById(id));
     }
 
     // Get all orders
     public List<Order> getAllOrders() {
-        return orderRepository.findAll();
+        return orderRepository.findAllWithProducts();
     }
 
-    public Order updateOrder(Long orderId, Map<Long, Integer> productQuantities) {
-        Order order = orderRepository.findById(orderId)
-                .orElseThrow(() -> new ResourceNotFoundException("Order not found"));
-    
-        // Clear existing products
-        order.getOrderProducts().clear();
-    
-        // Add new products with their quantities
-        for (Map.Entry<Long, Integer> entry : productQuantities.entrySet()) {
-            Long productId = entry.getKey();
-            Integer quantity = entry.getValue();
+    // Replace the lines of the order with `lines`, against already resolved products
+    private static void replaceLines(Order order, OrderLines lines, Map<Long, Product> products) {
+        // Index the current lines by product so only the lines that actually change are written
+        Map<Long, OrderProduct> existingLines = new HashMap<>();
+        order.getOrderProducts().forEach(orderProduct -> existingLines.put(orderProduct.getProduct().getId(), orderProduct));
+
+        // Delete lines whose product is no longer requested, along with any duplicate lines for a product
+        order.getOrderProducts().removeIf(orderProduct -> {
+            Long productId = orderProduct.getProduct().getId();
+            return !lines.contains(productId) || existingLines.get(productId) != orderProduct;
+        });
+
+        for (int line = 0; line < lines.size(); line++) {
+            long productId = lines.productId(line);
+            int quantity = lines.quantity(line);
+
+            OrderProduct existingLine = existingLines.get(productId);
+            if (existingLine != null) {
+                // Update in place; Hibernate skips the UPDATE when the quantity is unchanged
+                existingLine.setQuantity(quantity);
+            } else {
+                // Insert only the lines for newly requested products
+                OrderProduct orderProduct = new OrderProduct();
+                orderProduct.setOrder(order);
+                orderProduct.setProduct(products.get(productId));
+                orderProduct.setQuantity(quantity);  // Set the quantity
+                order.getOrderProducts().add(orderProduct);
+            }
+        }
+        updateTotals(order);
+    }
+
+    // Set the quantities of `lines` on the order, adding the products it does not contain yet
+    private static void addLines(Order order, OrderLines lines, Map<Long, Product> products) {
+        // Loop through the product IDs and quantities, adding them to the order
+        for (int line = 0; line < lines.size(); line++) {
+            long productId = lines.productId(line);
+            int quantity = lines.quantity(line);
             
-            // Fetch the product by its ID
-            Product product = productRepository.findById(productId)
-                    .orElseThrow(() -> new ResourceNotFoundException("Product with ID " + productId + " not found"));
-    
-            // Create a new OrderProduct and set its properties
-            OrderProduct orderProduct = new OrderProduct();
-            orderProduct.setOrder(order);
-            orderProduct.setProduct(product);
-            orderProduct.setQuantity(quantity);  // Set the quantity
-    
-            // Add the OrderProduct to the order
-            order.getOrderProducts().add(orderProduct);
+            Product product = products.get(productId);
+        
+            // Check if the product already exists in the order
+            boolean productExists = order.getOrderProducts().stream()
+                    .anyMatch(orderProduct -> orderProduct.getProduct().getId() == productId);
+        
+            if (productExists) {
+                // If the product already exists, update the quantity
+                order.getOrderProducts().stream()
+                        .filter(orderProduct -> orderProduct.getProduct().getId() == productId)
+                        .forEach(orderProduct -> orderProduct.setQuantity(quantity));
+            } else {
+                // If the product is not already in the order, create a new OrderProduct and add it
+                OrderProduct orderProduct = new OrderProduct();
+                orderProduct.setOrder(order);
+                orderProduct.setProduct(product);
+                orderProduct.setQuantity(quantity);  // Set the quantity
+                order.getOrderProducts().add(orderProduct);
+            }
         }
+        updateTotals(order);
+    }
+
+    // Remove the product's lines from the order; true if there were any
+    private static boolean removeLine(Order order, Long productId) {
+        boolean removed = order.getOrderProducts().removeIf(orderProduct -> orderProduct.getProduct().getId().equals(productId));
+        updateTotals(order);
+        return removed;
+    }
+
+    @RetryOnConflict
+    @Transactional
+    public Order updateOrder(Long orderId, OrderLines lines) {
+        Order order = orderRepository.findWithProductsById(orderId)
+                .orElseThrow(() -> new ResourceNotFoundException("Order not found"));
+        Map<Long, Product> products = resolveProducts(lines.productIdList());
+        ProductSalesTotals salesBefore = productSalesAggregate.salesOf(order);
+        replaceLines(order, lines, products);
     
+        orderReadReplica.refreshAfterCommit(List.of(orderId));
+        productSalesAggregate.recordAfterCommit(salesBefore, productSalesAggregate.salesOf(order));
         // Save and return the updated order
         return orderRepository.save(order);
     }
+
+    @RetryOnConflict
+    @Transactional
+    public Order updateOrder(Long orderId, Map<Long, Integer> productQuantities) {
+        return updateOrder(orderId, OrderLines.of(productQuantities));
+    }
     
 
+    @RetryOnConflict
+    @Transactional
     public Order removeProductFromOrder(Long orderId, Long productId) {
-        Order order = orderRepository.findById(orderId).orElseThrow(() -> new ResourceNotFoundException("Order not found"));
+        Order order = orderRepository.findWithProductsById(orderId).orElseThrow(() -> new ResourceNotFoundException("Order not found"));
+        ProductSalesTotals salesBefore = productSalesAggregate.salesOf(order);
         // Remove the product from the order
-        boolean productRemoved = order.getOrderProducts().removeIf(orderProduct -> orderProduct.getProduct().getId().equals(productId));
+        boolean productRemoved = removeLine(order, productId);
+        orderReadReplica.refreshAfterCommit(List.of(orderId));
+        productSalesAggregate.recordAfterCommit(salesBefore, productSalesAggregate.salesOf(order));
         if (productRemoved && order.getOrderProducts().isEmpty()) {
             orderRepository.delete(order);
             return null;
@@ -96,54 +300,126 @@ public class OrderService {
         return orderRepository.save(order);
     }
 
+    @RetryOnConflict
+    @Transactional
     public Boolean removeOrder(Long orderId) {
         Order order = orderRepository.findById(orderId).orElseThrow(() -> new ResourceNotFoundException("Order not found"));
         // Remove the products from the order
         if (order != null) {
+            productSalesAggregate.recordAfterCommit(productSalesAggregate.salesOf(order), null);
             order.getOrderProducts().clear();
             orderRepository.delete(order); 
+            orderReadReplica.refreshAfterCommit(List.of(orderId));
             return true;  // Successfully deleted
         }
         return false; 
         
     }
 
-    public Order addProductsToOrder(Long orderId, Map<Long, Integer> productQuantities) {
+    @RetryOnConflict
+    @Transactional
+    public Order addProductsToOrder(Long orderId, OrderLines lines) {
         // Fetch the order by its ID
-        Order order = orderRepository.findById(orderId)
+        Order order = orderRepository.findWithProductsById(orderId)
                 .orElseThrow(() -> new ResourceNotFoundException("Order not found"));
+        Map<Long, Product> products = resolveProducts(lines.productIdList());
+        ProductSalesTotals salesBefore = productSalesAggregate.salesOf(order);
+        addLines(order, lines, products);
         
-        // Loop through the product IDs and quantities, adding them to the order
-        for (Map.Entry<Long, Integer> entry : productQuantities.entrySet()) {
-            Long productId = entry.getKey();
-            Integer quantity = entry.getValue();
-            
-            // Fetch the product by its ID
-            Product product = productRepository.findById(productId)
-                    .orElseThrow(() -> new ResourceNotFoundException("Product with ID " + productId + " not found"));
-        
-            // Check if the product already exists in the order
-            boolean productExists = order.getOrderProducts().stream()
-                    .anyMatch(orderProduct -> orderProduct.getProduct().getId().equals(productId));
-        
-            if (productExists) {
-                // If the product already exists, update the quantity
-                order.getOrderProducts().stream()
-                        .filter(orderProduct -> orderProduct.getProduct().getId().equals(productId))
-                        .forEach(orderProduct -> orderProduct.setQuantity(quantity));
-            } else {
-                // If the product is not already in the order, create a new OrderProduct and add it
-                OrderProduct orderProduct = new OrderProduct();
-                orderProduct.setOrder(order);
-                orderProduct.setProduct(product);
-                orderProduct.setQuantity(quantity);  // Set the quantity
-                order.getOrderProducts().add(orderProduct);
-            }
-        }
-        
+        orderReadReplica.refreshAfterCommit(List.of(orderId));
+        productSalesAggregate.recordAfterCommit(salesBefore, productSalesAggregate.salesOf(order));
         // Save the updated order with the added products
         return orderRepository.save(order);
     }
+
+    @RetryOnConflict
+    @Transactional
+    public Order addProductsToOrder(Long orderId, Map<Long, Integer> productQuantities) {
+        return addProductsToOrder(orderId, OrderLines.of(productQuantities));
+    }
+
+    // Apply the mutations in request order within one transaction, with the same effect as the single-order methods.
+    // Every order and product they reference is loaded up front with one query each, the mutations run on the loaded
+    // entities and everything is flushed at commit. A mutation that fails validation is reported and skipped without
+    // changing anything; the results are numbered from `firstIndex`
+    @RetryOnConflict
+    @Transactional
+    public List<OrderMutationResult> applyMutations(int firstIndex, List<OrderMutation> mutations) {
+        Set<Long> orderIds = new HashSet<>();
+        Set<Long> productIds = new HashSet<>();
+        for (OrderMutation mutation : mutations) {
+            if (mutation.orderId() != null) {
+                orderIds.add(mutation.orderId());
+            }
+            if (mutation.products() != null) {
+                productIds.addAll(mutation.products().productIdList());
+            }
+        }
+        Map<Long, Order> orders = new HashMap<>();
+        orderRepository.findAllWithProductsByIdIn(orderIds).forEach(order -> orders.put(order.getId(), order));
+        Map<Long, Product> products = productCatalogCache.getAll(productIds);
+        ProductSalesTotals salesBefore = productSalesAggregate.salesOf(orders.values());
+
+        List<OrderMutationResult> results = new ArrayList<>(mutations.size());
+        Set<Long> changedOrderIds = new HashSet<>();
+        for (int i = 0; i < mutations.size(); i++) {
+            OrderMutation mutation = mutations.get(i);
+            try {
+                applyMutation(mutation, orders, products);
+                changedOrderIds.add(mutation.orderId());
+                results.add(OrderMutationResult.success(firstIndex + i, mutation.orderId()));
+            } catch (ResourceNotFoundException | IllegalArgumentException e) {
+                results.add(OrderMutationResult.failure(firstIndex + i, mutation.orderId(), e.getMessage()));
+            }
+        }
+        if (!changedOrderIds.isEmpty()) {
+            orderReadReplica.refreshAfterCommit(List.copyOf(changedOrderIds));
+            productSalesAggregate.recordAfterCommit(salesBefore, productSalesAggregate.salesOf(orders.values()));
+        }
+        return results;
+    }
+
+    // Validates the mutation before changing the order, so a failed mutation leaves it as it was. Deleted orders are
+    // dropped from `orders`, and later mutations of them fail as not found
+    private void applyMutation(OrderMutation mutation, Map<Long, Order> orders, Map<Long, Product> products) {
+        if (mutation.op() == null) {
+            throw new IllegalArgumentException("op is required.");
+        }
+        if (mutation.orderId() == null) {
+            throw new IllegalArgumentException("orderId is required.");
+        }
+        Order order = orders.get(mutation.orderId());
+        if (order == null) {
+            throw new ResourceNotFoundException("Order not found");
+        }
+        switch (mutation.op()) {
+            case UPDATE, ADD_PRODUCTS -> {
+                if (mutation.products() == null) {
+                    throw new IllegalArgumentException("products is required.");
+                }
+                requireProducts(mutation.products().productIdList(), products);
+                if (mutation.op() == OrderMutation.Type.UPDATE) {
+                    replaceLines(order, mutation.products(), products);
+                } else {
+                    addLines(order, mutation.products(), products);
+                }
+            }
+            case REMOVE_PRODUCT -> {
+                if (mutation.productId() == null) {
+                    throw new IllegalArgumentException("productId is required.");
+                }
+                if (removeLine(order, mutation.productId()) && order.getOrderProducts().isEmpty()) {
+                    orderRepository.delete(order);
+                    orders.remove(order.getId());
+                }
+            }
+            case DELETE -> {
+                order.getOrderProducts().clear();
+                orderRepository.delete(order);
+                orders.remove(order.getId());
+            }
+        }
+    }
     
     
 }
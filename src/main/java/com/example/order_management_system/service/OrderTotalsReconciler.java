@@ -0,0 +1,62 @@
+package com.example.order_management_system.service;
+
+import com.example.order_management_system.cache.OrderReadReplica;
+import com.example.order_management_system.repository.OrderRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import io.micrometer.core.annotation.Timed;
+import org.springframework.stereotype.Service;
+
+import java.util.Optional;
+
+// Periodically fixes stored order totals that drifted from their lines, one ID range per transaction
+@Service
+@Timed("oms.service")
+public class OrderTotalsReconciler {
+    private static final Logger log = LoggerFactory.getLogger(OrderTotalsReconciler.class);
+
+    private final OrderRepository orderRepository;
+    private final OrderReadReplica orderReadReplica;
+    private final boolean enabled;
+    private final int chunkSize;
+
+    public OrderTotalsReconciler(OrderRepository orderRepository, OrderReadReplica orderReadReplica,
+                                 @Value("${oms.totals.reconcile.enabled:true}") boolean enabled,
+                                 @Value("${oms.totals.reconcile.chunk-size:1000}") int chunkSize) {
+        this.orderRepository = orderRepository;
+        this.orderReadReplica = orderReadReplica;
+        this.enabled = enabled;
+        this.chunkSize = chunkSize;
+    }
+
+    @Scheduled(initialDelayString = "${oms.totals.reconcile.initial-delay:PT10M}",
+            fixedDelayString = "${oms.totals.reconcile.interval:PT1H}")
+    public void scheduledReconcile() {
+        if (enabled) {
+            int fixed = reconcile();
+            if (fixed > 0) {
+                log.info("Reconciled the totals of {} orders", fixed);
+            }
+        }
+    }
+
+    // Returns the number of orders whose totals were corrected
+    public int reconcile() {
+        Optional<Long> minId = orderRepository.findMinId();
+        Optional<Long> maxId = orderRepository.findMaxId();
+        if (minId.isEmpty() || maxId.isEmpty()) {
+            return 0;
+        }
+        int fixed = 0;
+        for (long fromId = minId.get(); fromId <= maxId.get(); fromId += chunkSize) {
+            int fixedInRange = orderRepository.reconcileTotalsBetween(fromId, fromId + chunkSize - 1);
+            if (fixedInRange > 0) {
+                orderReadReplica.refreshRangeAfterCommit(fromId, fromId + chunkSize - 1);
+            }
+            fixed += fixedInRange;
+        }
+        return fixed;
+    }
+}
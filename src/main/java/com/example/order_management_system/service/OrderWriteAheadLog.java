@@ -0,0 +1,203 @@
+package com.example.order_management_system.service;
+
+import com.example.order_management_system.dto.PendingOrder;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedReader;
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Stream;
+
+// Append-only log of the orders the async pipeline acknowledged but has not committed yet, one JSON line per order.
+// It is split into numbered segments so that a segment can be deleted as soon as all of its orders are committed,
+// while new orders keep going to the newest one
+class OrderWriteAheadLog implements Closeable {
+    private static final Logger log = LoggerFactory.getLogger(OrderWriteAheadLog.class);
+
+    private static final String SEGMENT_PREFIX = "orders-";
+    private static final String SEGMENT_SUFFIX = ".wal";
+
+    // An order read back from a segment, with the segment it has to be marked committed against
+    record Entry(long segment, PendingOrder order) {
+    }
+
+    private final Path directory;
+    private final long segmentBytes;
+    private final boolean sync;
+    private final ObjectMapper objectMapper;
+
+    // Guarded by this
+    private FileChannel active;
+    private long activeSegment;
+    private long activeBytes;
+    private long written;
+    private final Map<Long, Integer> uncommitted = new HashMap<>();
+
+    // Guarded by syncLock; appenders that arrive while another one is forcing the file are covered by its next force
+    private final Object syncLock = new Object();
+    private long synced;
+
+    OrderWriteAheadLog(Path directory, long segmentBytes, boolean sync, ObjectMapper objectMapper) {
+        this.directory = directory;
+        this.segmentBytes = segmentBytes;
+        this.sync = sync;
+        this.objectMapper = objectMapper;
+    }
+
+    // Read the orders of every segment left behind by a previous run, oldest first, and open a new segment after them.
+    // A line cut short by a crash is skipped: its order was never acknowledged
+    synchronized List<Entry> open() throws IOException {
+        Files.createDirectories(directory);
+        List<Entry> entries = new ArrayList<>();
+        long lastSegment = 0;
+        for (Path file : segmentFiles()) {
+            long segment = segmentNumber(file);
+            lastSegment = Math.max(lastSegment, segment);
+            int count = 0;
+            try (BufferedReader reader = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+                String line;
+                while ((line = reader.readLine()) != null) {
+                    if (line.isBlank()) {
+                        continue;
+                    }
+                    try {
+                        entries.add(new Entry(segment, objectMapper.readValue(line, PendingOrder.class)));
+                        count++;
+                    } catch (IOException e) {
+                        log.warn("Skipping unreadable entry in {}: {}", file.getFileName(), e.getMessage());
+                    }
+                }
+            }
+            if (count == 0) {
+                Files.delete(file);
+            } else {
+                uncommitted.put(segment, count);
+            }
+        }
+        openSegment(lastSegment + 1);
+        return entries;
+    }
+
+    // Append an order and, when syncing, return only once it is on disk; returns the segment it was written to
+    long append(PendingOrder order) throws IOException {
+        byte[] json = objectMapper.writeValueAsBytes(order);
+        ByteBuffer line = ByteBuffer.allocate(json.length + 1).put(json).put((byte) '\n').flip();
+        long segment;
+        long end;
+        synchronized (this) {
+            if (activeBytes > 0 && activeBytes + line.remaining() > segmentBytes) {
+                rollSegment();
+            }
+            int length = line.remaining();
+            while (line.hasRemaining()) {
+                active.write(line);
+            }
+            activeBytes += length;
+            written += length;
+            end = written;
+            segment = activeSegment;
+            uncommitted.merge(segment, 1, Integer::sum);
+        }
+        if (sync) {
+            sync(end);
+        }
+        return segment;
+    }
+
+    private void sync(long upTo) throws IOException {
+        synchronized (syncLock) {
+            if (synced >= upTo) {
+                return;
+            }
+            FileChannel channel;
+            long end;
+            synchronized (this) {
+                channel = active;
+                end = written;
+            }
+            try {
+                channel.force(false);
+            } catch (ClosedChannelException e) {
+                // Rolled over in the meantime; rolling forces the old segment, which holds everything up to `end`
+            }
+            synced = end;
+        }
+    }
+
+    // Record that the orders written to these segments are committed, deleting segments that have nothing left
+    synchronized void committed(Collection<Long> segments) throws IOException {
+        for (Long segment : segments) {
+            int left = uncommitted.merge(segment, -1, Integer::sum);
+            if (left == 0) {
+                uncommitted.remove(segment);
+                if (segment != activeSegment) {
+                    Files.deleteIfExists(segmentFile(segment));
+                }
+            }
+        }
+    }
+
+    // Close the newest segment, deleting it when every order in it was committed
+    @Override
+    public synchronized void close() throws IOException {
+        if (active == null) {
+            return;
+        }
+        active.force(false);
+        active.close();
+        active = null;
+        if (!uncommitted.containsKey(activeSegment)) {
+            Files.deleteIfExists(segmentFile(activeSegment));
+        }
+    }
+
+    private void rollSegment() throws IOException {
+        active.force(false);
+        active.close();
+        if (!uncommitted.containsKey(activeSegment)) {
+            Files.deleteIfExists(segmentFile(activeSegment));
+        }
+        openSegment(activeSegment + 1);
+    }
+
+    private void openSegment(long segment) throws IOException {
+        active = FileChannel.open(segmentFile(segment), StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE);
+        activeSegment = segment;
+        activeBytes = 0;
+    }
+
+    private List<Path> segmentFiles() throws IOException {
+        try (Stream<Path> files = Files.list(directory)) {
+            return files.filter(file -> {
+                        String name = file.getFileName().toString();
+                        return name.startsWith(SEGMENT_PREFIX) && name.endsWith(SEGMENT_SUFFIX);
+                    })
+                    .sorted()
+                    .toList();
+        }
+    }
+
+    // Zero-padded so that segment files sort by name in the order they were written
+    private Path segmentFile(long segment) {
+        return directory.resolve(SEGMENT_PREFIX + String.format("%019d", segment) + SEGMENT_SUFFIX);
+    }
+
+    private static long segmentNumber(Path file) {
+        String name = file.getFileName().toString();
+        return Long.parseLong(name.substring(SEGMENT_PREFIX.length(), name.length() - SEGMENT_SUFFIX.length()));
+    }
+}
@@ -1,24 +1,50 @@
 package com.example.order_management_system.service;
 
+import com.example.order_management_system.cache.OrderReadReplica;
+import com.example.order_management_system.cache.ProductCatalogCache;
+import com.example.order_management_system.cache.ProductSalesAggregate;
+import com.example.order_management_system.cache.ProductSearchIndex;
+import com.example.order_management_system.dto.ProductDeletionResult;
+import com.example.order_management_system.dto.ProductView;
 import com.example.order_management_system.exception.ResourceNotFoundException;
-import com.example.order_management_system.model.Order;
 import com.example.order_management_system.model.Product;
 import com.example.order_management_system.repository.OrderRepository;
 import com.example.order_management_system.repository.ProductRepository;
 
+import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
 
+import org.springframework.data.domain.Limit;
+import io.micrometer.core.annotation.Timed;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
 
 @Service
+@Timed("oms.service")
 public class ProductService {
     private final ProductRepository productRepository;
     private final OrderRepository orderRepository;
+    private final ProductCatalogCache productCatalogCache;
+    private final OrderReadReplica orderReadReplica;
+    private final ProductSearchIndex productSearchIndex;
+    private final ProductSalesAggregate productSalesAggregate;
 
-    public ProductService(ProductRepository productRepository, OrderRepository orderRepository) {
+    // Order IDs per bulk DELETE when removing orders left empty by a product deletion
+    private static final int DELETE_CHUNK_SIZE = 1000;
+
+    public ProductService(ProductRepository productRepository, OrderRepository orderRepository, ProductCatalogCache productCatalogCache,
+                          OrderReadReplica orderReadReplica, ProductSearchIndex productSearchIndex,
+                          ProductSalesAggregate productSalesAggregate) {
         this.productRepository = productRepository;
         this.orderRepository = orderRepository;
+        this.productCatalogCache = productCatalogCache;
+        this.orderReadReplica = orderReadReplica;
+        this.productSearchIndex = productSearchIndex;
+        this.productSalesAggregate = productSalesAggregate;
     }
 
     public Product createProduct(Product product) {
@@ -33,10 +59,13 @@ public class ProductService {
             throw new IllegalArgumentException("Product price must be greater than 0");
         }
     
-        return productRepository.save(product);
+        Product savedProduct = productRepository.save(product);
+        productSearchIndex.refreshAfterCommit(savedProduct.getId());
+        return savedProduct;
     }
     
 
+    @Transactional
     public Product updateProduct(Long id, Product updatedProduct) {
         Product existingProduct = productRepository.findById(id).orElseThrow(() -> new ResourceNotFoundException("Product not found"));
         if (existingProduct.getName() == null || existingProduct.getName().isEmpty()) {
@@ -48,15 +77,30 @@ public class ProductService {
         if (existingProduct.getPrice() == null || existingProduct.getPrice() <= 0) {
             throw new IllegalArgumentException("Product price must be greater than 0");
         }
+        boolean priceChanged = !existingProduct.getPrice().equals(updatedProduct.getPrice());
         existingProduct.setName(updatedProduct.getName());
         existingProduct.setDescription(updatedProduct.getDescription());
         existingProduct.setPrice(updatedProduct.getPrice());
-        return productRepository.save(existingProduct);
+        Product savedProduct = productRepository.save(existingProduct);
+        // Order totals are priced at current product prices, so reprice the orders that contain the product
+        if (priceChanged) {
+            orderRepository.recomputeTotalsForProduct(id);
+        }
+        productCatalogCache.invalidateAfterCommit(id);
+        // Order read models embed the product, so every order that contains it changes too
+        orderReadReplica.refreshProductAfterCommit(id);
+        productSearchIndex.refreshAfterCommit(id);
+        return savedProduct;
     }
 
     // Get an product by ID
     public Optional<Product> getProductById(Long id) {
-        return productRepository.findById(id);
+        return productCatalogCache.get(id);
+    }
+
+    // Hit, miss and eviction counters of the product cache
+    public Map<String, Object> getCacheStats() {
+        return productCatalogCache.stats();
     }
 
     // Get all products
@@ -64,6 +108,66 @@ public class ProductService {
         return productRepository.findAll();
     }
 
+    // Read models of products, built from the columns without loading entities
+    public List<ProductView> getAllProductViews() {
+        return productRepository.findAllViews();
+    }
+
+    public List<ProductView> getProductViewsPage(Long afterId, int size) {
+        return productRepository.findViewsAfter(afterId, Limit.of(size));
+    }
+
+    // Keyset page of the products with a word starting with each word of the query in their name or description, within
+    // the price range. Served from the search index once it is loaded, from LIKE queries until then
+    public List<ProductView> searchProducts(String query, Double minPrice, Double maxPrice, Long afterId, int size) {
+        List<String> words = ProductSearchIndex.words(query);
+        if (productSearchIndex.isReady()) {
+            return productSearchIndex.search(words, minPrice == null ? -Double.MAX_VALUE : minPrice,
+                    maxPrice == null ? Double.MAX_VALUE : maxPrice, afterId, size);
+        }
+        // The first word narrows the query to the products containing it anywhere, and every word is then checked
+        // against the start of the product's words on the rows it returns, a page at a time, so the results match
+        // the index's
+        String pattern = words.isEmpty() ? "%" : "%" + words.get(0) + "%";
+        List<ProductView> page = new ArrayList<>();
+        long cursor = afterId;
+        while (page.size() < size) {
+            List<ProductView> rows = productRepository.searchViews(pattern, minPrice, maxPrice, cursor, Limit.of(size));
+            for (ProductView row : rows) {
+                if (page.size() < size && matchesEveryWord(row, words)) {
+                    page.add(row);
+                }
+            }
+            if (rows.size() < size) {
+                break;
+            }
+            cursor = rows.get(rows.size() - 1).id();
+        }
+        return page;
+    }
+
+    // Whether each query word starts a word of the product's name or description
+    private static boolean matchesEveryWord(ProductView product, List<String> words) {
+        List<String> productWords = ProductSearchIndex.words(product.name() + " " + product.description());
+        return words.stream().allMatch(word -> productWords.stream().anyMatch(productWord -> productWord.startsWith(word)));
+    }
+
+    // Get the IDs of the orders containing the product that follow the given order ID
+    public List<Long> getOrderIdsPage(Long productId, Long afterId, int size) {
+        if (productCatalogCache.get(productId).isEmpty()) {
+            throw new ResourceNotFoundException("Product not found");
+        }
+        return orderRepository.findOrderIdsByProductIdAfter(productId, afterId, Limit.of(size));
+    }
+
+    // Hand every product read model to the consumer in ID order; rows are scrolled, not loaded into entities
+    @Transactional(readOnly = true)
+    public void streamProductViews(Consumer<ProductView> consumer) {
+        try (Stream<ProductView> products = productRepository.streamAllViews()) {
+            products.forEach(consumer);
+        }
+    }
+
     // public Boolean deleteProduct(Long productId) {
     //     Product product = productRepository.findById(productId).orElseThrow(() -> new ResourceNotFoundException("Order not found"));
     //     // Remove the products from the order
@@ -75,24 +179,28 @@ public class ProductService {
     //     return false; 
     // }
 
-    public Boolean deleteProduct(Long productId) {
-        Product product = productRepository.findById(productId)
-                .orElseThrow(() -> new ResourceNotFoundException("Product not found"));
-    
-        if (product != null) {
-            List<Order> ordersWithProduct = orderRepository.findOrdersByProductId(productId);
-            orderRepository.removeProductFromOrders(productId);
-            productRepository.delete(product); 
-            //After deleting the product check all the empty orders and delete em too
-            for (Order order : ordersWithProduct) {
-                
-                if (order.getOrderProducts().isEmpty()) {
-                    orderRepository.delete(order);
-                } 
-            }
-            return true;
+    // Delete the product, its order lines and the orders left empty with a fixed number of statements,
+    // then recompute the totals of the orders that remain
+    @Transactional
+    public ProductDeletionResult deleteProduct(Long productId) {
+        if (!productRepository.existsById(productId)) {
+            throw new ResourceNotFoundException("Product not found");
         }
-        return false;
+        List<Long> affectedOrderIds = orderRepository.findOrderIdsByProductId(productId);
+        int linesRemoved = orderRepository.removeProductFromOrders(productId);
+        int ordersRemoved = 0;
+        for (int from = 0; from < affectedOrderIds.size(); from += DELETE_CHUNK_SIZE) {
+            List<Long> chunk = affectedOrderIds.subList(from, Math.min(from + DELETE_CHUNK_SIZE, affectedOrderIds.size()));
+            ordersRemoved += orderRepository.deleteEmptyOrdersByIdIn(chunk);
+            orderRepository.recomputeTotalsByIdIn(chunk);
+        }
+        productRepository.deleteAllByIdInBatch(List.of(productId));
+        productCatalogCache.invalidateAfterCommit(productId);
+        orderReadReplica.refreshAfterCommit(affectedOrderIds);
+        orderReadReplica.refreshProductAfterCommit(productId);
+        productSearchIndex.refreshAfterCommit(productId);
+        productSalesAggregate.clearProductAfterCommit(productId);
+        return new ProductDeletionResult(linesRemoved, ordersRemoved);
     }
-    
+
 }
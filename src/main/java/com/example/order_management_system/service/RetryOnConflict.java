@@ -0,0 +1,23 @@
+package com.example.order_management_system.service;
+
+import org.springframework.dao.ConcurrencyFailureException;
+import org.springframework.retry.annotation.Backoff;
+import org.springframework.retry.annotation.Retryable;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+// Re-runs a transactional order mutation that lost an optimistic-lock race or a deadlock, with jittered
+// exponential backoff so contending writers spread out instead of colliding again
+@Target(ElementType.METHOD)
+@Retention(RetentionPolicy.RUNTIME)
+@Retryable(retryFor = ConcurrencyFailureException.class,
+        maxAttemptsExpression = "${oms.retry.max-attempts:10}",
+        backoff = @Backoff(delayExpression = "${oms.retry.initial-delay-ms:20}",
+                maxDelayExpression = "${oms.retry.max-delay-ms:1000}",
+                multiplierExpression = "${oms.retry.multiplier:2}",
+                random = true))
+public @interface RetryOnConflict {
+}
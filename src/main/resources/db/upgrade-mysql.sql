@@ -0,0 +1,61 @@
+-- Upgrades a MySQL database created by the original ddl-auto=update schema (orders, order_product and product) to
+-- the schema the prod profile validates. Run it once, with the application stopped, before the first start with
+-- --spring.profiles.active=prod:
+--
+--   mysql order_management < src/main/resources/db/upgrade-mysql.sql
+
+-- Order totals and line counts, kept on the order so they can be read without loading the lines; the optimistic
+-- lock version; and the creation time, unknown for the existing orders
+ALTER TABLE orders ADD COLUMN total DECIMAL(19, 2) NOT NULL DEFAULT 0;
+ALTER TABLE orders ADD COLUMN line_count INTEGER NOT NULL DEFAULT 0;
+ALTER TABLE orders ADD COLUMN version BIGINT NOT NULL DEFAULT 0;
+ALTER TABLE orders ADD COLUMN created_at DATETIME(6);
+
+-- Rounded as OrderRepository.LINE_TOTAL rounds them, so the totals reconciler finds nothing to fix
+UPDATE orders o
+SET o.total = (SELECT ROUND(COALESCE(SUM(op.quantity * p.price), 0), 2)
+               FROM order_product op JOIN product p ON p.id = op.product_id
+               WHERE op.order_id = o.id),
+    o.line_count = (SELECT COUNT(*) FROM order_product op WHERE op.order_id = o.id);
+
+CREATE INDEX idx_orders_created_at ON orders (created_at);
+CREATE INDEX idx_order_product_product_order ON order_product (product_id, order_id);
+CREATE INDEX idx_order_product_order_product ON order_product (order_id, product_id);
+
+-- The pooled sequences behind the order and order line IDs, starting above the existing rows
+CREATE TABLE orders_seq (next_val BIGINT) ENGINE = InnoDB;
+INSERT INTO orders_seq SELECT COALESCE(MAX(id), 0) + 1 FROM orders;
+CREATE TABLE order_product_seq (next_val BIGINT) ENGINE = InnoDB;
+INSERT INTO order_product_seq SELECT COALESCE(MAX(id), 0) + 1 FROM order_product;
+
+CREATE TABLE archived_orders (
+    id BIGINT NOT NULL,
+    total DECIMAL(19, 2) NOT NULL,
+    line_count INTEGER NOT NULL,
+    version BIGINT NOT NULL,
+    created_at DATETIME(6),
+    archived_at DATETIME(6) NOT NULL,
+    PRIMARY KEY (id)
+) ENGINE = InnoDB;
+
+CREATE TABLE archived_order_product (
+    id BIGINT NOT NULL,
+    order_id BIGINT NOT NULL,
+    product_id BIGINT NOT NULL,
+    quantity INTEGER NOT NULL,
+    product_name VARCHAR(255),
+    product_description VARCHAR(255),
+    product_price FLOAT(53),
+    PRIMARY KEY (id)
+) ENGINE = InnoDB;
+CREATE INDEX idx_archived_order_product_order ON archived_order_product (order_id);
+
+CREATE TABLE idempotency_key (
+    id VARCHAR(64) NOT NULL,
+    fingerprint VARCHAR(64) NOT NULL,
+    status INTEGER,
+    response VARCHAR(4000),
+    expires_at DATETIME(6) NOT NULL,
+    PRIMARY KEY (id)
+) ENGINE = InnoDB;
+CREATE INDEX idx_idempotency_key_expires_at ON idempotency_key (expires_at);
@@ -0,0 +1,47 @@
+package com.example.order_management_system;
+
+import com.example.order_management_system.model.Product;
+import com.example.order_management_system.service.ProductService;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.IntToDoubleFunction;
+
+// Products for tests to order, saved through ProductService so its caches, the search index and the read replica see
+// them as they would in production
+public final class ProductFixtures {
+
+    private ProductFixtures() {
+    }
+
+    // An unsaved product, to save directly or to pass as the new values of an update
+    public static Product product(String name, String description, double price) {
+        Product product = new Product();
+        product.setName(name);
+        product.setDescription(description);
+        product.setPrice(price);
+        return product;
+    }
+
+    // Only searches look at the description, so elsewhere it is made up from the name
+    public static Product product(String name, double price) {
+        return product(name, name + " description", price);
+    }
+
+    public static Product createProduct(ProductService productService, String name, String description, double price) {
+        return productService.createProduct(product(name, description, price));
+    }
+
+    public static Product createProduct(ProductService productService, String name, double price) {
+        return productService.createProduct(product(name, price));
+    }
+
+    // Products named "<prefix> 0" to "<prefix> <count - 1>", product i costing price(i)
+    public static List<Product> createProducts(ProductService productService, String prefix, int count, IntToDoubleFunction price) {
+        List<Product> products = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            products.add(createProduct(productService, prefix + " " + i, price.applyAsDouble(i)));
+        }
+        return products;
+    }
+}
@@ -0,0 +1,66 @@
+package com.example.order_management_system;
+
+import org.hibernate.resource.jdbc.spi.StatementInspector;
+
+import java.util.Locale;
+import java.util.concurrent.atomic.AtomicInteger;
+
+// Counts the SQL statements Hibernate prepares so tests can assert on round-trips
+public class SqlStatementCounter implements StatementInspector {
+
+    private static final AtomicInteger sequenceCalls = new AtomicInteger();
+    private static final AtomicInteger selects = new AtomicInteger();
+    private static final AtomicInteger inserts = new AtomicInteger();
+    private static final AtomicInteger updates = new AtomicInteger();
+    private static final AtomicInteger deletes = new AtomicInteger();
+
+    @Override
+    public String inspect(String sql) {
+        String statement = sql.stripLeading().toLowerCase(Locale.ROOT);
+        if (statement.contains("next value for")) {
+            sequenceCalls.incrementAndGet();
+        } else if (statement.startsWith("select")) {
+            selects.incrementAndGet();
+        } else if (statement.startsWith("insert")) {
+            inserts.incrementAndGet();
+        } else if (statement.startsWith("update")) {
+            updates.incrementAndGet();
+        } else if (statement.startsWith("delete")) {
+            deletes.incrementAndGet();
+        }
+        return sql;
+    }
+
+    public static void reset() {
+        sequenceCalls.set(0);
+        selects.set(0);
+        inserts.set(0);
+        updates.set(0);
+        deletes.set(0);
+    }
+
+    // ID allocations from a pooled sequence, kept apart from the SELECTs issued by queries
+    public static int sequenceCalls() {
+        return sequenceCalls.get();
+    }
+
+    public static int selects() {
+        return selects.get();
+    }
+
+    public static int inserts() {
+        return inserts.get();
+    }
+
+    public static int updates() {
+        return updates.get();
+    }
+
+    public static int deletes() {
+        return deletes.get();
+    }
+
+    public static int total() {
+        return selects() + inserts() + updates() + deletes();
+    }
+}
@@ -0,0 +1,166 @@
+package com.example.order_management_system.cache;
+
+import com.example.order_management_system.repository.IdempotencyRecordRepository;
+import com.example.order_management_system.repository.OrderRepository;
+import com.example.order_management_system.service.ProductService;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+import static com.example.order_management_system.ProductFixtures.createProduct;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+@SpringBootTest
+@AutoConfigureMockMvc
+class IdempotencyStoreTests {
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    private ProductService productService;
+
+    @Autowired
+    private OrderRepository orderRepository;
+
+    @Autowired
+    private IdempotencyRecordRepository idempotencyRecordRepository;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    // A store of another instance, sharing the idempotency_key table
+    private IdempotencyStore instance(boolean database) {
+        return new IdempotencyStore(idempotencyRecordRepository, transactionManager, objectMapper,
+                1000, Duration.ofHours(1), Duration.ofSeconds(10), database, Duration.ofMinutes(5));
+    }
+
+    private static Supplier<ResponseEntity<Map<String, String>>> created(AtomicInteger calls) {
+        return () -> ResponseEntity.status(HttpStatus.CREATED).body(Map.of("orderId", String.valueOf(calls.incrementAndGet())));
+    }
+
+    @Test
+    void aRetriedOrderIsAnsweredWithTheOriginalResponse() throws Exception {
+        Long productId = createProduct(productService, "Idempotent", 4.0).getId();
+        long orders = orderRepository.count();
+
+        MvcResult first = mockMvc.perform(post("/api/orders").header("Idempotency-Key", "retry-1")
+                        .contentType(MediaType.APPLICATION_JSON).content("{\"" + productId + "\": 2}"))
+                .andExpect(status().isCreated())
+                .andExpect(header().doesNotExist(IdempotencyStore.REPLAYED_HEADER))
+                .andReturn();
+        String orderId = objectMapper.readTree(first.getResponse().getContentAsString()).get("orderId").asText();
+
+        mockMvc.perform(post("/api/orders").header("Idempotency-Key", "retry-1")
+                        .contentType(MediaType.APPLICATION_JSON).content("{\"" + productId + "\": 2}"))
+                .andExpect(status().isCreated())
+                .andExpect(header().string(IdempotencyStore.REPLAYED_HEADER, "true"))
+                .andExpect(jsonPath("$.orderId").value(orderId));
+        mockMvc.perform(post("/api/orders").header("Idempotency-Key", "retry-1")
+                        .contentType(MediaType.APPLICATION_JSON).content("{\"" + productId + "\": 3}"))
+                .andExpect(status().isUnprocessableEntity());
+        assertThat(orderRepository.count()).isEqualTo(orders + 1);
+
+        // The key is scoped to the endpoint, so the same key adds products once
+        String addProducts = "/api/orders/" + orderId + "/products";
+        mockMvc.perform(post(addProducts).header("Idempotency-Key", "retry-1")
+                        .contentType(MediaType.APPLICATION_JSON).content("{\"" + productId + "\": 5}"))
+                .andExpect(status().isCreated())
+                .andExpect(header().doesNotExist(IdempotencyStore.REPLAYED_HEADER));
+        mockMvc.perform(post(addProducts).header("Idempotency-Key", "retry-1")
+                        .contentType(MediaType.APPLICATION_JSON).content("{\"" + productId + "\": 5}"))
+                .andExpect(header().string(IdempotencyStore.REPLAYED_HEADER, "true"));
+    }
+
+    @Test
+    void concurrentDuplicatesWaitForTheFirstRequest() throws Exception {
+        IdempotencyStore store = instance(false);
+        AtomicInteger calls = new AtomicInteger();
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        Supplier<ResponseEntity<Map<String, String>>> slow = () -> {
+            started.countDown();
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            return created(calls).get();
+        };
+
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            List<Future<ResponseEntity<Map<String, String>>>> responses = new ArrayList<>();
+            responses.add(executor.submit(() -> store.execute("test", "key", "a", slow)));
+            assertThat(started.await(10, TimeUnit.SECONDS)).isTrue();
+            for (int i = 0; i < 3; i++) {
+                responses.add(executor.submit(() -> store.execute("test", "key", "a", slow)));
+            }
+            ResponseEntity<Map<String, String>> otherBody = store.execute("test", "key", "b", slow);
+            Thread.sleep(200);
+            release.countDown();
+
+            assertThat(otherBody.getStatusCode()).isEqualTo(HttpStatus.UNPROCESSABLE_ENTITY);
+            for (Future<ResponseEntity<Map<String, String>>> response : responses) {
+                assertThat(response.get(10, TimeUnit.SECONDS).getStatusCode()).isEqualTo(HttpStatus.CREATED);
+                assertThat(response.get().getBody()).containsEntry("orderId", "1");
+            }
+            assertThat(calls.get()).isEqualTo(1);
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    void keysAreSharedThroughTheDatabaseAndRetriedAfterServerErrors() {
+        IdempotencyStore first = instance(true);
+        IdempotencyStore second = instance(true);
+        AtomicInteger calls = new AtomicInteger();
+
+        // While the first instance runs the request, the second one refuses the duplicate
+        ResponseEntity<Map<String, String>> response = first.execute("test", "shared", "a", () -> {
+            assertThat(second.execute("test", "shared", "a", created(calls)).getStatusCode()).isEqualTo(HttpStatus.CONFLICT);
+            return created(calls).get();
+        });
+        assertThat(response.getStatusCode()).isEqualTo(HttpStatus.CREATED);
+
+        ResponseEntity<Map<String, String>> replayed = second.execute("test", "shared", "a", created(calls));
+        assertThat(replayed.getStatusCode()).isEqualTo(HttpStatus.CREATED);
+        assertThat(replayed.getHeaders().getFirst(IdempotencyStore.REPLAYED_HEADER)).isEqualTo("true");
+        assertThat(replayed.getBody()).isEqualTo(response.getBody());
+        assertThat(second.execute("test", "shared", "b", created(calls)).getStatusCode()).isEqualTo(HttpStatus.UNPROCESSABLE_ENTITY);
+        assertThat(calls.get()).isEqualTo(1);
+
+        // A server error releases the key, so the retry runs again
+        first.execute("test", "failing", "a", () -> ResponseEntity.internalServerError().body(Map.of()));
+        assertThat(second.execute("test", "failing", "a", created(calls)).getStatusCode()).isEqualTo(HttpStatus.CREATED);
+        assertThat(calls.get()).isEqualTo(2);
+    }
+}
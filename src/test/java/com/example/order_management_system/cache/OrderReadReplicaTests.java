@@ -0,0 +1,181 @@
+package com.example.order_management_system.cache;
+
+import com.example.order_management_system.dto.OrderLineView;
+import com.example.order_management_system.dto.OrderLines;
+import com.example.order_management_system.dto.OrderReplicaCheck;
+import com.example.order_management_system.dto.OrderView;
+import com.example.order_management_system.dto.ProductView;
+import com.example.order_management_system.model.Order;
+import com.example.order_management_system.model.OrderProduct;
+import com.example.order_management_system.model.Product;
+import com.example.order_management_system.repository.OrderRepository;
+import com.example.order_management_system.service.OrderBulkService;
+import com.example.order_management_system.service.OrderService;
+import com.example.order_management_system.service.ProductService;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import static com.example.order_management_system.ProductFixtures.createProducts;
+import static com.example.order_management_system.ProductFixtures.product;
+import static org.assertj.core.api.Assertions.assertThat;
+
+@SpringBootTest(properties = "oms.order-replica.enabled=true")
+class OrderReadReplicaTests {
+
+    @Autowired
+    private OrderReadReplica orderReadReplica;
+
+    @Autowired
+    private OrderService orderService;
+
+    @Autowired
+    private OrderBulkService orderBulkService;
+
+    @Autowired
+    private ProductService productService;
+
+    @Autowired
+    private OrderRepository orderRepository;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    private List<Product> products;
+
+    @BeforeEach
+    void setUp() throws InterruptedException {
+        long deadline = System.nanoTime() + Duration.ofSeconds(30).toNanos();
+        while (!orderReadReplica.isReady() && System.nanoTime() < deadline) {
+            Thread.sleep(10);
+        }
+        assertThat(orderReadReplica.isReady()).isTrue();
+        products = createProducts(productService, "Replicated", 3, i -> 1.5 + i);
+    }
+
+    private Long productId(int index) {
+        return products.get(index).getId();
+    }
+
+    private OrderView fromDatabase(Long orderId) {
+        return OrderView.fromRows(orderRepository.findViewRowsById(orderId)).stream().findFirst().orElse(null);
+    }
+
+    private void awaitApplied() throws InterruptedException {
+        assertThat(orderReadReplica.awaitApplied(Duration.ofSeconds(10))).isTrue();
+    }
+
+    @Test
+    void readsFollowEveryOrderWritePath() throws Exception {
+        Long orderId = orderService.createOrder(Map.of(productId(0), 2)).getId();
+        awaitApplied();
+        assertThat(orderService.getOrderViewById(orderId)).contains(fromDatabase(orderId));
+
+        orderService.addProductsToOrder(orderId, Map.of(productId(1), 1));
+        awaitApplied();
+        assertThat(orderReadReplica.get(orderId)).contains(fromDatabase(orderId));
+        assertThat(orderReadReplica.get(orderId).orElseThrow().orderProducts()).hasSize(2);
+
+        orderService.updateOrder(orderId, Map.of(productId(1), 4, productId(2), 1));
+        awaitApplied();
+        assertThat(orderReadReplica.get(orderId)).contains(fromDatabase(orderId));
+
+        orderService.removeProductFromOrder(orderId, productId(2));
+        awaitApplied();
+        assertThat(orderReadReplica.get(orderId)).contains(fromDatabase(orderId));
+
+        orderService.removeOrder(orderId);
+        awaitApplied();
+        assertThat(orderService.getOrderViewById(orderId)).isEmpty();
+    }
+
+    @Test
+    void ordersTheReplicaHasNotAppliedYetAreReadFromTheDatabase() throws Exception {
+        // Saved without going through the service, so the replica is never told about it
+        Order order = new Order();
+        order.getOrderProducts().add(new OrderProduct(order, products.get(0), 2));
+        order.setTotal(new BigDecimal("3.00"));
+        order.setLineCount(1);
+        Long orderId = orderRepository.save(order).getId();
+        awaitApplied();
+
+        assertThat(orderReadReplica.get(orderId)).isEmpty();
+        assertThat(orderService.getOrderViewById(orderId)).contains(fromDatabase(orderId));
+        // Removed the same way, so the other tests find the replica and the database in step
+        orderRepository.deleteById(orderId);
+    }
+
+    @Test
+    void bulkImportsAreReplicatedAndPagedInIdOrder() throws Exception {
+        List<OrderLines> orders = new ArrayList<>();
+        for (int i = 0; i < 30; i++) {
+            orders.add(OrderLines.of(Map.of(productId(i % 3), 1 + i)));
+        }
+        List<Long> orderIds = orderBulkService.createOrders(orders.iterator()).stream()
+                .map(result -> result.orderId())
+                .toList();
+        awaitApplied();
+
+        List<OrderView> page = orderService.getOrderViewsPage(orderIds.get(9), 10);
+        assertThat(page).extracting(OrderView::id).containsExactlyElementsOf(orderIds.subList(10, 20));
+        assertThat(page).containsExactlyElementsOf(OrderView.fromRows(orderRepository.findViewRowsByIdIn(orderIds.subList(10, 20))));
+        assertThat(orderService.getAllOrderViews()).containsExactlyElementsOf(OrderView.fromRows(orderRepository.findAllViewRows()));
+    }
+
+    @Test
+    void productChangesReachTheOrdersThatContainThem() throws Exception {
+        Long shared = orderService.createOrder(Map.of(productId(0), 1, productId(1), 1)).getId();
+        Long onlyProduct = orderService.createOrder(Map.of(productId(1), 3)).getId();
+        awaitApplied();
+        // Both orders hold the same product instance
+        ProductView inShared = orderReadReplica.get(shared).orElseThrow().orderProducts().stream()
+                .map(OrderLineView::product)
+                .filter(product -> product.id().equals(productId(1)))
+                .findFirst().orElseThrow();
+        assertThat(inShared).isSameAs(orderReadReplica.get(onlyProduct).orElseThrow().orderProducts().get(0).product());
+
+        Product repriced = product("Repriced", "Repriced product", 10.0);
+        productService.updateProduct(productId(1), repriced);
+        awaitApplied();
+        assertThat(orderReadReplica.get(shared)).contains(fromDatabase(shared));
+        assertThat(orderReadReplica.get(onlyProduct).orElseThrow().total()).isEqualByComparingTo("30.00");
+
+        productService.deleteProduct(productId(1));
+        awaitApplied();
+        assertThat(orderReadReplica.get(shared)).contains(fromDatabase(shared));
+        assertThat(orderReadReplica.get(onlyProduct)).isEmpty();
+    }
+
+    @Test
+    void checkFindsAndRepairsChangesMadeBehindTheServicesBack() throws Exception {
+        Long changed = orderService.createOrder(Map.of(productId(0), 1)).getId();
+        Long deleted = orderService.createOrder(Map.of(productId(2), 1)).getId();
+        awaitApplied();
+        assertThat(orderReadReplica.check(false).stale()).isEmpty();
+
+        jdbcTemplate.update("UPDATE order_product SET quantity = 7 WHERE order_id = ?", changed);
+        jdbcTemplate.update("DELETE FROM order_product WHERE order_id = ?", deleted);
+        jdbcTemplate.update("DELETE FROM orders WHERE id = ?", deleted);
+
+        OrderReplicaCheck check = orderReadReplica.check(true);
+        assertThat(check.stale()).containsExactly(changed);
+        assertThat(check.unexpected()).containsExactly(deleted);
+        assertThat(check.missing()).isEmpty();
+        assertThat(check.repaired()).isTrue();
+
+        awaitApplied();
+        OrderReplicaCheck recheck = orderReadReplica.check(false);
+        assertThat(recheck.stale()).isEmpty();
+        assertThat(recheck.unexpected()).isEmpty();
+        assertThat(recheck.checked()).isEqualTo(orderRepository.count());
+        assertThat(orderReadReplica.get(changed)).contains(fromDatabase(changed));
+    }
+}
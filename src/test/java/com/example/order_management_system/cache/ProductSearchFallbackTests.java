@@ -0,0 +1,57 @@
+package com.example.order_management_system.cache;
+
+import com.example.order_management_system.dto.ProductView;
+import com.example.order_management_system.service.ProductService;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.util.List;
+
+import static com.example.order_management_system.ProductFixtures.createProduct;
+import static org.assertj.core.api.Assertions.assertThat;
+
+// Searches served by the LIKE queries must find what the index would, so switching over once it loads changes nothing
+@SpringBootTest(properties = "oms.product-search.index.enabled=false")
+class ProductSearchFallbackTests {
+
+    @Autowired
+    private ProductService productService;
+
+    @Autowired
+    private ProductSearchIndex productSearchIndex;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    private List<Long> search(String query, Double minPrice, Double maxPrice) {
+        return productService.searchProducts(query, minPrice, maxPrice, 0L, 100).stream().map(ProductView::id).toList();
+    }
+
+    @Test
+    void queryWordsMatchTheStartOfProductWords() {
+        Long phone = createProduct(productService, "Brindle phone", "Rotary dial", 40.0).getId();
+        Long smartphone = createProduct(productService, "Brindle smartphone", "Touch screen", 300.0).getId();
+        Long charger = createProduct(productService, "Brindle charger", "For the car-phone and the desk", 15.0).getId();
+
+        assertThat(productSearchIndex.isReady()).isFalse();
+        assertThat(search("brindle phone", null, null)).containsExactly(phone, charger);
+        assertThat(search("BRIND ph", null, null)).containsExactly(phone, charger);
+        assertThat(search("brindle martphone", null, null)).isEmpty();
+        assertThat(search("brindle", 20.0, null)).containsExactly(phone, smartphone);
+        assertThat(search("brindle", null, 40.0)).containsExactly(phone, charger);
+    }
+
+    @Test
+    void productsWithoutAPriceOnlyMatchUnpricedSearches() {
+        // Only rows from before prices were required can lack one
+        Long unpriced = createProduct(productService, "Kestrel kettle", "Imported before prices", 1.0).getId();
+        jdbcTemplate.update("UPDATE product SET price = NULL WHERE id = ?", unpriced);
+        Long priced = createProduct(productService, "Kestrel teapot", "Cast iron", 25.0).getId();
+
+        assertThat(search("kestrel", null, null)).containsExactly(unpriced, priced);
+        assertThat(search("kestrel", 0.0, null)).containsExactly(priced);
+        assertThat(search("kestrel", null, 100.0)).containsExactly(priced);
+    }
+}
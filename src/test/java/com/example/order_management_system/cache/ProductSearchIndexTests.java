@@ -0,0 +1,90 @@
+package com.example.order_management_system.cache;
+
+import com.example.order_management_system.dto.ProductView;
+import com.example.order_management_system.model.Product;
+import com.example.order_management_system.service.ProductService;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.HttpHeaders;
+import org.springframework.test.web.servlet.MockMvc;
+
+import java.time.Duration;
+import java.util.List;
+
+import static com.example.order_management_system.ProductFixtures.createProduct;
+import static com.example.order_management_system.ProductFixtures.product;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.hamcrest.Matchers.containsString;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+@SpringBootTest
+@AutoConfigureMockMvc
+class ProductSearchIndexTests {
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    private ProductService productService;
+
+    @Autowired
+    private ProductSearchIndex productSearchIndex;
+
+    @BeforeEach
+    void awaitIndex() throws InterruptedException {
+        assertThat(productSearchIndex.awaitReady(Duration.ofSeconds(30))).isTrue();
+    }
+
+    private List<Long> search(String query, Double minPrice, Double maxPrice) {
+        return productService.searchProducts(query, minPrice, maxPrice, 0L, 100).stream().map(ProductView::id).toList();
+    }
+
+    @Test
+    void searchesFollowProductWrites() {
+        Long lamp = createProduct(productService, "Quorvex desk lamp", "Warm light, brass finish", 30.0).getId();
+        Long chair = createProduct(productService, "Quorvex chair", "Oak desk chair", 120.0).getId();
+        Long rug = createProduct(productService, "Wool rug", "Hand-woven, pairs with the Quorvex range", 80.0).getId();
+
+        assertThat(search("quorvex", null, null)).containsExactly(lamp, chair, rug);
+        // Words match by prefix, in any order and case
+        assertThat(search("DESK quorv", null, null)).containsExactly(lamp, chair);
+        assertThat(search("quorvex", 50.0, 100.0)).containsExactly(rug);
+        assertThat(search("quorvex", 30.0, 30.0)).containsExactly(lamp);
+        assertThat(search("quorvex missing", null, null)).isEmpty();
+
+        Product renamed = product("Zentrop chair", "Oak dining chair", 60.0);
+        productService.updateProduct(chair, renamed);
+        productService.deleteProduct(rug);
+
+        assertThat(search("quorvex", null, null)).containsExactly(lamp);
+        assertThat(search("zentrop", 50.0, 70.0)).containsExactly(chair);
+        assertThat(search("desk", null, null)).contains(lamp).doesNotContain(chair);
+        assertThat(productService.searchProducts(null, 59.99, 60.01, 0L, 1000)).extracting(ProductView::id).contains(chair);
+    }
+
+    @Test
+    void searchIsPagedByProductId() throws Exception {
+        Long first = createProduct(productService, "Velmora mug", "Stoneware", 9.0).getId();
+        Long second = createProduct(productService, "Velmora bowl", "Stoneware", 12.0).getId();
+        Long third = createProduct(productService, "Velmora plate", "Stoneware", 14.0).getId();
+
+        mockMvc.perform(get("/api/products/search").param("q", "velmora stoneware").param("size", "2"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.products[0].id").value(first))
+                .andExpect(jsonPath("$.products[1].id").value(second))
+                .andExpect(jsonPath("$.nextAfterId").value(second))
+                .andExpect(header().string(HttpHeaders.LINK, containsString("afterId=" + second)));
+        mockMvc.perform(get("/api/products/search").param("q", "velmora").param("afterId", second.toString()).param("size", "2"))
+                .andExpect(jsonPath("$.products.length()").value(1))
+                .andExpect(jsonPath("$.products[0].id").value(third))
+                .andExpect(header().doesNotExist(HttpHeaders.LINK));
+        mockMvc.perform(get("/api/products/search").param("minPrice", "10").param("maxPrice", "5"))
+                .andExpect(status().isBadRequest());
+    }
+}
@@ -0,0 +1,82 @@
+package com.example.order_management_system.cache;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ThreadLocalRandom;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class SortedLongMapTests {
+
+    private static final long SEGMENT = 1L << SortedLongMap.SEGMENT_BITS;
+
+    @Test
+    void changesAcrossSegmentsMatchASortedMap() {
+        TreeMap<Long, String> expected = new TreeMap<>();
+        SortedLongMap<String> map = SortedLongMap.empty();
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        for (int round = 0; round < 50; round++) {
+            Map<Long, String> changes = new HashMap<>();
+            for (int i = 0; i < 200; i++) {
+                long key = random.nextLong(10 * SEGMENT);
+                String value = random.nextInt(4) == 0 ? null : "v" + round + "-" + key;
+                changes.put(key, value);
+            }
+            SortedLongMap<String> previous = map;
+            int previousSize = previous.size();
+            map = map.with(changes);
+            changes.forEach((key, value) -> {
+                if (value == null) {
+                    expected.remove(key);
+                } else {
+                    expected.put(key, value);
+                }
+            });
+            // The previous snapshot is untouched
+            assertThat(previous.size()).isEqualTo(previousSize);
+        }
+
+        SortedLongMap<String> result = map;
+        assertThat(result.size()).isEqualTo(expected.size());
+        assertThat(result.values()).containsExactlyElementsOf(expected.values());
+        expected.forEach((key, value) -> assertThat(result.get(key)).isEqualTo(value));
+        assertThat(map.get(-1)).isNull();
+        assertThat(map.firstKey()).hasValue(expected.firstKey());
+        assertThat(map.lastKey()).hasValue(expected.lastKey());
+
+        long afterKey = SEGMENT * 3 + 17;
+        assertThat(map.valuesAfter(afterKey, 25))
+                .containsExactlyElementsOf(expected.tailMap(afterKey, false).values().stream().limit(25).toList());
+        assertThat(map.keysBetween(SEGMENT - 5, 2 * SEGMENT + 5))
+                .containsExactly(expected.subMap(SEGMENT - 5, true, 2 * SEGMENT + 5, true).keySet().stream().mapToLong(Long::longValue).toArray());
+    }
+
+    @Test
+    void segmentAlignedPartsAreJoinedInKeyOrder() {
+        SortedLongMap<String> first = SortedLongMap.<String>empty().with(Map.of(1L, "a", SEGMENT - 1, "b"));
+        SortedLongMap<String> second = SortedLongMap.<String>empty().with(Map.of(2 * SEGMENT, "c"));
+
+        SortedLongMap<String> joined = SortedLongMap.concat(List.of(first, SortedLongMap.empty(), second));
+
+        assertThat(joined.values()).containsExactly("a", "b", "c");
+        assertThat(joined.size()).isEqualTo(3);
+        assertThat(joined.get(2 * SEGMENT)).isEqualTo("c");
+    }
+
+    @Test
+    void removingTheLastKeyOfASegmentDropsTheSegment() {
+        SortedLongMap<String> map = SortedLongMap.<String>empty().with(Map.of(5L, "a", SEGMENT + 5, "b"));
+        Map<Long, String> removal = new HashMap<>();
+        removal.put(5L, null);
+
+        SortedLongMap<String> removed = map.with(removal);
+
+        assertThat(removed.values()).containsExactly("b");
+        assertThat(removed.firstKey()).hasValue(SEGMENT + 5);
+        assertThat(removed.valuesAfter(0, 10)).containsExactly("b");
+    }
+}
@@ -0,0 +1,67 @@
+package com.example.order_management_system.config;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+
+import java.sql.SQLTransientConnectionException;
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class DataSourceConcurrencyLimiterTests {
+
+    @Test
+    void callersBeyondTheLimitTimeOutUntilAPermitIsReleased() throws Exception {
+        DataSourceConcurrencyLimiter limiter = new DataSourceConcurrencyLimiter(2, Duration.ofMillis(50));
+        limiter.acquire();
+        limiter.acquire();
+
+        assertThatThrownBy(limiter::acquire).isInstanceOf(SQLTransientConnectionException.class);
+        assertThat(limiter.stats()).containsEntry("timeouts", 1L).containsEntry("active", 2);
+
+        limiter.release();
+        limiter.acquire();
+        assertThat(limiter.stats()).containsEntry("acquisitions", 3L);
+    }
+
+    @Test
+    void timedOutWaitsAreLeftOutOfTheWaitStatistics() throws Exception {
+        DataSourceConcurrencyLimiter limiter = new DataSourceConcurrencyLimiter(1, Duration.ofMillis(200));
+        SimpleMeterRegistry registry = new SimpleMeterRegistry();
+        limiter.bindTo(registry);
+        limiter.acquire();
+
+        assertThatThrownBy(limiter::acquire).isInstanceOf(SQLTransientConnectionException.class);
+
+        assertThat(limiter.stats()).containsEntry("acquisitions", 1L).containsEntry("timeouts", 1L)
+                .containsEntry("averageWaitMillis", 0.0).containsEntry("maxWaitMillis", 0.0);
+        assertThat(registry.get("oms.db.limiter.wait").timer().count()).isEqualTo(1);
+        assertThat(registry.get("oms.db.limiter.wait").timer().max(TimeUnit.MILLISECONDS)).isZero();
+        assertThat(registry.get("oms.db.limiter.timeouts").functionCounter().count()).isEqualTo(1.0);
+    }
+
+    @Test
+    void waitingCallersAreCountedInTheQueueDepth() throws Exception {
+        DataSourceConcurrencyLimiter limiter = new DataSourceConcurrencyLimiter(1, Duration.ofSeconds(5));
+        limiter.acquire();
+
+        Thread waiter = Thread.ofVirtual().start(() -> {
+            try {
+                limiter.acquire();
+            } catch (SQLTransientConnectionException e) {
+                throw new IllegalStateException(e);
+            }
+        });
+        while (limiter.getQueueDepth() == 0) {
+            Thread.onSpinWait();
+        }
+        assertThat(limiter.getQueueDepth()).isEqualTo(1);
+
+        limiter.release();
+        waiter.join();
+        assertThat(limiter.getQueueDepth()).isZero();
+        assertThat(limiter.stats()).containsEntry("maxQueueDepth", 1);
+    }
+}
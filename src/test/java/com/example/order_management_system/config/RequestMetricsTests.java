@@ -0,0 +1,71 @@
+package com.example.order_management_system.config;
+
+import com.example.order_management_system.SqlStatementCounter;
+import com.example.order_management_system.model.Order;
+import com.example.order_management_system.service.OrderService;
+import com.example.order_management_system.service.ProductService;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.web.servlet.MockMvc;
+
+import java.util.Map;
+
+import static com.example.order_management_system.ProductFixtures.createProduct;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+@SpringBootTest
+@AutoConfigureMockMvc
+class RequestMetricsTests {
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Autowired
+    private OrderService orderService;
+
+    @Autowired
+    private ProductService productService;
+
+    private Order createOrder() {
+        return orderService.createOrder(Map.of(createProduct(productService, "Metered", 3.0).getId(), 2));
+    }
+
+    @Test
+    void requestRecordsTheStatementsItIssuedUnderItsRoutePattern() throws Exception {
+        Order order = createOrder();
+
+        SqlStatementCounter.reset();
+        mockMvc.perform(get("/api/orders/{id}", order.getId())).andExpect(status().isOk());
+
+        DistributionSummary statements = meterRegistry.get("oms.http.sql.statements")
+                .tags("method", "GET", "uri", "/api/orders/{id}")
+                .summary();
+        assertThat(statements.count()).isGreaterThanOrEqualTo(1);
+        // The test inspector configured in properties still sees every statement alongside the per-request counter
+        assertThat(SqlStatementCounter.selects()).isEqualTo(1);
+        assertThat(statements.max()).isEqualTo(1);
+    }
+
+    @Test
+    void serviceAndRepositoryCallsAreTimed() throws Exception {
+        Order order = createOrder();
+
+        mockMvc.perform(get("/api/orders/{id}/totals", order.getId())).andExpect(status().isOk());
+
+        assertThat(meterRegistry.get("oms.service").tags("class", OrderService.class.getName(), "method", "getOrderTotals")
+                .timer().count()).isGreaterThanOrEqualTo(1);
+        assertThat(meterRegistry.get("spring.data.repository.invocations").tags("method", "findTotalsById")
+                .timer().count()).isGreaterThanOrEqualTo(1);
+        assertThat(meterRegistry.get("http.server.requests").tags("uri", "/api/orders/{id}/totals")
+                .timer().count()).isGreaterThanOrEqualTo(1);
+    }
+}
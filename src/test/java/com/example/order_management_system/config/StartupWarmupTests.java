@@ -0,0 +1,57 @@
+package com.example.order_management_system.config;
+
+import com.example.order_management_system.service.ProductService;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.availability.ApplicationAvailability;
+import org.springframework.boot.availability.ReadinessState;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.core.env.Environment;
+
+import java.time.Duration;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatNoException;
+
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT,
+        properties = {"oms.warmup.enabled=true", "oms.warmup.iterations=50", "oms.warmup.threads=2"})
+class StartupWarmupTests {
+
+    @Autowired
+    private StartupWarmup startupWarmup;
+
+    @Autowired
+    private ApplicationAvailability applicationAvailability;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Autowired
+    private ProductService productService;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Autowired
+    private Environment environment;
+
+    @Test
+    void warmupCompletesBeforeTheApplicationAcceptsTraffic() {
+        assertThat(startupWarmup.getRounds()).isEqualTo(50);
+        assertThat(applicationAvailability.getReadinessState()).isEqualTo(ReadinessState.ACCEPTING_TRAFFIC);
+        // Every round also went through the embedded server, but none of them is counted as traffic
+        assertThat(meterRegistry.find("http.server.requests").tag("uri", "/api/orders/{id}").timer()).isNull();
+        assertThat(meterRegistry.find("oms.http.sql.statements").tag("uri", "/api/orders/{id}").summary()).isNull();
+    }
+
+    @Test
+    void aFailingWarmupIsLoggedAndDoesNotStopStartup() {
+        // Without an order service the sample query itself fails
+        StartupWarmup failing = new StartupWarmup(null, productService, objectMapper, environment, 10, 1, Duration.ofSeconds(5), 100);
+
+        assertThatNoException().isThrownBy(() -> failing.run(null));
+        assertThat(failing.getRounds()).isZero();
+    }
+}
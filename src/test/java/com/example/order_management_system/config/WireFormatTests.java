@@ -0,0 +1,201 @@
+package com.example.order_management_system.config;
+
+import com.example.order_management_system.model.Product;
+import com.example.order_management_system.service.OrderService;
+import com.example.order_management_system.service.ProductService;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.dataformat.cbor.databind.CBORMapper;
+import com.fasterxml.jackson.dataformat.smile.databind.SmileMapper;
+import jakarta.servlet.ServletOutputStream;
+import jakarta.servlet.WriteListener;
+import jakarta.servlet.http.HttpServletResponse;
+import jakarta.servlet.http.HttpServletResponseWrapper;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.web.server.LocalServerPort;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.zip.GZIPInputStream;
+
+import static com.example.order_management_system.ProductFixtures.createProducts;
+import static org.assertj.core.api.Assertions.assertThat;
+
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT, properties = {
+        "server.compression.enabled=true",
+        "server.compression.mime-types=application/json,application/x-ndjson,application/cbor,application/x-jackson-smile",
+        "server.compression.min-response-size=2KB"})
+class WireFormatTests {
+
+    @LocalServerPort
+    private int port;
+
+    @Autowired
+    private OrderService orderService;
+
+    @Autowired
+    private ProductService productService;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Autowired
+    private CompressionThresholdFilter compressionThresholdFilter;
+
+    private final HttpClient httpClient = HttpClient.newHttpClient();
+
+    @BeforeEach
+    void setUp() {
+        Map<Long, Integer> lines = new LinkedHashMap<>();
+        List<Product> products = createProducts(productService, "Wire product", 5, i -> 2.5 + i);
+        for (int i = 0; i < products.size(); i++) {
+            lines.put(products.get(i).getId(), i + 1);
+        }
+        for (int i = 0; i < 30; i++) {
+            orderService.createOrder(lines);
+        }
+    }
+
+    private HttpResponse<byte[]> get(String path, String accept, String acceptEncoding) throws Exception {
+        HttpRequest.Builder request = HttpRequest.newBuilder(URI.create("http://localhost:" + port + path)).header("Accept", accept);
+        if (acceptEncoding != null) {
+            request.header("Accept-Encoding", acceptEncoding);
+        }
+        return httpClient.send(request.build(), HttpResponse.BodyHandlers.ofByteArray());
+    }
+
+    @Test
+    void listsAreEncodedAsRequestedByTheAcceptHeader() throws Exception {
+        HttpResponse<byte[]> json = get("/api/orders", "application/json", null);
+        HttpResponse<byte[]> cbor = get("/api/orders", "application/cbor", null);
+        HttpResponse<byte[]> smile = get("/api/orders", "application/x-jackson-smile", null);
+        HttpResponse<byte[]> any = get("/api/products", "*/*", null);
+
+        assertThat(cbor.headers().firstValue("Content-Type")).hasValue("application/cbor");
+        assertThat(smile.headers().firstValue("Content-Type")).hasValue("application/x-jackson-smile");
+        assertThat(any.headers().firstValue("Content-Type")).hasValue("application/json");
+        // Compared as JSON text, since the binary encodings keep decimals where JSON is read back as doubles
+        String expected = objectMapper.writeValueAsString(objectMapper.readTree(json.body()));
+        assertThat(objectMapper.writeValueAsString(new CBORMapper().readTree(cbor.body()))).isEqualTo(expected);
+        assertThat(objectMapper.writeValueAsString(new SmileMapper().readTree(smile.body()))).isEqualTo(expected);
+        assertThat(cbor.body().length).isLessThan(json.body().length);
+        assertThat(smile.body().length).isLessThan(json.body().length);
+    }
+
+    @Test
+    void responsesAreGzippedForClientsThatAcceptIt() throws Exception {
+        HttpResponse<byte[]> plain = get("/api/orders", "application/json", null);
+        HttpResponse<byte[]> gzipped = get("/api/orders", "application/json", "gzip");
+
+        assertThat(plain.headers().firstValue("Content-Encoding")).isEmpty();
+        assertThat(gzipped.headers().firstValue("Content-Encoding")).hasValue("gzip");
+        assertThat(gunzip(gzipped.body())).isEqualTo(plain.body());
+        assertThat(gzipped.body().length).isLessThan(plain.body().length / 4);
+    }
+
+    @Test
+    void responsesBelowTheMinimumSizeAreNotGzipped() throws Exception {
+        Long orderId = orderService.getAllOrders().get(0).getId();
+        HttpResponse<byte[]> order = get("/api/orders/" + orderId, "application/json", "gzip");
+        HttpResponse<byte[]> missing = get("/api/products/0", "application/json", "gzip");
+
+        assertThat(order.headers().firstValue("Content-Encoding")).isEmpty();
+        assertThat(order.headers().firstValueAsLong("Content-Length")).hasValue(order.body().length);
+        assertThat(objectMapper.readTree(order.body()).get("id").asLong()).isEqualTo(orderId);
+        assertThat(missing.statusCode()).isEqualTo(404);
+        assertThat(missing.headers().firstValue("Content-Encoding")).isEmpty();
+        assertThat(objectMapper.readTree(missing.body()).get("status").asText()).isEqualTo("failure");
+    }
+
+    @Test
+    void streamsAreGzippedOnceTheyOutgrowTheMinimumSize() throws Exception {
+        HttpResponse<byte[]> plain = get("/api/orders", "application/x-ndjson", null);
+        HttpResponse<byte[]> gzipped = get("/api/orders", "application/x-ndjson", "gzip");
+        // A few short products, so the whole stream stays below the minimum size
+        HttpResponse<byte[]> plainProducts = get("/api/products", "application/x-ndjson", null);
+        HttpResponse<byte[]> products = get("/api/products", "application/x-ndjson", "gzip");
+
+        assertThat(gzipped.headers().firstValue("Content-Encoding")).hasValue("gzip");
+        assertThat(gunzip(gzipped.body())).isEqualTo(plain.body());
+        assertThat(plainProducts.body().length).isLessThan(2048);
+        assertThat(products.headers().firstValue("Content-Encoding")).isEmpty();
+        assertThat(products.body()).isEqualTo(plainProducts.body());
+    }
+
+    @Test
+    void nonBlockingWritersGetTheContainerStream() throws Exception {
+        ByteArrayOutputStream written = new ByteArrayOutputStream();
+        AtomicReference<WriteListener> registered = new AtomicReference<>();
+        AtomicBoolean containerReady = new AtomicBoolean(true);
+        ServletOutputStream containerStream = new ServletOutputStream() {
+            @Override
+            public void write(int b) {
+                written.write(b);
+            }
+
+            @Override
+            public boolean isReady() {
+                return containerReady.get();
+            }
+
+            @Override
+            public void setWriteListener(WriteListener writeListener) {
+                registered.set(writeListener);
+            }
+        };
+        MockHttpServletResponse container = new MockHttpServletResponse();
+        HttpServletResponse response = new HttpServletResponseWrapper(container) {
+            @Override
+            public ServletOutputStream getOutputStream() {
+                return containerStream;
+            }
+        };
+        MockHttpServletRequest request = new MockHttpServletRequest("GET", "/api/orders");
+        request.addHeader("Accept-Encoding", "gzip");
+        WriteListener listener = new WriteListener() {
+            @Override
+            public void onWritePossible() {
+            }
+
+            @Override
+            public void onError(Throwable t) {
+            }
+        };
+
+        compressionThresholdFilter.doFilter(request, response, (req, res) -> {
+            ServletOutputStream out = res.getOutputStream();
+            out.write("held ".getBytes(StandardCharsets.UTF_8));
+            out.setWriteListener(listener);
+            assertThat(written.toString(StandardCharsets.UTF_8)).isEqualTo("held ");
+            containerReady.set(false);
+            assertThat(out.isReady()).isFalse();
+            containerReady.set(true);
+            out.write("passed".getBytes(StandardCharsets.UTF_8));
+            assertThat(written.toString(StandardCharsets.UTF_8)).isEqualTo("held passed");
+        });
+
+        assertThat(registered.get()).isSameAs(listener);
+        assertThat(container.getHeader("Content-Length")).isNull();
+    }
+
+    private static byte[] gunzip(byte[] body) throws IOException {
+        try (GZIPInputStream in = new GZIPInputStream(new ByteArrayInputStream(body))) {
+            return in.readAllBytes();
+        }
+    }
+}
@@ -0,0 +1,247 @@
+package com.example.order_management_system.controller;
+
+import com.example.order_management_system.dto.OrderTotals;
+import com.example.order_management_system.dto.OrderView;
+import com.example.order_management_system.model.Product;
+import com.example.order_management_system.service.OrderService;
+import com.example.order_management_system.service.ProductService;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import static com.example.order_management_system.ProductFixtures.createProducts;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.asyncDispatch;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.request;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+// Chunks of two orders and pages of at most three, so a handful of orders crosses several chunk and page boundaries
+@SpringBootTest(properties = {"oms.bulk.chunk-size=2", "oms.pagination.default-page-size=2", "oms.pagination.max-page-size=3"})
+@AutoConfigureMockMvc
+class OrderControllerTests {
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    private OrderService orderService;
+
+    @Autowired
+    private ProductService productService;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    private List<Long> productIds;
+
+    @BeforeEach
+    void setUp() {
+        productIds = createProducts(productService, "Imported", 3, i -> 2.0 * (i + 1)).stream().map(Product::getId).toList();
+    }
+
+    private JsonNode importOrders(MediaType contentType, String body) throws Exception {
+        String response = mockMvc.perform(post("/api/orders/bulk").contentType(contentType).content(body))
+                .andExpect(status().isOk())
+                .andReturn().getResponse().getContentAsString();
+        return objectMapper.readTree(response);
+    }
+
+    private String order(int product, int quantity) {
+        return "{\"" + productIds.get(product) + "\": " + quantity + "}";
+    }
+
+    private OrderTotals totalsOf(JsonNode result) {
+        return orderService.getOrderTotals(result.get("orderId").asLong()).orElseThrow();
+    }
+
+    @Test
+    void jsonArraysAreImportedAcrossChunksWithOneResultPerOrder() throws Exception {
+        String body = "[" + String.join(",", order(0, 1), order(1, 2),
+                "{\"" + productIds.get(2) + "\": 1, \"" + productIds.get(0) + "\": 3}", order(2, 4), order(1, 1)) + "]";
+
+        JsonNode response = importOrders(MediaType.APPLICATION_JSON, body);
+
+        assertThat(response.get("status").asText()).isEqualTo("success");
+        assertThat(response.get("created").asInt()).isEqualTo(5);
+        assertThat(response.get("failed").asInt()).isZero();
+        JsonNode results = response.get("results");
+        assertThat(results).hasSize(5);
+        for (int i = 0; i < 5; i++) {
+            assertThat(results.get(i).get("index").asInt()).isEqualTo(i);
+            assertThat(results.get(i).get("status").asText()).isEqualTo("success");
+            assertThat(results.get(i).has("message")).isFalse();
+        }
+        // Orders are created in request order, chunk after chunk
+        for (int i = 1; i < 5; i++) {
+            assertThat(results.get(i).get("orderId").asLong()).isGreaterThan(results.get(i - 1).get("orderId").asLong());
+        }
+        assertThat(totalsOf(results.get(0)).total()).isEqualByComparingTo("2.00");
+        assertThat(totalsOf(results.get(2)).total()).isEqualByComparingTo("12.00");
+        assertThat(totalsOf(results.get(2)).lineCount()).isEqualTo(2);
+        assertThat(totalsOf(results.get(4)).total()).isEqualByComparingTo("4.00");
+    }
+
+    @Test
+    void ndjsonIsImportedOneOrderPerLine() throws Exception {
+        // Exactly two chunks, with a blank line and no trailing newline
+        String body = order(0, 1) + "\n" + order(1, 1) + "\n\n" + order(2, 1) + "\n" + order(0, 5);
+
+        JsonNode response = importOrders(MediaType.APPLICATION_NDJSON, body);
+
+        assertThat(response.get("status").asText()).isEqualTo("success");
+        assertThat(response.get("created").asInt()).isEqualTo(4);
+        JsonNode results = response.get("results");
+        assertThat(results).hasSize(4);
+        assertThat(totalsOf(results.get(2)).total()).isEqualByComparingTo("6.00");
+        assertThat(totalsOf(results.get(3)).total()).isEqualByComparingTo("10.00");
+    }
+
+    @Test
+    void aFailedOrderDoesNotStopTheRestOfItsChunk() throws Exception {
+        // The second chunk holds one order with an unknown product and one with a zero quantity
+        String body = "[" + String.join(",", order(0, 1), order(1, 1),
+                "{\"" + productIds.get(0) + "\": 1, \"-1\": 1}", order(1, 0), order(2, 1)) + "]";
+
+        JsonNode response = importOrders(MediaType.APPLICATION_JSON, body);
+
+        assertThat(response.get("status").asText()).isEqualTo("partial");
+        assertThat(response.get("created").asInt()).isEqualTo(3);
+        assertThat(response.get("failed").asInt()).isEqualTo(2);
+        JsonNode results = response.get("results");
+        assertThat(results).hasSize(5);
+        assertThat(results.get(2).get("index").asInt()).isEqualTo(2);
+        assertThat(results.get(2).get("status").asText()).isEqualTo("failure");
+        assertThat(results.get(2).get("message").asText()).contains("[-1]");
+        assertThat(results.get(2).has("orderId")).isFalse();
+        assertThat(results.get(3).get("status").asText()).isEqualTo("failure");
+        for (int i : new int[]{0, 1, 4}) {
+            assertThat(results.get(i).get("index").asInt()).isEqualTo(i);
+            assertThat(results.get(i).get("status").asText()).isEqualTo("success");
+            assertThat(totalsOf(results.get(i)).lineCount()).isEqualTo(1);
+        }
+    }
+
+    @Test
+    void aMalformedLineEndsTheImportAfterTheOrdersBeforeIt() throws Exception {
+        String body = order(0, 1) + "\n" + order(1, 1) + "\n" + order(2, 1) + "\n{\"not-a-product\": 1}\n" + order(0, 1) + "\n";
+
+        JsonNode response = importOrders(MediaType.APPLICATION_NDJSON, body);
+
+        assertThat(response.get("status").asText()).isEqualTo("partial");
+        assertThat(response.get("created").asInt()).isEqualTo(3);
+        assertThat(response.get("failed").asInt()).isEqualTo(1);
+        JsonNode results = response.get("results");
+        assertThat(results).hasSize(4);
+        assertThat(results.get(2).get("status").asText()).isEqualTo("success");
+        assertThat(results.get(3).get("index").asInt()).isEqualTo(3);
+        assertThat(results.get(3).get("status").asText()).isEqualTo("failure");
+        assertThat(results.get(3).get("message").asText()).startsWith("Malformed order: ");
+    }
+
+    @Test
+    void unreadableJsonIsReportedWithoutImportingAnything() throws Exception {
+        JsonNode response = importOrders(MediaType.APPLICATION_NDJSON, "{\"" + productIds.get(0) + "\": oops}\n" + order(0, 1));
+
+        assertThat(response.get("created").asInt()).isZero();
+        JsonNode results = response.get("results");
+        assertThat(results).hasSize(1);
+        assertThat(results.get(0).get("index").asInt()).isZero();
+        assertThat(results.get(0).get("message").asText()).startsWith("Malformed order: ");
+    }
+
+    private List<Long> createOrders(int count) {
+        List<Long> orderIds = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            orderIds.add(orderService.createOrder(Map.of(productIds.get(i % 3), i + 1)).getId());
+        }
+        return orderIds;
+    }
+
+    private List<Long> idsOf(MockHttpServletResponse response) throws Exception {
+        List<Long> ids = new ArrayList<>();
+        objectMapper.readTree(response.getContentAsString()).forEach(order -> ids.add(order.get("id").asLong()));
+        return ids;
+    }
+
+    private static URI nextPage(MockHttpServletResponse response) {
+        String link = response.getHeader(HttpHeaders.LINK);
+        assertThat(link).endsWith(">; rel=\"next\"");
+        return URI.create(link.substring(1, link.indexOf('>')));
+    }
+
+    @Test
+    void orderPagesLinkToTheNextPageUntilAPageIsShort() throws Exception {
+        List<Long> orderIds = createOrders(5);
+        Long before = orderIds.get(0) - 1;
+
+        MockHttpServletResponse first = mockMvc.perform(get("/api/orders").param("afterId", before.toString()))
+                .andExpect(status().isOk())
+                .andReturn().getResponse();
+        assertThat(idsOf(first)).containsExactlyElementsOf(orderIds.subList(0, 2));
+        assertThat(nextPage(first)).hasParameter("afterId", orderIds.get(1).toString()).hasParameter("size", "2");
+
+        MockHttpServletResponse second = mockMvc.perform(get(nextPage(first))).andExpect(status().isOk()).andReturn().getResponse();
+        assertThat(idsOf(second)).containsExactlyElementsOf(orderIds.subList(2, 4));
+
+        MockHttpServletResponse last = mockMvc.perform(get(nextPage(second))).andExpect(status().isOk()).andReturn().getResponse();
+        assertThat(idsOf(last)).containsExactly(orderIds.get(4));
+        assertThat(last.getHeader(HttpHeaders.LINK)).isNull();
+
+        mockMvc.perform(get("/api/orders").param("afterId", orderIds.get(4).toString()))
+                .andExpect(status().isNoContent());
+    }
+
+    @Test
+    void orderPageSizesAreClampedToTheMaximum() throws Exception {
+        List<Long> orderIds = createOrders(4);
+        String before = String.valueOf(orderIds.get(0) - 1);
+
+        MockHttpServletResponse capped = mockMvc.perform(get("/api/orders").param("afterId", before).param("size", "1000"))
+                .andExpect(status().isOk())
+                .andReturn().getResponse();
+        assertThat(idsOf(capped)).containsExactlyElementsOf(orderIds.subList(0, 3));
+        assertThat(nextPage(capped)).hasParameter("afterId", orderIds.get(2).toString()).hasParameter("size", "3");
+
+        MockHttpServletResponse single = mockMvc.perform(get("/api/orders").param("afterId", before).param("size", "0"))
+                .andExpect(status().isOk())
+                .andReturn().getResponse();
+        assertThat(idsOf(single)).containsExactly(orderIds.get(0));
+    }
+
+    @Test
+    void orderStreamsHaveOneOrderPerLine() throws Exception {
+        createOrders(3);
+        MvcResult started = mockMvc.perform(get("/api/orders").accept(MediaType.APPLICATION_NDJSON))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+        MockHttpServletResponse stream = mockMvc.perform(asyncDispatch(started))
+                .andExpect(status().isOk())
+                .andReturn().getResponse();
+
+        List<OrderView> orders = orderService.getAllOrderViews();
+        String body = stream.getContentAsString();
+        assertThat(stream.getContentType()).isEqualTo(MediaType.APPLICATION_NDJSON_VALUE);
+        assertThat(body).endsWith("}\n");
+        String[] lines = body.substring(0, body.length() - 1).split("\n", -1);
+        assertThat(lines).hasSize(orders.size());
+        for (int i = 0; i < lines.length; i++) {
+            assertThat(lines[i]).isEqualTo(objectMapper.writeValueAsString(orders.get(i)));
+        }
+    }
+}
@@ -0,0 +1,123 @@
+package com.example.order_management_system.controller;
+
+import com.example.order_management_system.dto.ProductView;
+import com.example.order_management_system.model.Product;
+import com.example.order_management_system.service.ProductService;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.List;
+
+import static com.example.order_management_system.ProductFixtures.createProducts;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.asyncDispatch;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.request;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+// Pages of at most three products, so a handful of products spans several pages
+@SpringBootTest(properties = {"oms.pagination.default-page-size=2", "oms.pagination.max-page-size=3"})
+@AutoConfigureMockMvc
+class ProductControllerTests {
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    private ProductService productService;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    private List<Long> createPagedProducts(int count) {
+        return createProducts(productService, "Paged", count, i -> 1.0 + i).stream().map(Product::getId).toList();
+    }
+
+    private JsonNode page(String afterId, String size) throws Exception {
+        MockHttpServletResponse response = mockMvc.perform(get("/api/products").param("afterId", afterId).param("size", size))
+                .andExpect(status().isOk())
+                .andReturn().getResponse();
+        return objectMapper.readTree(response.getContentAsString());
+    }
+
+    private static List<Long> idsOf(JsonNode page) {
+        List<Long> ids = new ArrayList<>();
+        page.get("products").forEach(product -> ids.add(product.get("id").asLong()));
+        return ids;
+    }
+
+    @Test
+    void productPagesLinkToTheNextPageUntilAPageIsShort() throws Exception {
+        List<Long> productIds = createPagedProducts(5);
+
+        MockHttpServletResponse first = mockMvc.perform(get("/api/products").param("afterId", String.valueOf(productIds.get(0) - 1)))
+                .andExpect(status().isOk())
+                .andReturn().getResponse();
+        JsonNode firstPage = objectMapper.readTree(first.getContentAsString());
+        assertThat(idsOf(firstPage)).containsExactlyElementsOf(productIds.subList(0, 2));
+        assertThat(firstPage.get("nextAfterId").asLong()).isEqualTo(productIds.get(1));
+        String link = first.getHeader(HttpHeaders.LINK);
+        assertThat(link).endsWith(">; rel=\"next\"");
+        assertThat(URI.create(link.substring(1, link.indexOf('>'))))
+                .hasPath("/api/products")
+                .hasParameter("afterId", productIds.get(1).toString())
+                .hasParameter("size", "2");
+
+        JsonNode second = page(firstPage.get("nextAfterId").asText(), "2");
+        assertThat(idsOf(second)).containsExactlyElementsOf(productIds.subList(2, 4));
+
+        MockHttpServletResponse last = mockMvc.perform(get("/api/products").param("afterId", second.get("nextAfterId").asText()).param("size", "2"))
+                .andExpect(status().isOk())
+                .andReturn().getResponse();
+        JsonNode lastPage = objectMapper.readTree(last.getContentAsString());
+        assertThat(idsOf(lastPage)).containsExactly(productIds.get(4));
+        assertThat(lastPage.get("nextAfterId").asLong()).isEqualTo(productIds.get(4));
+        assertThat(last.getHeader(HttpHeaders.LINK)).isNull();
+
+        mockMvc.perform(get("/api/products").param("afterId", productIds.get(4).toString()))
+                .andExpect(status().isNoContent());
+    }
+
+    @Test
+    void productPageSizesAreClampedToTheMaximum() throws Exception {
+        List<Long> productIds = createPagedProducts(4);
+        String before = String.valueOf(productIds.get(0) - 1);
+
+        JsonNode capped = page(before, "1000");
+        assertThat(idsOf(capped)).containsExactlyElementsOf(productIds.subList(0, 3));
+        assertThat(capped.get("nextAfterId").asLong()).isEqualTo(productIds.get(2));
+        assertThat(idsOf(page(before, "-5"))).containsExactly(productIds.get(0));
+    }
+
+    @Test
+    void productStreamsHaveOneProductPerLine() throws Exception {
+        createPagedProducts(3);
+        MvcResult started = mockMvc.perform(get("/api/products").accept(MediaType.APPLICATION_NDJSON))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+        MockHttpServletResponse stream = mockMvc.perform(asyncDispatch(started))
+                .andExpect(status().isOk())
+                .andReturn().getResponse();
+
+        List<ProductView> products = productService.getAllProductViews();
+        String body = stream.getContentAsString();
+        assertThat(stream.getContentType()).isEqualTo(MediaType.APPLICATION_NDJSON_VALUE);
+        assertThat(body).endsWith("}\n");
+        String[] lines = body.substring(0, body.length() - 1).split("\n", -1);
+        assertThat(lines).hasSize(products.size());
+        for (int i = 0; i < lines.length; i++) {
+            assertThat(lines[i]).isEqualTo(objectMapper.writeValueAsString(products.get(i)));
+        }
+    }
+}
@@ -0,0 +1,71 @@
+package com.example.order_management_system.dto;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.exc.InvalidFormatException;
+import com.fasterxml.jackson.databind.exc.MismatchedInputException;
+import org.junit.jupiter.api.Test;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class OrderLinesTests {
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    @Test
+    void repeatedProductsAreMergedInTheOrderTheyFirstAppear() throws Exception {
+        OrderLines lines = objectMapper.readValue("{\"7\": 2, \"3\": \"4\", \"7\": 5, \"-1\": 1}", OrderLines.class);
+
+        assertThat(lines.size()).isEqualTo(3);
+        assertThat(lines.productIdList()).containsExactly(7L, 3L, -1L);
+        assertThat(lines.quantity(lines.indexOf(7))).isEqualTo(7);
+        assertThat(lines.quantity(lines.indexOf(3))).isEqualTo(4);
+        assertThat(lines.indexOf(8)).isEqualTo(-1);
+        assertThat(objectMapper.readValue("{}", OrderLines.class).isEmpty()).isTrue();
+    }
+
+    @Test
+    void largeOrdersAreLookedUpThroughTheIndex() {
+        Map<Long, Integer> productQuantities = new LinkedHashMap<>();
+        OrderLines.Builder builder = new OrderLines.Builder(2);
+        for (long productId = 1; productId <= 1000; productId++) {
+            productQuantities.put(productId * 4096, (int) productId);
+            builder.add(productId * 4096, 1).add(productId * 4096, (int) productId - 1);
+        }
+        OrderLines lines = builder.build();
+
+        assertThat(lines).isEqualTo(OrderLines.of(productQuantities));
+        for (int line = 0; line < lines.size(); line++) {
+            assertThat(lines.indexOf(lines.productId(line))).isEqualTo(line);
+        }
+        assertThat(lines.contains(4097)).isFalse();
+        assertThatThrownBy(() -> builder.add(1, 1)).isInstanceOf(IllegalStateException.class);
+    }
+
+    @Test
+    void serializesToTheObjectItWasReadFrom() throws Exception {
+        OrderLines lines = objectMapper.readValue("{\"12\":3,\"5\":1}", OrderLines.class);
+
+        assertThat(objectMapper.writeValueAsString(lines)).isEqualTo("{\"12\":3,\"5\":1}");
+        assertThat(objectMapper.readValue(objectMapper.writeValueAsString(lines), OrderLines.class)).isEqualTo(lines);
+    }
+
+    @Test
+    void malformedPayloadsAreRejected() {
+        assertThatThrownBy(() -> objectMapper.readValue("{\"abc\": 1}", OrderLines.class))
+                .isInstanceOf(InvalidFormatException.class);
+        assertThatThrownBy(() -> objectMapper.readValue("{\"99999999999999999999\": 1}", OrderLines.class))
+                .isInstanceOf(InvalidFormatException.class);
+        assertThatThrownBy(() -> objectMapper.readValue("{\"1\": \"two\"}", OrderLines.class))
+                .isInstanceOf(InvalidFormatException.class);
+        assertThatThrownBy(() -> objectMapper.readValue("{\"1\": null}", OrderLines.class))
+                .isInstanceOf(MismatchedInputException.class);
+        assertThatThrownBy(() -> objectMapper.readValue("{\"1\": 2147483647, \"1\": 1}", OrderLines.class))
+                .isInstanceOf(MismatchedInputException.class);
+        assertThatThrownBy(() -> objectMapper.readValue("[1, 2]", OrderLines.class))
+                .isInstanceOf(MismatchedInputException.class);
+    }
+}
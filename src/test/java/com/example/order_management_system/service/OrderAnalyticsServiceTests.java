@@ -0,0 +1,135 @@
+package com.example.order_management_system.service;
+
+import com.example.order_management_system.cache.ProductSalesAggregate;
+import com.example.order_management_system.cache.ProductSalesTotals;
+import com.example.order_management_system.dto.ProductSales;
+import com.example.order_management_system.repository.OrderProductRepository;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.HttpHeaders;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.web.servlet.MockMvc;
+
+import java.lang.reflect.Proxy;
+import java.math.BigDecimal;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static com.example.order_management_system.ProductFixtures.createProduct;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+// Small chunks, so a scan is split across many tasks
+@SpringBootTest(properties = {"oms.analytics.incremental.enabled=true", "oms.analytics.chunk-size=7"})
+@AutoConfigureMockMvc
+class OrderAnalyticsServiceTests {
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    private OrderAnalyticsService orderAnalyticsService;
+
+    @Autowired
+    private ProductSalesAggregate productSalesAggregate;
+
+    @Autowired
+    private OrderService orderService;
+
+    @Autowired
+    private ProductService productService;
+
+    @Autowired
+    private OrderProductRepository orderProductRepository;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    // Sales of the product from both the in-memory sums and a fresh scan, which must agree
+    private ProductSales sales(Long productId) {
+        List<ProductSales> aggregated = orderAnalyticsService.salesByProduct(productId - 1, 1, false);
+        List<ProductSales> scanned = orderAnalyticsService.salesByProduct(productId - 1, 1, true);
+        assertThat(aggregated).isEqualTo(scanned);
+        return scanned.isEmpty() || !scanned.get(0).productId().equals(productId) ? null : scanned.get(0);
+    }
+
+    @Test
+    void salesFollowEveryOrderWrite() throws Exception {
+        for (int i = 0; i < 300 && !productSalesAggregate.isReady(); i++) {
+            Thread.sleep(100);
+        }
+        assertThat(productSalesAggregate.isReady()).isTrue();
+        Long bestseller = createProduct(productService, "Bestseller", 2.5).getId();
+        Long other = createProduct(productService, "Other", 10.0).getId();
+        Long bulk = createProduct(productService, "Bulk", 1.0).getId();
+
+        Long first = orderService.createOrder(Map.of(bestseller, 900_000, other, 10)).getId();
+        Long second = orderService.createOrder(Map.of(bestseller, 5, bulk, 800_000)).getId();
+        assertThat(sales(bestseller)).isEqualTo(new ProductSales(bestseller, "Bestseller", 900_005, 2, new BigDecimal("2250012.50")));
+        assertThat(sales(bulk)).isEqualTo(new ProductSales(bulk, "Bulk", 800_000, 1, new BigDecimal("800000.00")));
+
+        orderService.updateOrder(second, Map.of(bulk, 700_000));
+        orderService.addProductsToOrder(first, Map.of(other, 20));
+        Long removed = orderService.createOrder(Map.of(other, 3)).getId();
+        orderService.removeOrder(removed);
+        assertThat(sales(bestseller)).isEqualTo(new ProductSales(bestseller, "Bestseller", 900_000, 1, new BigDecimal("2250000.00")));
+        assertThat(sales(other)).isEqualTo(new ProductSales(other, "Other", 20, 1, new BigDecimal("200.00")));
+        assertThat(sales(bulk).quantity()).isEqualTo(700_000);
+
+        assertThat(orderAnalyticsService.topProductsByQuantity(2, false)).extracting(ProductSales::productId).containsExactly(bestseller, bulk);
+        assertThat(orderAnalyticsService.topProductsByRevenue(2, true)).extracting(ProductSales::productId).containsExactly(bestseller, bulk);
+
+        productService.deleteProduct(bulk);
+        assertThat(sales(bulk)).isNull();
+        assertThat(orderAnalyticsService.topProductsByQuantity(1, false)).extracting(ProductSales::productId).containsExactly(bestseller);
+
+        mockMvc.perform(get("/api/analytics/sales-by-product").param("afterId", String.valueOf(bestseller - 1)).param("size", "1"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.products[0].productId").value(bestseller))
+                .andExpect(jsonPath("$.products[0].revenue").value(2250000.00))
+                .andExpect(jsonPath("$.nextAfterId").value(bestseller))
+                .andExpect(header().exists(HttpHeaders.LINK));
+        mockMvc.perform(get("/api/analytics/top-products").param("limit", "1").param("by", "revenue"))
+                .andExpect(jsonPath("$.products[0].productId").value(bestseller));
+        mockMvc.perform(get("/api/analytics/top-products").param("by", "price"))
+                .andExpect(status().isBadRequest());
+    }
+
+    @Test
+    void writesCommittedWhileARebuildScansAreCountedOnce() {
+        Long product = createProduct(productService, "Rebuilt", 3.0).getId();
+        orderService.createOrder(Map.of(product, 4));
+        Long lineId = jdbcTemplate.queryForObject("SELECT id FROM order_product WHERE product_id = ?", Long.class, product);
+
+        // The first chunk query of each scan runs just after a write to the product commits, so the scan counts it
+        AtomicBoolean writeDuringScan = new AtomicBoolean();
+        ProductSalesAggregate[] aggregate = new ProductSalesAggregate[1];
+        OrderProductRepository racing = (OrderProductRepository) Proxy.newProxyInstance(getClass().getClassLoader(),
+                new Class<?>[]{OrderProductRepository.class}, (proxy, method, args) -> {
+                    if (method.getName().equals("findSalesBetween") && writeDuringScan.getAndSet(false)) {
+                        jdbcTemplate.update("UPDATE order_product SET quantity = quantity + 5 WHERE id = ?", lineId);
+                        ProductSalesTotals added = new ProductSalesTotals();
+                        added.add(product, 5, 0);
+                        aggregate[0].recordAfterCommit(null, added);
+                    }
+                    return method.invoke(orderProductRepository, args);
+                });
+        aggregate[0] = new ProductSalesAggregate(racing, true, 2, 7, 1);
+
+        writeDuringScan.set(true);
+        aggregate[0].rebuild();
+        assertThat(aggregate[0].isReady()).isTrue();
+        assertThat(aggregate[0].current().orElseThrow().quantity(product)).isEqualTo(9);
+
+        writeDuringScan.set(true);
+        aggregate[0].rebuild();
+        assertThat(aggregate[0].current().orElseThrow().quantity(product)).isEqualTo(14);
+        assertThat(productSalesAggregate.scan().quantity(product)).isEqualTo(14);
+    }
+}
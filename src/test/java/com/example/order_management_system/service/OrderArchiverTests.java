@@ -0,0 +1,155 @@
+package com.example.order_management_system.service;
+
+import com.example.order_management_system.cache.OrderReadReplica;
+import com.example.order_management_system.cache.ProductSalesAggregate;
+import com.example.order_management_system.dto.OrderTotals;
+import com.example.order_management_system.dto.OrderView;
+import com.example.order_management_system.exception.ResourceNotFoundException;
+import com.example.order_management_system.repository.ArchivedOrderRepository;
+import com.example.order_management_system.repository.OrderRepository;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.lang.reflect.Proxy;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import static com.example.order_management_system.ProductFixtures.createProduct;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+// One order per chunk, so archiving two orders takes two transactions
+@SpringBootTest(properties = {"oms.archive.max-age=P1D", "oms.archive.chunk-size=1", "oms.archive.pause=PT0S"})
+class OrderArchiverTests {
+
+    @Autowired
+    private OrderArchiver orderArchiver;
+
+    @Autowired
+    private OrderService orderService;
+
+    @Autowired
+    private ProductService productService;
+
+    @Autowired
+    private OrderRepository orderRepository;
+
+    @Autowired
+    private ArchivedOrderRepository archivedOrderRepository;
+
+    @Autowired
+    private OrderReadReplica orderReadReplica;
+
+    @Autowired
+    private ProductSalesAggregate productSalesAggregate;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    @Test
+    void ordersPastTheMaximumAgeMoveToTheArchiveAndStayReadable() {
+        Long kept = createProduct(productService, "Kept", 4.0).getId();
+        Long discontinued = createProduct(productService, "Discontinued", 2.5).getId();
+        Long first = orderService.createOrder(Map.of(kept, 2, discontinued, 1)).getId();
+        Long second = orderService.createOrder(Map.of(discontinued, 3)).getId();
+        Long recent = orderService.createOrder(Map.of(kept, 1)).getId();
+        transactionTemplate.executeWithoutResult(status -> orderRepository.findAllById(List.of(first, second))
+                .forEach(order -> order.setCreatedAt(Instant.now().minus(Duration.ofDays(2)))));
+        OrderView firstView = orderService.getOrderViewById(first).orElseThrow();
+        OrderTotals firstTotals = orderService.getOrderTotals(first).orElseThrow();
+
+        assertThat(orderArchiver.archive()).isEqualTo(2);
+
+        assertThat(orderRepository.findExistingIds(List.of(first, second, recent))).containsExactly(recent);
+        assertThat(archivedOrderRepository.existsById(first)).isTrue();
+        assertThat(orderService.getOrderViewById(first)).contains(firstView);
+        assertThat(orderService.getOrderTotals(first)).contains(firstTotals);
+        assertThat(orderService.getOrderViewById(recent)).isPresent();
+
+        // Archived orders keep the products as they were and can no longer be changed
+        productService.deleteProduct(discontinued);
+        assertThat(orderService.getOrderViewById(first)).contains(firstView);
+        assertThat(orderService.getOrderViewById(second).orElseThrow().orderProducts()).hasSize(1);
+        assertThatThrownBy(() -> orderService.addProductsToOrder(first, Map.of(kept, 1)))
+                .isInstanceOf(ResourceNotFoundException.class);
+        assertThat(orderArchiver.archive()).isZero();
+    }
+
+    @Test
+    void ordersBelowTheIdWatermarkAreArchivedWhateverTheirAge() {
+        Long product = createProduct(productService, "Watermarked", 1.0).getId();
+        Long old = orderService.createOrder(Map.of(product, 1)).getId();
+        Long watermark = orderService.createOrder(Map.of(product, 2)).getId();
+        OrderArchiver byId = new OrderArchiver(orderRepository, archivedOrderRepository, orderReadReplica, productSalesAggregate,
+                transactionTemplate, true, null, watermark, 1, Duration.ZERO);
+
+        assertThat(byId.archive()).isGreaterThanOrEqualTo(1);
+
+        assertThat(orderRepository.findExistingIds(List.of(old, watermark))).containsExactly(watermark);
+        assertThat(orderService.getOrderViewById(old).orElseThrow().orderProducts().get(0).quantity()).isEqualTo(1);
+    }
+
+    @Test
+    void aWriteRacingAnArchiveChunkIsEitherArchivedOrRejected() throws Exception {
+        Long product = createProduct(productService, "Raced", 2.0).getId();
+        Long added = createProduct(productService, "Raced addition", 3.0).getId();
+        Long raced = orderService.createOrder(Map.of(product, 1)).getId();
+        transactionTemplate.executeWithoutResult(status -> orderRepository.findById(raced).orElseThrow()
+                .setCreatedAt(Instant.now().minus(Duration.ofDays(2))));
+        // Add a line to the order right after the chunk copied its lines, and give the write time to commit
+        ExecutorService writer = Executors.newSingleThreadExecutor();
+        List<Future<?>> writes = new ArrayList<>();
+        ArchivedOrderRepository racing = (ArchivedOrderRepository) Proxy.newProxyInstance(getClass().getClassLoader(),
+                new Class<?>[]{ArchivedOrderRepository.class}, (proxy, method, args) -> {
+                    Object result = method.invoke(archivedOrderRepository, args);
+                    if (method.getName().equals("copyLines") && ((Collection<?>) args[0]).contains(raced)) {
+                        Future<?> write = writer.submit(() -> orderService.addProductsToOrder(raced, Map.of(added, 1)));
+                        writes.add(write);
+                        try {
+                            write.get(300, TimeUnit.MILLISECONDS);
+                        } catch (TimeoutException | ExecutionException e) {
+                            // Held back by the chunk, or already rejected
+                        }
+                    }
+                    return result;
+                });
+        OrderArchiver archiver = new OrderArchiver(orderRepository, racing, orderReadReplica, productSalesAggregate,
+                transactionTemplate, true, Duration.ofDays(1), 0, 1, Duration.ZERO);
+
+        try {
+            assertThat(archiver.archive()).isGreaterThanOrEqualTo(1);
+            assertThat(writes).hasSize(1);
+            Throwable failure = null;
+            try {
+                writes.get(0).get(10, TimeUnit.SECONDS);
+            } catch (ExecutionException e) {
+                failure = e.getCause();
+            }
+
+            assertThat(orderRepository.findExistingIds(List.of(raced))).isEmpty();
+            OrderView archived = orderService.getOrderViewById(raced).orElseThrow();
+            if (failure == null) {
+                assertThat(archived.orderProducts()).hasSize(2);
+                assertThat(archived.total()).isEqualByComparingTo("5.00");
+            } else {
+                assertThat(archived.orderProducts()).hasSize(1);
+                assertThat(archived.total()).isEqualByComparingTo("2.00");
+            }
+            assertThat(archived.lineCount()).isEqualTo(archived.orderProducts().size());
+        } finally {
+            writer.shutdown();
+        }
+    }
+}
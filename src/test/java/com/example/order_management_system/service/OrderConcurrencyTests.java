@@ -0,0 +1,148 @@
+package com.example.order_management_system.service;
+
+import com.example.order_management_system.model.Order;
+import com.example.order_management_system.model.OrderProduct;
+import com.example.order_management_system.model.Product;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.dao.ConcurrencyFailureException;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static com.example.order_management_system.ProductFixtures.createProducts;
+import static org.assertj.core.api.Assertions.assertThat;
+
+// Many writers hammering the same order: optimistic locking plus retries must not lose or duplicate lines.
+// A writer that still loses after every retry is told so (409 at the API) and must leave no trace
+@SpringBootTest
+class OrderConcurrencyTests {
+    private static final Logger log = LoggerFactory.getLogger(OrderConcurrencyTests.class);
+
+    private static final int THREADS = 8;
+    private static final int ADDS_PER_THREAD = 25;
+
+    @Autowired
+    private OrderService orderService;
+
+    @Autowired
+    private ProductService productService;
+
+    private ExecutorService executor;
+    private List<Product> products;
+
+    @BeforeEach
+    void setUp() {
+        executor = Executors.newFixedThreadPool(THREADS);
+        products = createProducts(productService, "Contended", THREADS * ADDS_PER_THREAD + 1, i -> 1.0 + i % 7);
+    }
+
+    @AfterEach
+    void tearDown() {
+        executor.shutdownNow();
+    }
+
+    // Runs `task(thread, i)` ADDS_PER_THREAD times on each of THREADS threads, all released at once, logs the
+    // throughput and returns the (thread, i) pairs whose mutation was rejected after exhausting its retries
+    private Set<List<Integer>> runContended(String name, ContendedTask task) throws Exception {
+        CountDownLatch start = new CountDownLatch(1);
+        Set<List<Integer>> rejected = ConcurrentHashMap.newKeySet();
+        List<Future<?>> futures = new ArrayList<>();
+        for (int thread = 0; thread < THREADS; thread++) {
+            int threadIndex = thread;
+            futures.add(executor.submit(() -> {
+                start.await();
+                for (int i = 0; i < ADDS_PER_THREAD; i++) {
+                    try {
+                        task.run(threadIndex, i);
+                    } catch (ConcurrencyFailureException e) {
+                        rejected.add(List.of(threadIndex, i));
+                    }
+                }
+                return null;
+            }));
+        }
+        long startedAt = System.nanoTime();
+        start.countDown();
+        for (Future<?> future : futures) {
+            future.get();
+        }
+        double seconds = (System.nanoTime() - startedAt) / 1e9;
+        int operations = THREADS * ADDS_PER_THREAD;
+        log.info("{}: {} mutations of one order on {} threads in {} ms ({} ops/s), {} rejected after retries",
+                name, operations, THREADS, Math.round(seconds * 1000), Math.round(operations / seconds), rejected.size());
+        assertThat(rejected).hasSizeLessThan(operations);
+        return rejected;
+    }
+
+    private void assertTotalsMatchLines(Order order) {
+        BigDecimal expectedTotal = order.getOrderProducts().stream()
+                .map(line -> BigDecimal.valueOf(line.getProduct().getPrice()).multiply(BigDecimal.valueOf(line.getQuantity())))
+                .reduce(BigDecimal.ZERO, BigDecimal::add);
+        assertThat(order.getTotal()).isEqualByComparingTo(expectedTotal);
+        assertThat(order.getLineCount()).isEqualTo(order.getOrderProducts().size());
+    }
+
+    @Test
+    void acknowledgedConcurrentAddsAreAllKept() throws Exception {
+        Long orderId = orderService.createOrder(Map.of(products.get(0).getId(), 1)).getId();
+
+        Set<List<Integer>> rejected = runContended("distinct products", (thread, i) -> {
+            Product product = products.get(1 + thread * ADDS_PER_THREAD + i);
+            orderService.addProductsToOrder(orderId, Map.of(product.getId(), thread + 1));
+        });
+
+        Order order = orderService.getOrderById(orderId).orElseThrow();
+        Map<Long, Integer> quantities = new HashMap<>();
+        order.getOrderProducts().forEach(line -> quantities.put(line.getProduct().getId(), line.getQuantity()));
+        assertThat(order.getOrderProducts()).hasSize(THREADS * ADDS_PER_THREAD + 1 - rejected.size());
+        for (int thread = 0; thread < THREADS; thread++) {
+            for (int i = 0; i < ADDS_PER_THREAD; i++) {
+                Long productId = products.get(1 + thread * ADDS_PER_THREAD + i).getId();
+                if (rejected.contains(List.of(thread, i))) {
+                    assertThat(quantities).doesNotContainKey(productId);
+                } else {
+                    assertThat(quantities).containsEntry(productId, thread + 1);
+                }
+            }
+        }
+        assertTotalsMatchLines(order);
+    }
+
+    @Test
+    void concurrentAddsOfTheSameProductKeepASingleLine() throws Exception {
+        Long orderId = orderService.createOrder(Map.of(products.get(0).getId(), 1)).getId();
+        Long contendedProductId = products.get(1).getId();
+
+        runContended("same product", (thread, i) ->
+                orderService.addProductsToOrder(orderId, Map.of(contendedProductId, 1 + thread)));
+
+        Order order = orderService.getOrderById(orderId).orElseThrow();
+        List<OrderProduct> contendedLines = order.getOrderProducts().stream()
+                .filter(line -> line.getProduct().getId().equals(contendedProductId))
+                .toList();
+        assertThat(order.getOrderProducts()).hasSize(2);
+        assertThat(contendedLines).singleElement()
+                .satisfies(line -> assertThat(line.getQuantity()).isBetween(1, THREADS));
+        assertTotalsMatchLines(order);
+    }
+
+    @FunctionalInterface
+    private interface ContendedTask {
+        void run(int thread, int iteration);
+    }
+}
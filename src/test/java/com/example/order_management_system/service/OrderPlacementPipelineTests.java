@@ -0,0 +1,132 @@
+package com.example.order_management_system.service;
+
+import com.example.order_management_system.dto.OrderLines;
+import com.example.order_management_system.dto.OrderPlacementStatus;
+import com.example.order_management_system.dto.OrderView;
+import com.example.order_management_system.exception.ResourceNotFoundException;
+import com.example.order_management_system.model.Product;
+import com.example.order_management_system.repository.OrderRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.MediaType;
+import org.springframework.test.web.servlet.MockMvc;
+
+import java.math.BigDecimal;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+
+import static com.example.order_management_system.ProductFixtures.createProducts;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+@SpringBootTest
+@AutoConfigureMockMvc
+class OrderPlacementPipelineTests {
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    private OrderPlacementPipeline orderPlacementPipeline;
+
+    @Autowired
+    private OrderService orderService;
+
+    @Autowired
+    private ProductService productService;
+
+    @Autowired
+    private OrderRepository orderRepository;
+
+    private List<Product> products;
+
+    @BeforeEach
+    void setUp() {
+        products = createProducts(productService, "Queued", 3, i -> 2.5 * (i + 1));
+    }
+
+    private OrderPlacementStatus awaitCommitted(Long orderId) throws InterruptedException {
+        long deadline = System.nanoTime() + 10_000_000_000L;
+        OrderPlacementStatus status = orderPlacementPipeline.getStatus(orderId).orElseThrow();
+        while (status.state().equals("pending") && System.nanoTime() < deadline) {
+            Thread.sleep(10);
+            status = orderPlacementPipeline.getStatus(orderId).orElseThrow();
+        }
+        return status;
+    }
+
+    @Test
+    void acceptedOrdersAreCommittedUnderTheirReservedIds() throws Exception {
+        Instant placed = Instant.now().minusMillis(1);
+        List<Long> orderIds = new ArrayList<>();
+        for (int i = 0; i < 120; i++) {
+            orderIds.add(orderPlacementPipeline.placeOrder(OrderLines.of(Map.of(products.get(0).getId(), 1 + i % 3, products.get(2).getId(), 2))));
+        }
+        Long synchronousId = orderService.createOrder(Map.of(products.get(1).getId(), 1)).getId();
+        assertThat(new HashSet<>(orderIds)).hasSize(orderIds.size()).doesNotContain(synchronousId);
+
+        for (int i = 0; i < orderIds.size(); i++) {
+            assertThat(awaitCommitted(orderIds.get(i))).isEqualTo(OrderPlacementStatus.created(orderIds.get(i)));
+            OrderView order = orderService.getOrderViewById(orderIds.get(i)).orElseThrow();
+            assertThat(order.orderProducts()).hasSize(2);
+            assertThat(order.lineCount()).isEqualTo(2);
+            assertThat(order.version()).isZero();
+            assertThat(order.total()).isEqualByComparingTo(BigDecimal.valueOf(2.5 * (1 + i % 3) + 7.5 * 2));
+        }
+        // Read back through Hibernate, so an instant stored in the wrong zone would be hours off
+        assertThat(orderRepository.findById(orderIds.get(0)).orElseThrow().getCreatedAt()).isBetween(placed, Instant.now());
+    }
+
+    @Test
+    void committedOrdersCanBeChangedLikeAnyOther() throws Exception {
+        Long orderId = orderPlacementPipeline.placeOrder(OrderLines.of(Map.of(products.get(0).getId(), 1)));
+        awaitCommitted(orderId);
+
+        orderService.addProductsToOrder(orderId, Map.of(products.get(1).getId(), 2));
+        assertThat(orderService.getOrderTotals(orderId).orElseThrow().total()).isEqualByComparingTo("12.50");
+    }
+
+    @Test
+    void respondAsyncIsAnsweredWithAcceptedAndAStatusLocation() throws Exception {
+        String body = "{\"" + products.get(0).getId() + "\": 3}";
+        String location = mockMvc.perform(post("/api/orders").contentType(MediaType.APPLICATION_JSON)
+                        .header("Prefer", "respond-async").content(body))
+                .andExpect(status().isAccepted())
+                .andExpect(header().string("Preference-Applied", "respond-async"))
+                .andExpect(jsonPath("$.status").value("accepted"))
+                .andReturn().getResponse().getHeader("Location");
+        Long orderId = Long.valueOf(location.replace("/api/orders/", "").replace("/status", ""));
+        awaitCommitted(orderId);
+
+        mockMvc.perform(get("/api/orders/{id}/status", orderId))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.state").value("created"));
+        mockMvc.perform(post("/api/orders").contentType(MediaType.APPLICATION_JSON).content(body))
+                .andExpect(status().isCreated());
+    }
+
+    @Test
+    void invalidOrdersAreRejectedBeforeTheyAreAccepted() {
+        assertThatThrownBy(() -> orderPlacementPipeline.placeOrder(OrderLines.of(Map.of(products.get(0).getId(), 1, -1L, 1))))
+                .isInstanceOf(ResourceNotFoundException.class);
+        assertThatThrownBy(() -> orderPlacementPipeline.placeOrder(OrderLines.of(Map.of(products.get(0).getId(), 0))))
+                .isInstanceOf(ResourceNotFoundException.class);
+        assertThat(orderPlacementPipeline.getQueueDepth()).isZero();
+    }
+
+    @Test
+    void unknownOrdersHaveNoStatus() {
+        assertThat(orderPlacementPipeline.getStatus(Long.MAX_VALUE)).isEmpty();
+    }
+}
@@ -0,0 +1,362 @@
+package com.example.order_management_system.service;
+
+import com.example.order_management_system.SqlStatementCounter;
+import com.example.order_management_system.dto.OrderLines;
+import com.example.order_management_system.dto.OrderMutation;
+import com.example.order_management_system.dto.OrderMutationResult;
+import com.example.order_management_system.dto.OrderTotals;
+import com.example.order_management_system.dto.OrderView;
+import com.example.order_management_system.exception.ResourceNotFoundException;
+import com.example.order_management_system.model.Order;
+import com.example.order_management_system.model.Product;
+import com.example.order_management_system.repository.OrderRepository;
+import com.example.order_management_system.repository.ProductRepository;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.IntStream;
+
+import static com.example.order_management_system.ProductFixtures.product;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+@SpringBootTest
+class OrderServiceTests {
+
+    private static final int LARGE_ORDER_LINES = 200;
+
+    @Autowired
+    private OrderService orderService;
+
+    @Autowired
+    private OrderRepository orderRepository;
+
+    @Autowired
+    private ProductRepository productRepository;
+
+    @Autowired
+    private OrderBulkService orderBulkService;
+
+    @Autowired
+    private OrderTotalsReconciler orderTotalsReconciler;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    private List<Product> products;
+
+    @BeforeEach
+    void setUp() {
+        orderRepository.deleteAll();
+        productRepository.deleteAll();
+        products = new ArrayList<>();
+        for (int i = 0; i < LARGE_ORDER_LINES; i++) {
+            products.add(product("Product " + i, 10.0 + i));
+        }
+        products = productRepository.saveAll(products);
+    }
+
+    private Map<Long, Integer> quantitiesFor(List<Product> lineProducts, int quantity) {
+        Map<Long, Integer> productQuantities = new LinkedHashMap<>();
+        lineProducts.forEach(product -> productQuantities.put(product.getId(), quantity));
+        return productQuantities;
+    }
+
+    @Test
+    void createOrderResolvesAllProductsWithOneQuery() {
+        SqlStatementCounter.reset();
+        Order order = orderService.createOrder(quantitiesFor(products, 2));
+
+        assertThat(order.getOrderProducts()).hasSize(LARGE_ORDER_LINES);
+        assertThat(SqlStatementCounter.selects()).isEqualTo(1);
+    }
+
+    @Test
+    void createOrderBatchesLineInserts() {
+        SqlStatementCounter.reset();
+        orderService.createOrder(quantitiesFor(products, 2));
+
+        // One order insert plus the lines in batches of 50
+        assertThat(SqlStatementCounter.inserts()).isLessThanOrEqualTo(1 + LARGE_ORDER_LINES / 50);
+    }
+
+    @Test
+    void addProductsToOrderResolvesAllProductsWithOneQuery() {
+        Order order = orderService.createOrder(quantitiesFor(products.subList(0, 1), 1));
+
+        SqlStatementCounter.reset();
+        orderService.addProductsToOrder(order.getId(), quantitiesFor(products, 3));
+
+        // One select for the order, one for its lines and one for the products
+        assertThat(SqlStatementCounter.selects()).isLessThanOrEqualTo(3);
+    }
+
+    @Test
+    void updateOrderResolvesAllProductsWithOneQuery() {
+        Order order = orderService.createOrder(quantitiesFor(products.subList(0, 1), 1));
+
+        SqlStatementCounter.reset();
+        orderService.updateOrder(order.getId(), quantitiesFor(products, 4));
+
+        assertThat(SqlStatementCounter.selects()).isLessThanOrEqualTo(3);
+    }
+
+    @Test
+    void createOrderReportsEveryMissingProduct() {
+        Map<Long, Integer> productQuantities = quantitiesFor(products.subList(0, 2), 1);
+        productQuantities.put(-1L, 1);
+        productQuantities.put(-2L, 1);
+
+        assertThatThrownBy(() -> orderService.createOrder(productQuantities))
+                .isInstanceOf(ResourceNotFoundException.class)
+                .hasMessageContaining("[-2, -1]");
+    }
+
+    private void createOrders(int count) {
+        for (int i = 0; i < count; i++) {
+            int first = (i * 3) % (LARGE_ORDER_LINES - 3);
+            orderService.createOrder(quantitiesFor(products.subList(first, first + 3), 1));
+        }
+    }
+
+    private int selectsToReadAllOrders() {
+        SqlStatementCounter.reset();
+        List<Order> orders = orderService.getAllOrders();
+        orders.forEach(order -> order.getOrderProducts().forEach(line -> line.getProduct().getName()));
+        return SqlStatementCounter.selects();
+    }
+
+    @Test
+    void getAllOrdersStatementCountDoesNotGrowWithOrders() {
+        createOrders(5);
+        int fewOrders = selectsToReadAllOrders();
+        createOrders(45);
+        int manyOrders = selectsToReadAllOrders();
+
+        assertThat(orderService.getAllOrders()).hasSize(50);
+        assertThat(manyOrders).isEqualTo(fewOrders).isEqualTo(1);
+    }
+
+    @Test
+    void getOrderByIdLoadsLinesAndProductsWithOneQuery() {
+        Order created = orderService.createOrder(quantitiesFor(products.subList(0, 20), 1));
+
+        SqlStatementCounter.reset();
+        Order order = orderService.getOrderById(created.getId()).orElseThrow();
+        order.getOrderProducts().forEach(line -> line.getProduct().getName());
+
+        assertThat(order.getOrderProducts()).hasSize(20);
+        assertThat(SqlStatementCounter.selects()).isEqualTo(1);
+    }
+
+    @Test
+    void getOrderViewsPageStatementCountDoesNotGrowWithPageSize() {
+        createOrders(40);
+
+        SqlStatementCounter.reset();
+        assertThat(orderService.getOrderViewsPage(0L, 3)).hasSize(3);
+        assertThat(SqlStatementCounter.selects()).isEqualTo(2);
+
+        SqlStatementCounter.reset();
+        List<OrderView> page = orderService.getOrderViewsPage(0L, 30);
+        assertThat(page).hasSize(30);
+        assertThat(page.get(0).orderProducts()).isNotEmpty();
+        assertThat(SqlStatementCounter.selects()).isEqualTo(2);
+    }
+
+    @Test
+    void updateOrderWritesOnlyTheChangedLines() {
+        Map<Long, Integer> productQuantities = quantitiesFor(products, 1);
+        Order order = orderService.createOrder(productQuantities);
+
+        productQuantities.put(products.get(0).getId(), 7);
+        SqlStatementCounter.reset();
+        orderService.updateOrder(order.getId(), productQuantities);
+
+        // The changed line plus the order row carrying the new total
+        assertThat(SqlStatementCounter.updates()).isEqualTo(2);
+        assertThat(SqlStatementCounter.inserts()).isZero();
+        assertThat(SqlStatementCounter.deletes()).isZero();
+    }
+
+    @Test
+    void updateOrderStatementCountIsProportionalToTheChange() {
+        Map<Long, Integer> productQuantities = quantitiesFor(products.subList(0, 150), 1);
+        Order order = orderService.createOrder(productQuantities);
+
+        // Drop two lines, add two new ones and change one quantity
+        productQuantities.remove(products.get(0).getId());
+        productQuantities.remove(products.get(1).getId());
+        productQuantities.put(products.get(150).getId(), 3);
+        productQuantities.put(products.get(151).getId(), 4);
+        productQuantities.put(products.get(2).getId(), 5);
+        SqlStatementCounter.reset();
+        orderService.updateOrder(order.getId(), productQuantities);
+
+        assertThat(SqlStatementCounter.deletes()).isLessThanOrEqualTo(2);
+        assertThat(SqlStatementCounter.inserts()).isLessThanOrEqualTo(2);
+        assertThat(SqlStatementCounter.updates()).isEqualTo(2);
+
+        Map<Long, Integer> storedQuantities = new LinkedHashMap<>();
+        orderService.getOrderById(order.getId()).orElseThrow().getOrderProducts()
+                .forEach(line -> storedQuantities.put(line.getProduct().getId(), line.getQuantity()));
+        assertThat(storedQuantities).isEqualTo(productQuantities);
+    }
+
+    private BigDecimal expectedTotal(Long orderId) {
+        return orderService.getOrderById(orderId).orElseThrow().getOrderProducts().stream()
+                .map(line -> BigDecimal.valueOf(line.getProduct().getPrice()).multiply(BigDecimal.valueOf(line.getQuantity())))
+                .reduce(BigDecimal.ZERO, BigDecimal::add)
+                .setScale(2, RoundingMode.HALF_UP);
+    }
+
+    private void assertTotalsMatchLines(Long orderId, int lineCount) {
+        OrderTotals totals = orderService.getOrderTotals(orderId).orElseThrow();
+        assertThat(totals.total()).isEqualByComparingTo(expectedTotal(orderId));
+        assertThat(totals.lineCount()).isEqualTo(lineCount);
+    }
+
+    @Test
+    void orderTotalsFollowEveryWritePath() {
+        Order order = orderService.createOrder(quantitiesFor(products.subList(0, 3), 2));
+        assertTotalsMatchLines(order.getId(), 3);
+
+        orderService.addProductsToOrder(order.getId(), Map.of(products.get(0).getId(), 5, products.get(3).getId(), 1));
+        assertTotalsMatchLines(order.getId(), 4);
+
+        orderService.updateOrder(order.getId(), Map.of(products.get(1).getId(), 4, products.get(4).getId(), 2));
+        assertTotalsMatchLines(order.getId(), 2);
+
+        orderService.removeProductFromOrder(order.getId(), products.get(1).getId());
+        assertTotalsMatchLines(order.getId(), 1);
+    }
+
+    @Test
+    void getOrderTotalsDoesNotLoadTheLines() {
+        Order order = orderService.createOrder(quantitiesFor(products, 1));
+
+        SqlStatementCounter.reset();
+        OrderTotals totals = orderService.getOrderTotals(order.getId()).orElseThrow();
+
+        assertThat(totals.lineCount()).isEqualTo(LARGE_ORDER_LINES);
+        assertThat(SqlStatementCounter.selects()).isEqualTo(1);
+    }
+
+    @Test
+    void reconcilerRepairsDriftedTotals() {
+        Order drifted = orderService.createOrder(quantitiesFor(products.subList(0, 5), 3));
+        Order intact = orderService.createOrder(quantitiesFor(products.subList(5, 10), 1));
+        jdbcTemplate.update("UPDATE orders SET total = 0, line_count = 0 WHERE id = ?", drifted.getId());
+
+        assertThat(orderTotalsReconciler.reconcile()).isEqualTo(1);
+        assertTotalsMatchLines(drifted.getId(), 5);
+        assertTotalsMatchLines(intact.getId(), 5);
+    }
+
+    @Test
+    void totalsOfPricesWithMoreDecimalsAreLeftAloneByTheReconciler() {
+        Product first = productRepository.save(product("Three decimals", 1.234));
+        Product second = productRepository.save(product("Three more decimals", 1.234));
+        Order order = orderService.createOrder(Map.of(first.getId(), 1));
+        // 1.23 stored, then 2.468 once the second line is added, which rounds up to 2.47 and not to 1.23 + 1.234
+        orderService.addProductsToOrder(order.getId(), Map.of(second.getId(), 1));
+        Long version = orderService.getOrderById(order.getId()).orElseThrow().getVersion();
+
+        orderTotalsReconciler.reconcile();
+
+        assertThat(orderService.getOrderTotals(order.getId()).orElseThrow().total()).isEqualByComparingTo("2.47");
+        assertThat(orderService.getOrderById(order.getId()).orElseThrow().getVersion()).isEqualTo(version);
+    }
+
+    @Test
+    void orderViewsSerializeExactlyLikeTheEntities() throws Exception {
+        createOrders(5);
+        Order order = orderService.createOrder(quantitiesFor(products.subList(10, 30), 2));
+
+        assertThat(objectMapper.writeValueAsString(orderService.getOrderViewById(order.getId()).orElseThrow()))
+                .isEqualTo(objectMapper.writeValueAsString(orderService.getOrderById(order.getId()).orElseThrow()));
+        assertThat(objectMapper.writeValueAsString(orderService.getAllOrderViews()))
+                .isEqualTo(objectMapper.writeValueAsString(orderService.getAllOrders()));
+        assertThat(objectMapper.writeValueAsString(orderService.getOrderViewsPage(0L, 3)))
+                .isEqualTo(objectMapper.writeValueAsString(orderService.getAllOrders().subList(0, 3)));
+    }
+
+    @Test
+    void orderViewsAreReadWithAFixedNumberOfQueries() {
+        createOrders(40);
+
+        SqlStatementCounter.reset();
+        assertThat(orderService.getAllOrderViews()).hasSize(40);
+        assertThat(SqlStatementCounter.selects()).isEqualTo(1);
+
+        SqlStatementCounter.reset();
+        assertThat(orderService.getOrderViewsPage(0L, 30)).hasSize(30);
+        assertThat(SqlStatementCounter.selects()).isEqualTo(2);
+    }
+
+    @Test
+    void streamOrderViewsVisitsEveryOrderInIdOrder() {
+        createOrders(300);
+
+        List<Long> streamed = new ArrayList<>();
+        orderService.streamOrderViews(order -> streamed.add(order.id()));
+
+        assertThat(streamed).hasSize(300).isSorted();
+        assertThat(orderService.getOrderViewById(Long.MAX_VALUE)).isEmpty();
+    }
+
+    @Test
+    void batchMutationsLoadEveryOrderAndProductOnce() throws Exception {
+        List<Long> orderIds = new ArrayList<>();
+        for (int i = 0; i < 40; i++) {
+            orderIds.add(orderService.createOrder(quantitiesFor(products.subList(i, i + 2), 1)).getId());
+        }
+        List<OrderMutation> mutations = new ArrayList<>();
+        for (int i = 0; i < 10; i++) {
+            mutations.add(new OrderMutation(OrderMutation.Type.UPDATE, orderIds.get(i),
+                    OrderLines.of(Map.of(products.get(100).getId(), 3)), null));
+            mutations.add(new OrderMutation(OrderMutation.Type.ADD_PRODUCTS, orderIds.get(10 + i),
+                    OrderLines.of(Map.of(products.get(10 + i).getId(), 5, products.get(150).getId(), 2)), null));
+            mutations.add(new OrderMutation(OrderMutation.Type.REMOVE_PRODUCT, orderIds.get(20 + i), null, products.get(20 + i).getId()));
+            mutations.add(new OrderMutation(OrderMutation.Type.DELETE, orderIds.get(30 + i), null, null));
+        }
+        String failures = """
+                [{"op": "addProducts", "orderId": %d, "products": {"-1": 1}},
+                 {"op": "update", "orderId": -1, "products": {"%d": 1}},
+                 {"op": "removeProduct", "orderId": %d},
+                 {"op": "update", "orderId": %d, "products": {"%d": 1}}]
+                """.formatted(orderIds.get(0), products.get(0).getId(), orderIds.get(0), orderIds.get(30), products.get(0).getId());
+        mutations.addAll(objectMapper.readValue(failures, new TypeReference<List<OrderMutation>>() { }));
+
+        SqlStatementCounter.reset();
+        List<OrderMutationResult> results = orderBulkService.mutateOrders(mutations);
+
+        // The orders with their lines in one query and the products in another, whatever the number of operations
+        assertThat(SqlStatementCounter.selects()).isLessThanOrEqualTo(2);
+        assertThat(results).extracting(OrderMutationResult::index).containsExactlyElementsOf(IntStream.range(0, 44).boxed().toList());
+        assertThat(results.subList(0, 40)).extracting(OrderMutationResult::status).containsOnly("success");
+        assertThat(results.subList(40, 44)).extracting(OrderMutationResult::message).containsExactly(
+                "Products with IDs [-1] not found", "Order not found", "productId is required.", "Order not found");
+
+        for (int i = 0; i < 10; i++) {
+            assertTotalsMatchLines(orderIds.get(i), 1);
+            assertTotalsMatchLines(orderIds.get(10 + i), 3);
+            assertTotalsMatchLines(orderIds.get(20 + i), 1);
+            assertThat(orderService.getOrderById(orderIds.get(30 + i))).isEmpty();
+        }
+    }
+}
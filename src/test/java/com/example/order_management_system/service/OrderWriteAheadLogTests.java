@@ -0,0 +1,80 @@
+package com.example.order_management_system.service;
+
+import com.example.order_management_system.dto.OrderLines;
+import com.example.order_management_system.dto.PendingOrder;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Stream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class OrderWriteAheadLogTests {
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    @TempDir
+    Path directory;
+
+    private static PendingOrder order(long id) {
+        return new PendingOrder(id, OrderLines.of(Map.of(7L, 2, 9L, 1)), new BigDecimal("12.50"), 2);
+    }
+
+    private List<Path> files() throws IOException {
+        try (Stream<Path> files = Files.list(directory)) {
+            return files.toList();
+        }
+    }
+
+    @Test
+    void ordersThatWereNotCommittedAreReadBackAfterARestart() throws IOException {
+        // One byte segments, so every order gets a segment of its own
+        OrderWriteAheadLog log = new OrderWriteAheadLog(directory, 1, true, objectMapper);
+        assertThat(log.open()).isEmpty();
+        long first = log.append(order(1));
+        long second = log.append(order(2));
+        log.append(order(3));
+        log.committed(List.of(first, second));
+        log.close();
+
+        OrderWriteAheadLog reopened = new OrderWriteAheadLog(directory, 1, true, objectMapper);
+        List<OrderWriteAheadLog.Entry> entries = reopened.open();
+        assertThat(entries).extracting(OrderWriteAheadLog.Entry::order).containsExactly(order(3));
+        reopened.committed(List.of(entries.get(0).segment()));
+        reopened.close();
+        assertThat(files()).isEmpty();
+    }
+
+    @Test
+    void aLineCutShortByACrashIsSkipped() throws IOException {
+        OrderWriteAheadLog log = new OrderWriteAheadLog(directory, 1 << 20, false, objectMapper);
+        log.open();
+        log.append(order(1));
+        log.append(order(2));
+        log.close();
+        Path segment = files().get(0);
+        Files.writeString(segment, "{\"id\":3,\"productQuantities\":{\"7\"", StandardCharsets.UTF_8, StandardOpenOption.APPEND);
+
+        List<OrderWriteAheadLog.Entry> entries = new OrderWriteAheadLog(directory, 1 << 20, false, objectMapper).open();
+        assertThat(entries).extracting(OrderWriteAheadLog.Entry::order).containsExactly(order(1), order(2));
+    }
+
+    @Test
+    void aFullyCommittedLogLeavesNoFilesBehind() throws IOException {
+        OrderWriteAheadLog log = new OrderWriteAheadLog(directory, 1 << 20, true, objectMapper);
+        log.open();
+        long segment = log.append(order(1));
+        log.committed(List.of(segment, log.append(order(2))));
+        log.close();
+        assertThat(files()).isEmpty();
+    }
+}
@@ -0,0 +1,207 @@
+package com.example.order_management_system.service;
+
+import com.example.order_management_system.SqlStatementCounter;
+import com.example.order_management_system.dto.ProductDeletionResult;
+import com.example.order_management_system.exception.ResourceNotFoundException;
+import com.example.order_management_system.model.Order;
+import com.example.order_management_system.model.Product;
+import com.example.order_management_system.repository.OrderRepository;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import static com.example.order_management_system.ProductFixtures.createProduct;
+import static com.example.order_management_system.ProductFixtures.product;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+@SpringBootTest
+class ProductServiceTests {
+
+    @Autowired
+    private ProductService productService;
+
+    @Autowired
+    private OrderService orderService;
+
+    @Autowired
+    private OrderRepository orderRepository;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Test
+    void getProductByIdIsServedFromCacheAfterFirstRead() {
+        Product product = createProduct(productService, "Cached", 5.0);
+
+        productService.getProductById(product.getId());
+        SqlStatementCounter.reset();
+        Product cached = productService.getProductById(product.getId()).orElseThrow();
+
+        assertThat(cached.getName()).isEqualTo("Cached");
+        assertThat(SqlStatementCounter.selects()).isZero();
+    }
+
+    @Test
+    void updateProductInvalidatesCachedEntry() {
+        Product product = createProduct(productService, "Before", 5.0);
+        productService.getProductById(product.getId());
+
+        Product update = product("After", "After description", 7.0);
+        productService.updateProduct(product.getId(), update);
+
+        Product reloaded = productService.getProductById(product.getId()).orElseThrow();
+        assertThat(reloaded.getName()).isEqualTo("After");
+        assertThat(reloaded.getPrice()).isEqualTo(7.0);
+    }
+
+    @Test
+    void deleteProductInvalidatesCachedEntry() {
+        Product product = createProduct(productService, "Deleted", 5.0);
+        productService.getProductById(product.getId());
+
+        productService.deleteProduct(product.getId());
+
+        assertThat(productService.getProductById(product.getId())).isEmpty();
+    }
+
+    @Test
+    void deleteProductRemovesItsLinesAndTheOrdersLeftEmpty() {
+        Product deleted = createProduct(productService, "Deleted", 5.0);
+        Product kept = createProduct(productService, "Kept", 5.0);
+        Order onlyDeleted = orderService.createOrder(Map.of(deleted.getId(), 1));
+        Order mixed = orderService.createOrder(Map.of(deleted.getId(), 1, kept.getId(), 2));
+        Order onlyKept = orderService.createOrder(Map.of(kept.getId(), 3));
+
+        ProductDeletionResult result = productService.deleteProduct(deleted.getId());
+
+        assertThat(result.linesRemoved()).isEqualTo(2);
+        assertThat(result.ordersRemoved()).isEqualTo(1);
+        assertThat(orderRepository.existsById(onlyDeleted.getId())).isFalse();
+        assertThat(orderService.getOrderById(mixed.getId()).orElseThrow().getOrderProducts())
+                .singleElement()
+                .satisfies(line -> assertThat(line.getProduct().getId()).isEqualTo(kept.getId()));
+        assertThat(orderRepository.existsById(onlyKept.getId())).isTrue();
+    }
+
+    private int statementsToDeleteProductInOrders(int orderCount) {
+        Product product = createProduct(productService, "Popular", 5.0);
+        for (int i = 0; i < orderCount; i++) {
+            orderService.createOrder(Map.of(product.getId(), 1));
+        }
+        SqlStatementCounter.reset();
+        ProductDeletionResult result = productService.deleteProduct(product.getId());
+        assertThat(result.ordersRemoved()).isEqualTo(orderCount);
+        return SqlStatementCounter.total();
+    }
+
+    @Test
+    void deleteProductStatementCountDoesNotGrowWithOrders() {
+        assertThat(statementsToDeleteProductInOrders(50)).isEqualTo(statementsToDeleteProductInOrders(5));
+    }
+
+    @Test
+    void priceChangeRepricesTheOrdersContainingTheProduct() {
+        Product repriced = createProduct(productService, "Repriced", 5.0);
+        Product other = createProduct(productService, "Other", 2.0);
+        Order order = orderService.createOrder(Map.of(repriced.getId(), 3, other.getId(), 1));
+
+        Product update = product("Repriced", "Repriced description", 6.5);
+        productService.updateProduct(repriced.getId(), update);
+
+        assertThat(orderService.getOrderTotals(order.getId()).orElseThrow().total()).isEqualByComparingTo("21.50");
+    }
+
+    @Test
+    void deleteProductRecomputesTotalsOfTheRemainingOrders() {
+        Product deleted = createProduct(productService, "Deleted", 5.0);
+        Product kept = createProduct(productService, "Kept", 2.0);
+        Order order = orderService.createOrder(Map.of(deleted.getId(), 1, kept.getId(), 2));
+
+        productService.deleteProduct(deleted.getId());
+
+        assertThat(orderService.getOrderTotals(order.getId()).orElseThrow())
+                .satisfies(totals -> assertThat(totals.total()).isEqualByComparingTo("4.00"))
+                .satisfies(totals -> assertThat(totals.lineCount()).isEqualTo(1));
+    }
+
+    @Test
+    void orderIdsPagesWalkEveryOrderContainingTheProduct() {
+        Product hot = createProduct(productService, "Hot", 1.0);
+        Product other = createProduct(productService, "Other", 1.0);
+        List<Long> expected = new ArrayList<>();
+        for (int i = 0; i < 25; i++) {
+            Order order = orderService.createOrder(i % 3 == 0 ? Map.of(other.getId(), 1) : Map.of(hot.getId(), 1, other.getId(), 2));
+            if (i % 3 != 0) {
+                expected.add(order.getId());
+            }
+        }
+
+        List<Long> walked = new ArrayList<>();
+        List<Long> page = productService.getOrderIdsPage(hot.getId(), 0L, 4);
+        while (!page.isEmpty()) {
+            walked.addAll(page);
+            page = productService.getOrderIdsPage(hot.getId(), page.get(page.size() - 1), 4);
+        }
+
+        assertThat(walked).isEqualTo(expected);
+    }
+
+    @Test
+    void ordersHoldingTheProductOnTwoLinesFillAPageOnce() {
+        Product hot = createProduct(productService, "Twice", 1.0);
+        List<Long> expected = new ArrayList<>();
+        for (int i = 0; i < 5; i++) {
+            expected.add(orderService.createOrder(Map.of(hot.getId(), 1)).getId());
+        }
+        // Legacy rows from before lines were merged per product; IDs far above anything the sequence hands out
+        for (int i = 0; i < 4; i++) {
+            jdbcTemplate.update("INSERT INTO order_product (id, order_id, product_id, quantity) VALUES (?, ?, ?, 1)",
+                    Long.MAX_VALUE - i, expected.get(i), hot.getId());
+        }
+
+        try {
+            assertThat(productService.getOrderIdsPage(hot.getId(), 0L, 2)).containsExactly(expected.get(0), expected.get(1));
+            assertThat(productService.getOrderIdsPage(hot.getId(), expected.get(1), 2)).containsExactly(expected.get(2), expected.get(3));
+            assertThat(productService.getOrderIdsPage(hot.getId(), expected.get(3), 2)).containsExactly(expected.get(4));
+        } finally {
+            jdbcTemplate.update("DELETE FROM order_product WHERE id > ?", Long.MAX_VALUE - 4);
+        }
+    }
+
+    @Test
+    void orderIdsPageOfUnknownProductIsNotFound() {
+        assertThatThrownBy(() -> productService.getOrderIdsPage(Long.MAX_VALUE, 0L, 10))
+                .isInstanceOf(ResourceNotFoundException.class);
+    }
+
+    @Test
+    void orderIdsPageQueryIsServedFromTheCoveringIndex() {
+        String plan = jdbcTemplate.queryForObject(
+                "EXPLAIN SELECT DISTINCT product_id, order_id FROM order_product WHERE product_id = 1 AND order_id > 0 ORDER BY product_id, order_id LIMIT 100",
+                String.class);
+
+        assertThat(plan).containsIgnoringCase("idx_order_product_product_order").contains("index sorted");
+    }
+
+    @Test
+    void productViewsSerializeExactlyLikeTheEntities() throws Exception {
+        for (int i = 0; i < 5; i++) {
+            createProduct(productService, "Viewed " + i, 1.5 + i);
+        }
+
+        assertThat(objectMapper.writeValueAsString(productService.getProductViewsPage(0L, 3)))
+                .isEqualTo(objectMapper.writeValueAsString(productService.getAllProducts().subList(0, 3)));
+        assertThat(objectMapper.writeValueAsString(productService.getAllProductViews()))
+                .isEqualTo(objectMapper.writeValueAsString(productService.getAllProducts()));
+    }
+}